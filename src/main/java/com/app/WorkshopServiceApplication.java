@@ -2,11 +2,13 @@ package com.app;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 /**
  * Main application class for the Workshop Service.
  * This class serves as the entry point for the Spring Boot application.
  */
 @SpringBootApplication
+@EnableScheduling
 public class WorkshopServiceApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,125 @@
+package com.app.config;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrency limit that adapts to the observed latency, following the gradient algorithm. The latency
+ * of each window of requests is compared with the long-term latency: while they are close the limit
+ * grows by a small queue allowance, and when requests get slower because they queue up the limit
+ * shrinks in proportion. Requests beyond the limit are rejected rather than queued, so the admitted
+ * requests keep their latency under overload.
+ */
+class AdaptiveConcurrencyLimit {
+
+    // The number of latency samples of a window
+    private static final int WINDOW_SIZE = 10;
+    // The number of windows the long-term latency is averaged over
+    private static final int LONG_WINDOWS = 60;
+    // How much slower than the long-term latency a window may be before the limit shrinks
+    private static final double TOLERANCE = 1.5;
+    // The weight of a new limit against the current one
+    private static final double SMOOTHING = 0.2;
+
+    // The bounds of the limit
+    private final int minLimit;
+    private final int maxLimit;
+    // The requests in progress
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // The requests admitted and rejected since startup
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    // The current limit, written under the lock of this object
+    private volatile double limit;
+    // The long-term average latency in nanos, 0 until the first window completed
+    private double longRtt;
+    // The latency samples of the current window
+    private long windowRttSum;
+    private int windowSamples;
+    // The highest number of requests in progress during the current window
+    private int windowMaxInFlight;
+
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * Admits a request if fewer requests than the limit are in progress.
+     *
+     * @return true if the request was admitted and must be released, false if it was rejected
+     */
+    boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.increment();
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        admitted.increment();
+        return true;
+    }
+
+    /**
+     * Releases an admitted request.
+     *
+     * @param rttNanos the latency of the request, or a negative value to not use it as a sample
+     */
+    void release(long rttNanos) {
+        int current = inFlight.getAndDecrement();
+        if (rttNanos >= 0) {
+            sample(rttNanos, current);
+        }
+    }
+
+    private synchronized void sample(long rttNanos, int inFlightAtEnd) {
+        windowRttSum += rttNanos;
+        windowSamples++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlightAtEnd);
+        if (windowSamples < WINDOW_SIZE) {
+            return;
+        }
+        double shortRtt = (double) windowRttSum / windowSamples;
+        int maxInFlight = windowMaxInFlight;
+        windowRttSum = 0;
+        windowSamples = 0;
+        windowMaxInFlight = 0;
+
+        if (longRtt == 0) {
+            longRtt = shortRtt;
+        } else {
+            longRtt += (shortRtt - longRtt) / LONG_WINDOWS;
+        }
+        // After a long overload the long-term latency has drifted up, let it recover quickly
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+        // A limit that is far from being used says nothing about the capacity, do not grow it
+        if (maxInFlight < limit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        newLimit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    int getLimit() {
+        return (int) limit;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    long getAdmitted() {
+        return admitted.sum();
+    }
+
+    long getRejected() {
+        return rejected.sum();
+    }
+}
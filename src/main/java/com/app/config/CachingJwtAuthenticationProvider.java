@@ -0,0 +1,106 @@
+package com.app.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Authenticates bearer tokens through a delegate provider and caches the result, so repeated requests
+ * with the same token skip the signature verification and the conversion of the roles. Entries are
+ * keyed by a hash of the token and expire when the token does, or after the maximum time to live if
+ * that is sooner. Failed authentications are not cached.
+ * <p>
+ * A cached token stays valid for up to the maximum time to live even if its signing key is removed
+ * from the key set in the meantime.
+ */
+public class CachingJwtAuthenticationProvider implements AuthenticationProvider {
+
+    // Verifies the token and converts it into an authentication
+    private final AuthenticationProvider delegate;
+    // The verified tokens with their authorities, by token hash
+    private final Cache<String, JwtAuthenticationToken> cache;
+
+    public CachingJwtAuthenticationProvider(AuthenticationProvider delegate, Duration maxTtl, long maxEntries,
+                                            MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new TokenExpiry(maxTtl))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwtAuthentications");
+    }
+
+    /**
+     * Returns the cached authentication of the bearer token, authenticating it through the delegate on a miss.
+     * Each request gets its own copy of the authentication, with the details of the request.
+     *
+     * @param authentication the bearer token of the request
+     * @return the authentication of the token
+     */
+    @Override
+    public Authentication authenticate(Authentication authentication) {
+        BearerTokenAuthenticationToken bearer = (BearerTokenAuthenticationToken) authentication;
+        JwtAuthenticationToken cached = cache.get(hash(bearer.getToken()),
+                key -> (JwtAuthenticationToken) delegate.authenticate(new BearerTokenAuthenticationToken(bearer.getToken())));
+        JwtAuthenticationToken result = new JwtAuthenticationToken(cached.getToken(), cached.getAuthorities(), cached.getName());
+        result.setDetails(bearer.getDetails());
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return BearerTokenAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+
+    /**
+     * Hashes the token, so the cache keys are short and do not hold the raw token.
+     */
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    /**
+     * Expires an authentication when its token expires, or after the time to live if that is sooner.
+     */
+    private record TokenExpiry(Duration ttl) implements Expiry<String, JwtAuthenticationToken> {
+
+        @Override
+        public long expireAfterCreate(String key, JwtAuthenticationToken value, long currentTime) {
+            Instant expiresAt = value.getToken().getExpiresAt();
+            if (expiresAt == null) {
+                return ttl.toNanos();
+            }
+            Duration untilExpiry = Duration.between(Instant.now(), expiresAt);
+            return Math.max(0, Math.min(ttl.toNanos(), untilExpiry.toNanos()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, JwtAuthenticationToken value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, JwtAuthenticationToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.app.config;
+
+import com.app.model.response.CustomErrorResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Sheds load before it reaches the security filter chain and the connection pool. Each route group has
+ * an adaptive concurrency limit, requests beyond it are rejected at once with 503 and
+ * {@code Retry-After} instead of queueing until they time out. The limits, the requests in progress
+ * and the rejections are published as metrics and through the {@code concurrencylimits} actuator endpoint.
+ */
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER - 10)
+@ConditionalOnProperty(name = "workshop.concurrency-limit.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    // The limit of each route group
+    private final Map<RouteGroup, AdaptiveConcurrencyLimit> limits = new EnumMap<>(RouteGroup.class);
+    // The seconds a rejected client should wait before retrying
+    private final String retryAfter;
+    // Writes the error response of rejected requests
+    private final ObjectMapper objectMapper;
+
+    public ConcurrencyLimitFilter(@Value("${workshop.concurrency-limit.initial-limit:20}") int initialLimit,
+                                  @Value("${workshop.concurrency-limit.min-limit:4}") int minLimit,
+                                  @Value("${workshop.concurrency-limit.max-limit:200}") int maxLimit,
+                                  @Value("${workshop.concurrency-limit.retry-after-seconds:1}") int retryAfterSeconds,
+                                  ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.retryAfter = String.valueOf(retryAfterSeconds);
+        this.objectMapper = objectMapper;
+        for (RouteGroup group : RouteGroup.values()) {
+            AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit);
+            limits.put(group, limit);
+            String tag = group.name().toLowerCase();
+            Gauge.builder("workshop.concurrency.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+                    .tag("group", tag)
+                    .description("Requests of the route group allowed in progress at the same time")
+                    .register(meterRegistry);
+            Gauge.builder("workshop.concurrency.in-flight", limit, AdaptiveConcurrencyLimit::getInFlight)
+                    .tag("group", tag)
+                    .description("Requests of the route group in progress")
+                    .register(meterRegistry);
+            FunctionCounter.builder("workshop.concurrency.rejected", limit, AdaptiveConcurrencyLimit::getRejected)
+                    .tag("group", tag)
+                    .description("Requests of the route group rejected because the limit was reached")
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return RouteGroup.of(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RouteGroup group = RouteGroup.of(request);
+        AdaptiveConcurrencyLimit limit = limits.get(group);
+        if (!limit.tryAcquire()) {
+            log.debug("Rejected {} {}, {} requests of {} in progress", request.getMethod(), request.getRequestURI(),
+                    limit.getInFlight(), group);
+            reject(response);
+            return;
+        }
+        long start = System.nanoTime();
+        boolean async = false;
+        try {
+            filterChain.doFilter(request, response);
+            async = request.isAsyncStarted();
+        } finally {
+            if (async) {
+                // Streamed responses hold the permit until they complete, their duration is not a latency sample
+                request.getAsyncContext().addListener(new ReleasingListener(limit));
+            } else {
+                limit.release(response.getStatus() < 500 ? System.nanoTime() - start : -1);
+            }
+        }
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), CustomErrorResponse.builder()
+                .header("Service busy")
+                .message("The service is busy, please try again later")
+                .build());
+    }
+
+    /**
+     * Returns the limit of each route group.
+     */
+    Map<RouteGroup, AdaptiveConcurrencyLimit> getLimits() {
+        return Collections.unmodifiableMap(limits);
+    }
+
+    /**
+     * Releases the permit of an asynchronous request once it completed, failed or timed out.
+     */
+    private record ReleasingListener(AdaptiveConcurrencyLimit limit) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            limit.release(-1);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.app.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Actuator endpoint showing the current concurrency limit of each route group, with the requests in
+ * progress and the requests admitted and rejected since startup.
+ */
+@Component
+@Endpoint(id = "concurrencylimits")
+@ConditionalOnProperty(name = "workshop.concurrency-limit.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+public class ConcurrencyLimitsEndpoint {
+
+    // Holds the limits of the route groups
+    private final ConcurrencyLimitFilter concurrencyLimitFilter;
+
+    @ReadOperation
+    public Map<RouteGroup, GroupLimit> limits() {
+        Map<RouteGroup, GroupLimit> limits = new EnumMap<>(RouteGroup.class);
+        concurrencyLimitFilter.getLimits().forEach((group, limit) -> limits.put(group,
+                new GroupLimit(limit.getLimit(), limit.getInFlight(), limit.getAdmitted(), limit.getRejected())));
+        return limits;
+    }
+
+    /**
+     * The state of the limit of a route group.
+     *
+     * @param limit    the requests allowed in progress at the same time
+     * @param inFlight the requests in progress
+     * @param admitted the requests admitted since startup
+     * @param rejected the requests rejected since startup
+     */
+    public record GroupLimit(int limit, int inFlight, long admitted, long rejected) {
+    }
+}
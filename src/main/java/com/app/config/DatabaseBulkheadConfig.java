@@ -0,0 +1,68 @@
+package com.app.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * Puts a {@link BulkheadDataSource} in front of the connection pool, so requests on virtual threads
+ * queue for a permit instead of piling up on the pool. The limit defaults to the size of the pool.
+ */
+@Configuration
+@ConditionalOnProperty(name = "workshop.db-bulkhead.enabled", havingValue = "true")
+public class DatabaseBulkheadConfig {
+
+    /**
+     * Wraps the data source into the bulkhead. Static, as post processors are created before the other beans.
+     *
+     * @param environment holds the limit and the acquire timeout
+     * @return the post processor wrapping the data source
+     */
+    @Bean
+    public static BeanPostProcessor databaseBulkheadPostProcessor(Environment environment) {
+        int poolSize = environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10);
+        int maxConcurrent = environment.getProperty("workshop.db-bulkhead.max-concurrent", Integer.class, poolSize);
+        Duration acquireTimeout = environment.getProperty("workshop.db-bulkhead.acquire-timeout", Duration.class,
+                Duration.ofSeconds(5));
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof BulkheadDataSource)) {
+                    return new BulkheadDataSource(dataSource, maxConcurrent, acquireTimeout);
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * Publishes the free permits and the waiting requests of the bulkhead.
+     *
+     * @param dataSource the data source wrapped into the bulkhead
+     * @return the binder of the bulkhead gauges
+     * @throws SQLException if the data source is not wrapped into the bulkhead
+     */
+    @Bean
+    public MeterBinder databaseBulkheadMetrics(DataSource dataSource) throws SQLException {
+        BulkheadDataSource bulkhead = dataSource.unwrap(BulkheadDataSource.class);
+        return registry -> {
+            Gauge.builder("workshop.db.bulkhead.available", bulkhead, BulkheadDataSource::getAvailablePermits)
+                    .description("Database connections that can be taken without waiting")
+                    .register(registry);
+            Gauge.builder("workshop.db.bulkhead.waiting", bulkhead, BulkheadDataSource::getWaiting)
+                    .description("Requests waiting for a database connection")
+                    .register(registry);
+            Gauge.builder("workshop.db.bulkhead.max", bulkhead, BulkheadDataSource::getMaxConcurrent)
+                    .description("Maximum database connections in use at the same time")
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,418 @@
+package com.app.config;
+
+import com.app.model.response.CustomErrorResponse;
+import com.app.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Makes the POST endpoints that create workshops and registrations safe to retry. A request sent with an
+ * {@code Idempotency-Key} header executes once per user and key, its response is kept and replayed to the
+ * retries without running the business logic again. A retry sent while the first request is still
+ * executing waits for its outcome. Server errors and rate limit rejections are not kept, so a retry after
+ * them executes again. The filter runs after the security filter chain, so keys are scoped to the user.
+ * The body is read before the request executes to hash it, bodies over the maximum size are rejected.
+ */
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER + 10)
+@ConditionalOnProperty(name = "workshop.idempotency.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    // The paths whose POST requests honour the header
+    private final Set<String> paths;
+    // How long a retry waits for the first request with the same key
+    private final Duration waitTimeout;
+    // The largest body kept in memory in bytes, negative to spool bodies of any size to a temporary file
+    private final long maxBodySize;
+    // The kept responses
+    private final IdempotencyStore store;
+    // Writes the error responses
+    private final ObjectMapper objectMapper;
+    // The registry of the request counters
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public IdempotencyFilter(@Value("${workshop.idempotency.paths:/api/v1/registrations,/api/v1/workshops}") List<String> paths,
+                             @Value("${workshop.idempotency.ttl:PT24H}") Duration ttl,
+                             @Value("${workshop.idempotency.max-entries:10000}") long maxEntries,
+                             @Value("${workshop.idempotency.wait-timeout:PT10S}") Duration waitTimeout,
+                             @Value("${workshop.idempotency.claim-timeout:PT1M}") Duration claimTimeout,
+                             @Value("${workshop.idempotency.persistent:false}") boolean persistent,
+                             @Value("${workshop.idempotency.max-body-size:1MB}") DataSize maxBodySize,
+                             ObjectProvider<IdempotencyRecordRepository> repository,
+                             ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this(paths, waitTimeout, maxBodySize, new IdempotencyStore(maxEntries, ttl, claimTimeout,
+                persistent ? repository.getObject() : null, meterRegistry), objectMapper, meterRegistry);
+    }
+
+    IdempotencyFilter(List<String> paths, Duration waitTimeout, DataSize maxBodySize, IdempotencyStore store,
+                      ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        if (maxBodySize.toBytes() >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The idempotency maximum body size " + maxBodySize
+                    + " must be less than " + Integer.MAX_VALUE + " bytes, or negative for no maximum");
+        }
+        this.paths = Set.copyOf(paths);
+        this.waitTimeout = waitTimeout;
+        this.maxBodySize = maxBodySize.toBytes();
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod())
+                || request.getHeader(IDEMPOTENCY_KEY_HEADER) == null
+                || !paths.contains(pathOf(request));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String idempotencyKey = request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            writeError(response, HttpStatus.BAD_REQUEST, "Invalid idempotency key",
+                    "The " + IDEMPOTENCY_KEY_HEADER + " header must have 1 to " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+        try (CachedBody body = readBody(request)) {
+            if (body == null) {
+                count("too-large");
+                writeError(response, HttpStatus.PAYLOAD_TOO_LARGE, "Request too large",
+                        "Requests sent with an " + IDEMPOTENCY_KEY_HEADER + " must not be larger than " + maxBodySize + " bytes");
+                return;
+            }
+            executeOnce(request, response, filterChain, idempotencyKey, body);
+        }
+    }
+
+    /**
+     * Executes the request once per key, or replays the response of the request that executed.
+     */
+    private void executeOnce(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain,
+                             String idempotencyKey, CachedBody body) throws ServletException, IOException {
+        String requestHash = body.hash();
+        String key = hash((userOf() + '\n' + pathOf(request) + '\n' + idempotencyKey).getBytes(StandardCharsets.UTF_8));
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+        while (true) {
+            IdempotentResponse stored = store.find(key);
+            if (stored != null) {
+                replay(stored, requestHash, response);
+                return;
+            }
+            CompletableFuture<IdempotentResponse> outcome = new CompletableFuture<>();
+            CompletableFuture<IdempotentResponse> executing = store.register(key, outcome);
+            if (executing != null) {
+                stored = await(executing, deadline);
+                if (stored != null) {
+                    replay(stored, requestHash, response);
+                    return;
+                }
+            } else if (store.claim(key, requestHash)) {
+                execute(new CachedBodyRequest(request, body), response, filterChain, key, requestHash, outcome);
+                return;
+            } else {
+                // Executing on another instance, its response is picked up from the database
+                store.abandon(key, outcome);
+                sleep();
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                count("in-progress");
+                writeError(response, HttpStatus.CONFLICT, "Request in progress",
+                        "A request with the same " + IDEMPOTENCY_KEY_HEADER + " is still in progress, please try again later");
+                return;
+            }
+        }
+    }
+
+    /**
+     * Deletes the expired responses from the database.
+     */
+    @Scheduled(initialDelayString = "${workshop.idempotency.purge-interval-ms:600000}",
+            fixedDelayString = "${workshop.idempotency.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        int purged = store.purgeExpired();
+        if (purged > 0) {
+            log.debug("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    /**
+     * Reads the body of a request so it can be hashed before the request executes. Bodies up to the maximum
+     * size are kept in memory, without a maximum they are spooled to a temporary file.
+     *
+     * @return the body, or null if it is larger than the maximum size
+     */
+    private CachedBody readBody(HttpServletRequest request) throws IOException {
+        if (maxBodySize >= 0) {
+            if (request.getContentLengthLong() > maxBodySize) {
+                return null;
+            }
+            byte[] body = request.getInputStream().readNBytes((int) maxBodySize + 1);
+            if (body.length > maxBodySize) {
+                return null;
+            }
+            return new CachedBody(body, null, hash(body));
+        }
+        MessageDigest digest = sha256();
+        Path file = Files.createTempFile("idempotent-request-", ".body");
+        try (OutputStream out = new DigestOutputStream(Files.newOutputStream(file), digest)) {
+            request.getInputStream().transferTo(out);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(file);
+            throw ex;
+        }
+        return new CachedBody(null, file, encode(digest.digest()));
+    }
+
+    private void execute(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain, String key,
+                         String requestHash, CompletableFuture<IdempotentResponse> outcome) throws ServletException, IOException {
+        count("executed");
+        ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
+        IdempotentResponse kept = null;
+        try {
+            filterChain.doFilter(request, responseWrapper);
+            if (isKept(responseWrapper.getStatus())) {
+                kept = new IdempotentResponse(requestHash, responseWrapper.getStatus(), responseWrapper.getContentType(),
+                        responseWrapper.getHeader(HttpHeaders.LOCATION), responseWrapper.getContentAsByteArray());
+            }
+        } finally {
+            try {
+                store.complete(key, outcome, kept);
+            } finally {
+                responseWrapper.copyBodyToResponse();
+            }
+        }
+    }
+
+    /**
+     * Returns whether a response is final for its key. Server errors, timeouts and rate limit rejections
+     * are transient, a retry should execute again.
+     */
+    private static boolean isKept(int status) {
+        return status < 500 && status != HttpStatus.REQUEST_TIMEOUT.value() && status != HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    private void replay(IdempotentResponse stored, String requestHash, HttpServletResponse response) throws IOException {
+        if (!stored.requestHash().equals(requestHash)) {
+            count("mismatch");
+            writeError(response, HttpStatus.UNPROCESSABLE_ENTITY, "Idempotency key reused",
+                    "The " + IDEMPOTENCY_KEY_HEADER + " was already used for a different request");
+            return;
+        }
+        count("replayed");
+        response.setStatus(stored.status());
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (stored.location() != null) {
+            response.setHeader(HttpHeaders.LOCATION, stored.location());
+        }
+        if (stored.contentType() != null) {
+            response.setContentType(stored.contentType());
+        }
+        response.setContentLength(stored.body().length);
+        response.getOutputStream().write(stored.body());
+    }
+
+    /**
+     * Waits for the outcome of the request with the same key executing on this instance.
+     *
+     * @return its response, or null if it is not kept or the wait timed out
+     */
+    private static IdempotentResponse await(CompletableFuture<IdempotentResponse> executing, long deadline) {
+        try {
+            return executing.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | ExecutionException ex) {
+            return null;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(POLL_INTERVAL_MILLIS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeError(HttpServletResponse response, HttpStatus status, String header, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), CustomErrorResponse.builder()
+                .header(header)
+                .message(message)
+                .build());
+    }
+
+    private void count(String outcome) {
+        Counter.builder("workshop.idempotency.requests")
+                .tag("outcome", outcome)
+                .description("Requests sent with an idempotency key")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static String pathOf(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private static String userOf() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null ? "" : authentication.getName();
+    }
+
+    /**
+     * Hashes the value, so keys and bodies are stored in a fixed length.
+     */
+    private static String hash(byte[] value) {
+        return encode(sha256().digest(value));
+    }
+
+    private static String encode(byte[] digest) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    /**
+     * A request body read up front with its hash, in memory or in a temporary file deleted on close.
+     */
+    private record CachedBody(byte[] bytes, Path file, String hash) implements Closeable {
+
+        InputStream open() throws IOException {
+            return bytes != null ? new ByteArrayInputStream(bytes) : Files.newInputStream(file);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * The request with its body read up front, so the body can be hashed before the request executes.
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final CachedBody body;
+
+        CachedBodyRequest(HttpServletRequest request, CachedBody body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            InputStream in = body.open();
+            return new ServletInputStream() {
+                private boolean finished;
+
+                @Override
+                public boolean isFinished() {
+                    return finished;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    // Only the controllers behind this filter read the body, and Spring MVC reads it blocking
+                    throw new UnsupportedOperationException("Non-blocking reads of a cached request body are not supported");
+                }
+
+                @Override
+                public int read() throws IOException {
+                    int read = in.read();
+                    finished = read < 0;
+                    return read;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int read = in.read(b, off, len);
+                    finished = read < 0;
+                    return read;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    in.close();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+            return new BufferedReader(new InputStreamReader(body.open(), charset));
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.app.config;
+
+import com.app.model.entity.IdempotencyRecord;
+import com.app.repository.IdempotencyRecordRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The responses of requests sent with an {@code Idempotency-Key}, by key. Responses are kept in a bounded,
+ * expiring in-memory cache, and requests still executing on this instance are tracked so duplicates can
+ * wait for their outcome. With a repository the responses are also stored in the database, where a
+ * request claims its key before it executes, so duplicates sent to other instances wait for it as well.
+ */
+class IdempotencyStore {
+
+    // The kept responses by key
+    private final Cache<String, IdempotentResponse> responses;
+    // The outcome of the requests executing on this instance by key, completed with null if it is not kept
+    private final ConcurrentMap<String, CompletableFuture<IdempotentResponse>> executing = new ConcurrentHashMap<>();
+    // Stores the responses for all instances, null to keep them in memory only
+    private final IdempotencyRecordRepository repository;
+    // How long a response is kept
+    private final Duration ttl;
+    // After how long the claim of a request that never completed can be taken over
+    private final Duration claimTimeout;
+
+    IdempotencyStore(long maxEntries, Duration ttl, Duration claimTimeout, IdempotencyRecordRepository repository,
+                     MeterRegistry meterRegistry) {
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.repository = repository;
+        this.ttl = ttl;
+        this.claimTimeout = claimTimeout;
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, "idempotencyKeys");
+    }
+
+    /**
+     * Returns the kept response of a key.
+     *
+     * @param key the key
+     * @return the response, or null if no response is kept for the key
+     */
+    IdempotentResponse find(String key) {
+        IdempotentResponse response = responses.getIfPresent(key);
+        if (response == null && repository != null) {
+            response = repository.findById(key)
+                    .filter(stored -> stored.getStatus() != null && stored.getExpiresAt().isAfter(ZonedDateTime.now()))
+                    .map(IdempotencyStore::toResponse)
+                    .orElse(null);
+            if (response != null) {
+                responses.put(key, response);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Registers a request about to execute on this instance.
+     *
+     * @param key     the key
+     * @param outcome completed with the response of the request once it finished
+     * @return the outcome of the request with the same key already executing on this instance, or null if
+     * the request was registered
+     */
+    CompletableFuture<IdempotentResponse> register(String key, CompletableFuture<IdempotentResponse> outcome) {
+        return executing.putIfAbsent(key, outcome);
+    }
+
+    /**
+     * Claims the key for a registered request, for all instances.
+     *
+     * @param key         the key
+     * @param requestHash the hash of the body of the request
+     * @return true if the request may execute, false if a request with the same key executes on another instance
+     */
+    boolean claim(String key, String requestHash) {
+        if (repository == null) {
+            return true;
+        }
+        ZonedDateTime now = ZonedDateTime.now();
+        try {
+            repository.claim(key, requestHash, now, now.plus(ttl));
+            return true;
+        } catch (DataIntegrityViolationException ex) {
+            return repository.takeOver(key, requestHash, now, now.plus(ttl), now.minus(claimTimeout)) == 1;
+        }
+    }
+
+    /**
+     * Unregisters a request that could not claim its key.
+     *
+     * @param key     the key
+     * @param outcome the outcome registered for the request
+     */
+    void abandon(String key, CompletableFuture<IdempotentResponse> outcome) {
+        executing.remove(key, outcome);
+        outcome.complete(null);
+    }
+
+    /**
+     * Keeps the response of a request that finished and hands it to the requests waiting for it.
+     *
+     * @param key      the key
+     * @param outcome  the outcome registered for the request
+     * @param response the response, or null if it is not kept and a retry should execute again
+     */
+    void complete(String key, CompletableFuture<IdempotentResponse> outcome, IdempotentResponse response) {
+        try {
+            if (response != null) {
+                responses.put(key, response);
+                if (repository != null) {
+                    repository.save(toRecord(key, response));
+                }
+            } else if (repository != null) {
+                repository.release(key);
+            }
+        } finally {
+            executing.remove(key, outcome);
+            outcome.complete(response);
+        }
+    }
+
+    /**
+     * Deletes the expired responses from the database.
+     *
+     * @return the number of deleted responses
+     */
+    int purgeExpired() {
+        return repository == null ? 0 : repository.deleteExpired(ZonedDateTime.now());
+    }
+
+    private IdempotencyRecord toRecord(String key, IdempotentResponse response) {
+        ZonedDateTime now = ZonedDateTime.now();
+        IdempotencyRecord stored = new IdempotencyRecord();
+        stored.setKeyHash(key);
+        stored.setRequestHash(response.requestHash());
+        stored.setStatus(response.status());
+        stored.setContentType(response.contentType());
+        stored.setLocation(response.location());
+        stored.setBody(response.body());
+        stored.setCreatedAt(now);
+        stored.setExpiresAt(now.plus(ttl));
+        return stored;
+    }
+
+    private static IdempotentResponse toResponse(IdempotencyRecord stored) {
+        return new IdempotentResponse(stored.getRequestHash(), stored.getStatus(), stored.getContentType(),
+                stored.getLocation(), stored.getBody());
+    }
+}
@@ -0,0 +1,13 @@
+package com.app.config;
+
+/**
+ * The response of a request sent with an {@code Idempotency-Key}, as it is replayed to the retries of the request.
+ *
+ * @param requestHash hash of the body of the request that produced the response
+ * @param status      the status of the response
+ * @param contentType the content type of the response, null if it had no body
+ * @param location    the {@code Location} header of the response, null if it had none
+ * @param body        the body of the response
+ */
+record IdempotentResponse(String requestHash, int status, String contentType, String location, byte[] body) {
+}
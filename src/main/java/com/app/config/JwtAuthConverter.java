@@ -42,11 +42,11 @@ public class JwtAuthConverter implements Converter<Jwt, AbstractAuthenticationTo
      */
     @Override
     public AbstractAuthenticationToken convert(@NonNull Jwt jwt) {
-        log.info("Converting JWT to Authentication Token and adding roles...");
+        log.debug("Converting JWT to Authentication Token and adding roles...");
         final Set<GrantedAuthority> authorities = Stream.concat(
                 jwtGrantedAuthoritiesConverter.convert(jwt).stream(),
                 extractUserRoles(jwt).stream()).collect(Collectors.toSet());
-        log.info("Authorities: {}", authorities);
+        log.debug("Authorities: {}", authorities);
         return new JwtAuthenticationToken(jwt, authorities);
     }
 
@@ -0,0 +1,29 @@
+package com.app.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Registers the per user rate limits of the endpoints marked with {@link RateLimited}.
+ */
+@Configuration
+@EnableConfigurationProperties(RateLimitProperties.class)
+@RequiredArgsConstructor
+public class RateLimitConfig implements WebMvcConfigurer {
+
+    // The limits by endpoint and role
+    private final RateLimitProperties rateLimitProperties;
+    // The registry of the rate limit metrics
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (rateLimitProperties.enabled()) {
+            registry.addInterceptor(new RateLimitInterceptor(rateLimitProperties, meterRegistry));
+        }
+    }
+}
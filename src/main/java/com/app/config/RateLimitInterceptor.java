@@ -0,0 +1,109 @@
+package com.app.config;
+
+import com.app.exception.RateLimitExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limits the calls of the controller methods marked with {@link RateLimited}, per user and
+ * endpoint. The user is the {@code preferred_username} of the token, and the limit is the most
+ * generous one configured for the roles of the user. Calls beyond the limit fail with
+ * {@link RateLimitExceededException} before the controller runs, so they never reach the database.
+ */
+@Slf4j
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    // The limits by endpoint and role
+    private final Map<String, Map<String, RateLimitProperties.Limit>> endpoints;
+    // The buckets of the users
+    private final TokenBucketStore buckets;
+    // The registry of the rejection counters
+    private final MeterRegistry meterRegistry;
+
+    public RateLimitInterceptor(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.endpoints = properties.endpoints();
+        Duration longestPeriod = endpoints.values().stream()
+                .flatMap(limits -> limits.values().stream())
+                .map(RateLimitProperties.Limit::period)
+                .max(Comparator.naturalOrder())
+                .orElse(Duration.ZERO);
+        // A bucket dropped before it refilled would hand out a new burst
+        Duration idleTimeout = properties.idleTimeout().compareTo(longestPeriod) < 0 ? longestPeriod : properties.idleTimeout();
+        this.buckets = new TokenBucketStore(properties.maxUsers(), idleTimeout);
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("workshop.rate-limit.buckets", buckets, TokenBucketStore::size)
+                .description("Users with a rate limit bucket")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        RateLimited rateLimited = handlerMethod.getMethodAnnotation(RateLimited.class);
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (rateLimited == null || authentication == null) {
+            return true;
+        }
+        String endpoint = rateLimited.value();
+        RateLimitProperties.Limit limit = limitOf(endpoint, authentication);
+        if (limit == null) {
+            return true;
+        }
+        long waitNanos = buckets.tryConsume(endpoint, userOf(authentication), limit);
+        if (waitNanos > 0) {
+            Counter.builder("workshop.rate-limit.rejected")
+                    .tag("endpoint", endpoint)
+                    .description("Calls rejected because the user exceeded the rate limit")
+                    .register(meterRegistry)
+                    .increment();
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+            throw new RateLimitExceededException("Too many requests, retry in " + retryAfter + " seconds", retryAfter);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the limit of the role of the user that allows the most calls, null if no role is limited.
+     */
+    private RateLimitProperties.Limit limitOf(String endpoint, Authentication authentication) {
+        Map<String, RateLimitProperties.Limit> limits = endpoints.get(endpoint);
+        if (limits == null) {
+            return null;
+        }
+        return authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .filter(authority -> authority.startsWith(ROLE_PREFIX))
+                .map(authority -> limits.get(authority.substring(ROLE_PREFIX.length()).toLowerCase()))
+                .filter(Objects::nonNull)
+                .max(Comparator.comparingDouble(limit -> (double) limit.capacity() / limit.period().toNanos()))
+                .orElse(null);
+    }
+
+    private static String userOf(Authentication authentication) {
+        if (authentication instanceof JwtAuthenticationToken jwtAuth
+                && jwtAuth.getTokenAttributes().get("preferred_username") != null) {
+            return jwtAuth.getTokenAttributes().get("preferred_username").toString();
+        }
+        return authentication.getName();
+    }
+}
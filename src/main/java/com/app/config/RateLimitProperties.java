@@ -0,0 +1,35 @@
+package com.app.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Settings of the per user rate limits.
+ *
+ * @param enabled     whether requests are rate limited at all
+ * @param maxUsers    the maximum number of buckets kept, the least recently used ones are dropped beyond it
+ * @param idleTimeout how long the bucket of an idle user is kept, at least the longest limit period
+ * @param endpoints   the limits by endpoint name and then by role, in lower case without the ROLE_ prefix
+ */
+@ConfigurationProperties("workshop.rate-limit")
+public record RateLimitProperties(@DefaultValue("true") boolean enabled,
+                                  @DefaultValue("100000") long maxUsers,
+                                  @DefaultValue("PT10M") Duration idleTimeout,
+                                  Map<String, Map<String, Limit>> endpoints) {
+
+    public RateLimitProperties {
+        endpoints = endpoints == null ? Map.of() : endpoints;
+    }
+
+    /**
+     * A token bucket limit.
+     *
+     * @param capacity the requests allowed in a burst
+     * @param period   the time in which a full bucket is refilled
+     */
+    public record Limit(int capacity, Duration period) {
+    }
+}
@@ -0,0 +1,22 @@
+package com.app.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a controller method whose calls are rate limited per user, with the limits configured under
+ * {@code workshop.rate-limit.endpoints.<name>}.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimited {
+
+    /**
+     * The name of the endpoint in the rate limit settings.
+     */
+    String value();
+}
@@ -0,0 +1,301 @@
+package com.app.config;
+
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.DefaultResourceRetriever;
+import com.nimbusds.jose.util.ResourceRetriever;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Source of the keys that sign the bearer tokens, kept in memory and refreshed from the identity
+ * provider in the background, so token verification never waits on the identity provider while the
+ * keys are known.
+ * <p>
+ * The keys can be loaded from a local snapshot file at startup, and the snapshot is then rewritten after
+ * every successful refresh. There is no snapshot unless a path is configured, and its directory must be
+ * owned by the service user and writable by nobody else, since the keys decide which tokens are trusted.
+ * Refreshes run at jittered intervals, and when a refresh fails the last known keys are kept. A token
+ * signed with an unknown key triggers an immediate refresh, at most once per minimum refresh interval,
+ * and concurrent requests share the same refresh.
+ */
+@Component
+@Slf4j
+public class ResilientJwkSource implements JWKSource<SecurityContext> {
+
+    // Refresh intervals vary by up to this fraction either way, so instances do not refresh in step
+    private static final double JITTER = 0.2;
+    // Permissions of the snapshot file
+    private static final FileAttribute<Set<PosixFilePermission>> OWNER_ONLY =
+            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"));
+
+    // The JWK set endpoint of the identity provider
+    private final URL jwkSetUrl;
+    // Downloads the JWK set
+    private final ResourceRetriever retriever;
+    // Where the last known keys are kept between restarts, null for none
+    private final Path snapshotFile;
+    // The time between two background refreshes
+    private final Duration refreshInterval;
+    // The minimum time between two refreshes for unknown keys, also the retry delay after a failure
+    private final Duration minRefreshInterval;
+    // How long a request waits for a refresh triggered by an unknown key
+    private final Duration refreshTimeout;
+    // Runs the refreshes one at a time
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "jwk-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // The refresh in progress, null if there is none
+    private final AtomicReference<CompletableFuture<JWKSet>> inFlight = new AtomicReference<>();
+    // The last known keys
+    private volatile JWKSet keys = new JWKSet();
+    // When the last refresh started, in nanos
+    private volatile long lastRefreshStart;
+
+    @Autowired
+    public ResilientJwkSource(@Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}") String jwkSetUri,
+                              @Value("${workshop.jwk.snapshot-file:}") String snapshotFile,
+                              @Value("${workshop.jwk.refresh-interval:PT5M}") Duration refreshInterval,
+                              @Value("${workshop.jwk.min-refresh-interval:PT30S}") Duration minRefreshInterval,
+                              @Value("${workshop.jwk.fetch-timeout:PT2S}") Duration fetchTimeout) {
+        this(toUrl(jwkSetUri),
+                new DefaultResourceRetriever((int) fetchTimeout.toMillis(), (int) fetchTimeout.toMillis()),
+                snapshotFile.isBlank() ? null : Path.of(snapshotFile),
+                refreshInterval, minRefreshInterval, fetchTimeout.multipliedBy(2));
+    }
+
+    ResilientJwkSource(URL jwkSetUrl, ResourceRetriever retriever, Path snapshotFile, Duration refreshInterval,
+                       Duration minRefreshInterval, Duration refreshTimeout) {
+        this.jwkSetUrl = jwkSetUrl;
+        this.retriever = retriever;
+        this.snapshotFile = snapshotFile;
+        this.refreshInterval = refreshInterval;
+        this.minRefreshInterval = minRefreshInterval;
+        this.refreshTimeout = refreshTimeout;
+        this.lastRefreshStart = System.nanoTime() - minRefreshInterval.toNanos();
+    }
+
+    /**
+     * Loads the snapshot of the keys and starts refreshing them in the background.
+     */
+    @PostConstruct
+    void start() {
+        if (snapshotFile != null) {
+            checkSnapshotDirectory();
+        }
+        loadSnapshot();
+        scheduleRefresh(Duration.ZERO);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Returns the known keys matching the selector. If none match, the keys are refreshed first unless
+     * they were refreshed less than the minimum refresh interval ago.
+     *
+     * @param jwkSelector selects the key of the token
+     * @param context     not used
+     * @return the matching keys, empty if the key is not known
+     */
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) throws KeySourceException {
+        List<JWK> matches = jwkSelector.select(keys);
+        if (!matches.isEmpty()) {
+            return matches;
+        }
+        CompletableFuture<JWKSet> refresh = inFlight.get();
+        if (refresh == null) {
+            if (System.nanoTime() - lastRefreshStart < minRefreshInterval.toNanos()) {
+                return matches;
+            }
+            refresh = refresh();
+        }
+        try {
+            return jwkSelector.select(refresh.get(refreshTimeout.toMillis(), TimeUnit.MILLISECONDS));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return matches;
+        } catch (ExecutionException | TimeoutException ex) {
+            log.warn("No key matches the token and the keys could not be refreshed", ex);
+            return jwkSelector.select(keys);
+        }
+    }
+
+    /**
+     * Starts a refresh of the keys, or returns the one in progress.
+     *
+     * @return completes with the refreshed keys, or with the error of the refresh
+     */
+    CompletableFuture<JWKSet> refresh() {
+        CompletableFuture<JWKSet> created = new CompletableFuture<>();
+        CompletableFuture<JWKSet> running = inFlight.compareAndExchange(null, created);
+        if (running != null) {
+            return running;
+        }
+        lastRefreshStart = System.nanoTime();
+        scheduler.execute(() -> {
+            try {
+                JWKSet fetched = fetch();
+                keys = fetched;
+                inFlight.set(null);
+                created.complete(fetched);
+            } catch (Exception ex) {
+                inFlight.set(null);
+                created.completeExceptionally(ex);
+            }
+        });
+        return created;
+    }
+
+    /**
+     * Refreshes the keys after the given delay, then keeps refreshing them at jittered intervals.
+     */
+    private void scheduleRefresh(Duration delay) {
+        if (scheduler.isShutdown()) {
+            return;
+        }
+        scheduler.schedule(() -> refresh().whenComplete((fetched, ex) -> {
+            if (ex != null) {
+                log.warn("Could not refresh the keys from {}, keeping the last known keys", jwkSetUrl, ex);
+            }
+            scheduleRefresh(jitter(ex == null ? refreshInterval : minRefreshInterval));
+        }), delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private static Duration jitter(Duration interval) {
+        double factor = 1 + ThreadLocalRandom.current().nextDouble(-JITTER, JITTER);
+        return Duration.ofMillis((long) (interval.toMillis() * factor));
+    }
+
+    /**
+     * Downloads the public keys and saves them as the new snapshot.
+     */
+    private JWKSet fetch() throws IOException, ParseException {
+        JWKSet fetched = JWKSet.parse(retriever.retrieveResource(jwkSetUrl).getContent()).toPublicJWKSet();
+        log.debug("Refreshed {} keys from {}", fetched.size(), jwkSetUrl);
+        saveSnapshot(fetched);
+        return fetched;
+    }
+
+    /**
+     * Fails unless the directory of the snapshot is owned by the service user and writable by nobody else,
+     * anyone who can write there could replace the keys.
+     */
+    private void checkSnapshotDirectory() {
+        Path directory = snapshotFile.toAbsolutePath().getParent();
+        try {
+            if (Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS) && ownedAndPrivate(directory)) {
+                return;
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not check the directory of the key snapshot " + directory, ex);
+        }
+        throw new IllegalStateException("The directory of the key snapshot " + directory
+                + " must exist, be owned by the service user and not be writable by group or others");
+    }
+
+    private void loadSnapshot() {
+        if (snapshotFile == null || !Files.isRegularFile(snapshotFile, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        try {
+            if (!ownedAndPrivate(snapshotFile)) {
+                log.warn("Ignoring the keys in {}, the file is not owned by the service user or is writable by others", snapshotFile);
+                return;
+            }
+            keys = JWKSet.parse(Files.readString(snapshotFile, StandardCharsets.UTF_8));
+            log.info("Loaded {} keys from {}", keys.size(), snapshotFile);
+        } catch (IOException | ParseException ex) {
+            log.warn("Could not load the keys from {}", snapshotFile, ex);
+        }
+    }
+
+    /**
+     * Returns whether the path is owned by the user running the service and cannot be written by its
+     * group or by others. Only the owner is checked on file systems without POSIX permissions.
+     */
+    private static boolean ownedAndPrivate(Path path) throws IOException {
+        UserPrincipal serviceUser = path.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        if (!serviceUser.equals(Files.getOwner(path, LinkOption.NOFOLLOW_LINKS))) {
+            return false;
+        }
+        PosixFileAttributeView view = Files.getFileAttributeView(path, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS);
+        if (view == null) {
+            return true;
+        }
+        Set<PosixFilePermission> permissions = view.readAttributes().permissions();
+        return !permissions.contains(PosixFilePermission.GROUP_WRITE) && !permissions.contains(PosixFilePermission.OTHERS_WRITE);
+    }
+
+    /**
+     * Replaces the snapshot atomically, so a crash never leaves a partial file behind. The file is only
+     * readable and writable by the service user.
+     */
+    private void saveSnapshot(JWKSet fetched) {
+        if (snapshotFile == null) {
+            return;
+        }
+        try {
+            Path parent = snapshotFile.toAbsolutePath().getParent();
+            Path temp = parent.getFileSystem().supportedFileAttributeViews().contains("posix")
+                    ? Files.createTempFile(parent, snapshotFile.getFileName().toString(), ".tmp", OWNER_ONLY)
+                    : Files.createTempFile(parent, snapshotFile.getFileName().toString(), ".tmp");
+            try {
+                Files.writeString(temp, fetched.toString(), StandardCharsets.UTF_8);
+                Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException ex) {
+            log.warn("Could not save the keys to {}", snapshotFile, ex);
+        }
+    }
+
+    private static URL toUrl(String jwkSetUri) {
+        try {
+            return URI.create(jwkSetUri).toURL();
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Invalid JWK set URI " + jwkSetUri, ex);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.app.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * The groups of routes that get a concurrency limit of their own, so a flood of registrations cannot
+ * starve the catalog, the reads of signed-in users or the admin endpoints and the other way around.
+ */
+public enum RouteGroup {
+
+    // The public catalog of upcoming workshops
+    PUBLIC_READ,
+    // Reads of signed-in users, workshops by code and their own registrations
+    USER_READ,
+    // The registrations of users and the tickets of queued registrations
+    USER_WRITE,
+    // Everything else of the API, used by admins
+    ADMIN;
+
+    private static final String API_PREFIX = "/api/v1/";
+
+    /**
+     * Returns the group of a request.
+     *
+     * @param request the request
+     * @return the group of the request, or null if the request is not an API request
+     */
+    public static RouteGroup of(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.startsWith(API_PREFIX)) {
+            return null;
+        }
+        String route = path.substring(API_PREFIX.length());
+        String method = request.getMethod();
+        if ("GET".equals(method) && route.equals("workshops/upcoming")) {
+            return PUBLIC_READ;
+        }
+        if ("GET".equals(method) && (isWorkshopByCode(route) || route.equals("user/registrations")
+                || (route.equals("workshops") && request.getParameter("codes") != null))) {
+            return USER_READ;
+        }
+        if (("POST".equals(method) && route.equals("registrations"))
+                || ("GET".equals(method) && route.startsWith("registrations/tickets/"))) {
+            return USER_WRITE;
+        }
+        return ADMIN;
+    }
+
+    /**
+     * Returns whether the route reads a single workshop, workshops/{code}.
+     */
+    private static boolean isWorkshopByCode(String route) {
+        return route.startsWith("workshops/") && route.indexOf('/', "workshops/".length()) < 0;
+    }
+}
@@ -0,0 +1,73 @@
+package com.app.config;
+
+import com.app.model.entity.Workshop;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Configures the Hibernate second-level cache, backed by in-memory Caffeine caches through JCache. Only
+ * the regions created here exist, Hibernate fails to start if an entity asks for any other region.
+ * Each instance caches on its own, so writes on other instances are picked up when the entries expire.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    /**
+     * Creates the cache regions of workshops by id and of workshop ids by code.
+     *
+     * @param ttl        how long an entry is kept after it was written
+     * @param maxEntries the maximum number of entries of each region
+     * @return the cache manager holding the regions
+     */
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(@Value("${workshop.entity-cache.ttl:PT30S}") Duration ttl,
+                                              @Value("${workshop.entity-cache.max-entries:10000}") long maxEntries) {
+        // A cache manager of its own per application context, the provider shares managers by URI
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("workshop-service:hibernate:" + UUID.randomUUID()), getClass().getClassLoader());
+        for (String region : List.of(Workshop.CACHE_REGION, Workshop.NATURAL_ID_CACHE_REGION)) {
+            CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+            configuration.setMaximumSize(OptionalLong.of(maxEntries));
+            configuration.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+            // Hibernate caches immutable disassembled state, so entries need not be copied
+            configuration.setStoreByValue(false);
+            configuration.setStatisticsEnabled(true);
+            cacheManager.createCache(region, configuration);
+        }
+        return cacheManager;
+    }
+
+    /**
+     * Enables the second-level cache on the Hibernate session factory.
+     *
+     * @param enabled               whether the second-level cache is used at all
+     * @param hibernateCacheManager the cache manager holding the regions
+     * @return the customizer of the Hibernate properties
+     */
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(@Value("${workshop.entity-cache.enabled:true}") boolean enabled,
+                                                                    CacheManager hibernateCacheManager) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, enabled);
+            if (enabled) {
+                properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+                properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+                properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+            }
+        };
+    }
+}
@@ -1,9 +1,16 @@
 package com.app.config;
 
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -16,16 +23,25 @@ import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtTimestampValidator;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
 import org.springframework.security.web.SecurityFilterChain;
 
+import java.time.Duration;
+
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity
 @RequiredArgsConstructor
 public class SecurityConfig {
 
-    @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}")
-    private String jwkSetUri;
+    @Value("${workshop.auth-cache.enabled:true}")
+    private boolean authCacheEnabled;
+
+    @Value("${workshop.auth-cache.max-ttl:PT5M}")
+    private Duration authCacheMaxTtl;
+
+    @Value("${workshop.auth-cache.max-entries:10000}")
+    private long authCacheMaxEntries;
 
     // URLS that can be accessed without any authentication.
     private static final String[] WHITELIST_URLS = {"/api/v1/workshops/upcoming", "/h2-console",
@@ -36,16 +52,19 @@ public class SecurityConfig {
             "/swagger-resources","/actuator/health"};
     // The JWT authentication converter for converting JWT tokens to authentication objects.
     private final JwtAuthConverter jwtAuthConverter;
+    // The signing keys of the identity provider, refreshed in the background
+    private final ResilientJwkSource jwkSource;
 
     /**
      * Security filter chain for the application.
      *
-     * @param http the HttpSecurity object to configure
+     * @param http          the HttpSecurity object to configure
+     * @param meterRegistry the registry of the authentication cache metrics
      * @return the configured SecurityFilterChain
      * @throws Exception if an error occurs during configuration
      */
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, MeterRegistry meterRegistry) throws Exception {
         http.cors(AbstractHttpConfigurer::disable)
                 .csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(auth -> {
@@ -53,10 +72,9 @@ public class SecurityConfig {
                             .anyRequest().authenticated(); // Authenticate any other request
                 })
                 .oauth2ResourceServer(oauth2 ->
-                        oauth2.jwt(jwt -> {
-                            jwt.decoder(jwtDecoder());
-                            jwt.jwtAuthenticationConverter(jwtAuthConverter);
-                        }).authenticationEntryPoint(new CustomAuthenticationEntryPoint()))
+                        oauth2.jwt(jwt -> jwt.authenticationManager(
+                                new ProviderManager(jwtAuthenticationProvider(meterRegistry))))
+                                .authenticationEntryPoint(new CustomAuthenticationEntryPoint()))
                 .sessionManagement(session ->
                         session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .exceptionHandling(exception ->
@@ -68,12 +86,34 @@ public class SecurityConfig {
     }
 
     /**
-     * Creates a JwtDecoder bean for decoding JWT tokens.
+     * Creates the provider that verifies bearer tokens and converts them into authentications, caching
+     * the result per token unless the authentication cache is disabled.
+     *
+     * @param meterRegistry the registry of the authentication cache metrics
+     * @return the JWT authentication provider
+     */
+    private AuthenticationProvider jwtAuthenticationProvider(MeterRegistry meterRegistry) {
+        JwtAuthenticationProvider provider = new JwtAuthenticationProvider(jwtDecoder());
+        provider.setJwtAuthenticationConverter(jwtAuthConverter);
+        if (!authCacheEnabled) {
+            return provider;
+        }
+        return new CachingJwtAuthenticationProvider(provider, authCacheMaxTtl, authCacheMaxEntries, meterRegistry);
+    }
+
+    /**
+     * Creates a JwtDecoder bean for decoding JWT tokens. The RS256 signatures are verified with the
+     * locally kept keys of the {@link ResilientJwkSource}.
      * @return the JwtDecoder bean
      */
     @Bean
     public JwtDecoder jwtDecoder() {
-        NimbusJwtDecoder jwtDecoder = NimbusJwtDecoder.withJwkSetUri(jwkSetUri).build();
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, jwkSource));
+        // Claims are validated by the Spring validator below
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+        NimbusJwtDecoder jwtDecoder = new NimbusJwtDecoder(jwtProcessor);
         // Only validate timestamps (exp, nbf), skip issuer validation
         OAuth2TokenValidator<Jwt> validator = new DelegatingOAuth2TokenValidator<>(
                 new JwtTimestampValidator()
@@ -0,0 +1,59 @@
+package com.app.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets by endpoint and user, kept in a bounded cache that drops the buckets of idle users.
+ * Each bucket is a single atomic timestamp following the generic cell rate algorithm, so taking a
+ * token is one compare-and-set without locks, and a bucket needs no background refill.
+ */
+class TokenBucketStore {
+
+    // The buckets by endpoint and user
+    private final Cache<BucketKey, AtomicLong> buckets;
+
+    TokenBucketStore(long maxBuckets, Duration idleTimeout) {
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(idleTimeout)
+                .build();
+    }
+
+    /**
+     * Takes a token from the bucket of the user for the endpoint.
+     *
+     * @param endpoint the name of the endpoint
+     * @param user     the user
+     * @param limit    the limit of the bucket
+     * @return zero if a token was taken, otherwise the nanos until the next token is available
+     */
+    long tryConsume(String endpoint, String user, RateLimitProperties.Limit limit) {
+        long now = System.nanoTime();
+        long period = limit.period().toNanos();
+        long interval = period / limit.capacity();
+        // The time at which the bucket is full again
+        AtomicLong fullAt = buckets.get(new BucketKey(endpoint, user), key -> new AtomicLong(now));
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + interval;
+            long allowedAt = next - period;
+            if (allowedAt > now) {
+                return allowedAt - now;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    long size() {
+        return buckets.estimatedSize();
+    }
+
+    private record BucketKey(String endpoint, String user) {
+    }
+}
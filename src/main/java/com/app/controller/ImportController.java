@@ -0,0 +1,107 @@
+package com.app.controller;
+
+import com.app.model.entity.ImportKind;
+import com.app.model.request.FileFormat;
+import com.app.model.response.ImportErrorResponse;
+import com.app.model.response.ImportJobResponse;
+import com.app.service.ImportService;
+import com.app.service.WorkshopService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Controller for the import endpoints
+ */
+@RestController
+@RequestMapping("/api/v1")
+@RequiredArgsConstructor
+@Slf4j
+public class ImportController {
+
+    // The import service
+    private final ImportService importService;
+
+    /**
+     * Start importing a file of workshops or registrations
+     * @param kind    what the file contains, workshops or registrations
+     * @param format  the file format, csv or ndjson
+     * @param body    the content of the file
+     * @return the created import job, its location is sent in the Location header
+     * @throws IOException if the upload cannot be stored
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping(value = "/import/{kind}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Import workshops or registrations", description = "Stores the uploaded CSV or NDJSON file and imports it in the background.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Import job created"),
+            @ApiResponse(responseCode = "400", description = "Unsupported import or file format"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<ImportJobResponse> startImport(@PathVariable String kind,
+                                                         @RequestParam(defaultValue = "csv") String format,
+                                                         InputStream body) throws IOException {
+        ImportKind importKind = ImportKind.of(kind);
+        FileFormat fileFormat = FileFormat.of(format);
+        log.info("Importing {} as {}", importKind, fileFormat);
+        ImportJobResponse job = importService.startImport(importKind, fileFormat, body);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .header(HttpHeaders.LOCATION, "/api/v1/import/" + job.getJobId())
+                .body(job);
+    }
+
+    /**
+     * Get the progress of an import job
+     * @param jobId the id of the import job
+     * @return the import job
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(value = "/import/{jobId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Get an import job", description = "Retrieves the status and row counts of an import job.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the import job"),
+            @ApiResponse(responseCode = "404", description = "Import job not found")
+    })
+    public ImportJobResponse getImportJob(@PathVariable String jobId) {
+        log.info("Getting import job {}", jobId);
+        return importService.getImportJob(jobId);
+    }
+
+    /**
+     * Get the rows rejected by an import job, one page at a time
+     * @param jobId   the id of the import job
+     * @param cursor  the cursor returned with the previous page, absent for the first page
+     * @param limit   the page size
+     * @return a page of rejected rows, the cursor of the next page is sent in the X-Next-Cursor header
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(value = "/import/{jobId}/errors", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Get the errors of an import job", description = "Retrieves a page of the rejected rows of an import job, ordered by line.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the rejected rows"),
+            @ApiResponse(responseCode = "404", description = "Import job not found")
+    })
+    public ResponseEntity<List<ImportErrorResponse>> getImportErrors(@PathVariable String jobId,
+                                                                     @RequestParam(required = false) Long cursor,
+                                                                     @RequestParam(defaultValue = "" + WorkshopService.DEFAULT_PAGE_SIZE) int limit) {
+        log.info("Getting errors of import job {}", jobId);
+        List<ImportErrorResponse> errors = importService.getImportErrors(jobId, cursor, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK);
+        if (errors.size() == Math.clamp(limit, 1, WorkshopService.MAX_PAGE_SIZE)) {
+            response.header(WorkshopController.NEXT_CURSOR_HEADER, String.valueOf(errors.getLast().getLineNo()));
+        }
+        return response.body(errors);
+    }
+}
@@ -1,10 +1,21 @@
 package com.app.controller;
 
+import com.app.config.IdempotencyFilter;
+import com.app.config.RateLimited;
+import com.app.exception.RegistrationTicketNotFoundException;
+import com.app.model.request.FileFormat;
 import com.app.model.request.RegistrationsRequest;
+import com.app.model.response.BulkRegistrationResult;
+import com.app.model.response.RegistrationPage;
+import com.app.model.response.RegistrationTicket;
 import com.app.model.response.RegistrationsResponse;
+import com.app.service.RegistrationIntakeService;
 import com.app.service.RegistrationService;
 import com.app.service.WorkshopRegistrationService;
+import com.app.service.WorkshopService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -12,13 +23,18 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.ZonedDateTime;
 import java.util.List;
 
 /**
@@ -34,6 +50,8 @@ public class RegistrationController {
     private final RegistrationService registrationService;
     // The workshop registration service
     private final WorkshopRegistrationService workshopRegistrationService;
+    // The asynchronous registration intake, available when it is enabled
+    private final ObjectProvider<RegistrationIntakeService> registrationIntakeService;
 
     /**
      * Get all registrations
@@ -52,22 +70,67 @@ public class RegistrationController {
     }
 
     /**
-     * Get all registrations by workshop code
+     * Export registrations, streamed to the client as they are read
+     * @param format        the export format, ndjson or csv
+     * @param workshopCode  the code of the workshop, all workshops if absent
+     * @param from          only workshops starting at or after this time
+     * @param to            only workshops starting before this time
+     * @return the registrations as NDJSON or CSV
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(value = "/export/registrations")
+    @Operation(summary = "Export registrations", description = "Streams registrations as NDJSON or CSV, optionally filtered by workshop code and workshop start time.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully exported registrations"),
+            @ApiResponse(responseCode = "400", description = "Unsupported file format"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<StreamingResponseBody> exportRegistrations(@RequestParam(defaultValue = "ndjson") String format,
+                                                                     @RequestParam(required = false) String workshopCode,
+                                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) ZonedDateTime from,
+                                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) ZonedDateTime to) {
+        log.info("Exporting registrations as {} for workshop code {}", format, workshopCode);
+        FileFormat fileFormat = FileFormat.of(format);
+        StreamingResponseBody body = out -> registrationService.exportRegistrations(fileFormat, workshopCode, from, to, out);
+        return ResponseEntity.status(HttpStatus.OK)
+                .contentType(fileFormat.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"registrations." + fileFormat.getExtension() + "\"")
+                .body(body);
+    }
+
+    /**
+     * Get the registrations of a workshop, one page at a time
      * @param workshopCode  the code of the workshop
-     * @return a list of all registrations for the workshop
+     * @param cursor        the cursor returned with the previous page, absent for the first page
+     * @param limit         the page size
+     * @param total         whether to return the total number of registrations in the X-Total-Count header
+     * @return a page of registrations for the workshop, the cursor of the next page is sent in the X-Next-Cursor header
      */
     @PreAuthorize("hasRole('ADMIN')")
     @GetMapping(value = "/registrations/{workshopCode}", produces = MediaType.APPLICATION_JSON_VALUE)
-    @Operation(summary = "Get all registrations for a workshop", description = "Retrieves a list of all registrations for a workshop.")
+    @Operation(summary = "Get all registrations for a workshop", description = "Retrieves a page of registrations for a workshop, ordered by registration id.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved list of registrations"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public ResponseEntity<?> getRegistrations(@PathVariable String workshopCode) {
+    public ResponseEntity<?> getRegistrations(@PathVariable String workshopCode,
+                                              @RequestParam(required = false) Integer cursor,
+                                              @RequestParam(defaultValue = "" + WorkshopService.DEFAULT_PAGE_SIZE) int limit,
+                                              @RequestParam(defaultValue = "false") boolean total) {
         log.info("Getting registration with workshop code  {} ", workshopCode);
-        List<RegistrationsResponse> registrations = workshopRegistrationService.getRegistrationsByCode(workshopCode);
+        RegistrationPage page = workshopRegistrationService.getRegistrationsByCode(workshopCode, cursor, limit);
+        List<RegistrationsResponse> registrations = page.getRegistrations();
         if (CollectionUtils.isNotEmpty(registrations)) {
-            return ResponseEntity.status(HttpStatus.OK).body(registrations);
+            ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK);
+            if (page.getNextCursor() != null) {
+                response.header(WorkshopController.NEXT_CURSOR_HEADER, String.valueOf(page.getNextCursor()));
+            }
+            if (total) {
+                // Read from the maintained seat counter instead of counting the rows
+                response.header(WorkshopController.TOTAL_COUNT_HEADER,
+                        String.valueOf(workshopRegistrationService.getWorkshopCapacity(workshopCode)));
+            }
+            return response.body(registrations);
         } else {
             log.debug("No registrations found for workshop code {}" , workshopCode);
             return ResponseEntity.status(HttpStatus.OK).body("No registrations found for workshop code " + workshopCode);
@@ -75,22 +138,56 @@ public class RegistrationController {
     }
 
     /**
-     * Create a new registration
+     * Register several users at once
+     * @param registrationRequests the registrations, each with the user details
+     * @return the result of each registration, in the order of the request
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping(value = "/registrations/bulk", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Register several users", description = "Registers up to 500 users, returning the result of each registration.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Registrations processed, see the status of each item"),
+            @ApiResponse(responseCode = "400", description = "Too many registrations")
+    })
+    public List<BulkRegistrationResult> createRegistrations(@RequestBody List<RegistrationsRequest> registrationRequests) {
+        log.info("Bulk registration of {} users", registrationRequests.size());
+        return registrationService.createRegistrations(registrationRequests);
+    }
+
+    /**
+     * Create a new registration, or accept it to be written in the background when the asynchronous intake is enabled
      * @param registrationRequest the registration data
      * @param authentication   the authentication object
-     * @return the created registration
+     * @return the created registration, or the ticket of the accepted registration
      */
     @PreAuthorize("hasRole('USER')")
+    @RateLimited("create-registration")
     @PostMapping(value = "/registrations", consumes = MediaType.APPLICATION_JSON_VALUE,
             produces = MediaType.APPLICATION_JSON_VALUE)
     @ResponseStatus(HttpStatus.CREATED)
     @Operation(summary = "Register user for a workshop", description = "Register user for a workshop")
+    @Parameter(name = IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, in = ParameterIn.HEADER,
+            description = "Unique key of the operation, retries with the same key get the first response back")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "201", description = "Register user for a workshop",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = RegistrationsRequest.class))}),
-            @ApiResponse(responseCode = "400", description = "Registration not successful", content = @Content)})
-    public ResponseEntity<RegistrationsResponse> createRegistration(@RequestBody RegistrationsRequest registrationRequest, Authentication authentication) {
+            @ApiResponse(responseCode = "202", description = "Registration accepted, poll the ticket in the Location header for its outcome",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = RegistrationTicket.class))}),
+            @ApiResponse(responseCode = "400", description = "Registration not successful", content = @Content),
+            @ApiResponse(responseCode = "409", description = "A request with the same idempotency key is in progress", content = @Content),
+            @ApiResponse(responseCode = "422", description = "Idempotency key used for a different request", content = @Content),
+            @ApiResponse(responseCode = "429", description = "Too many registrations of the user", content = @Content),
+            @ApiResponse(responseCode = "503", description = "Too many registrations waiting to be written", content = @Content)})
+    public ResponseEntity<?> createRegistration(@RequestBody RegistrationsRequest registrationRequest, Authentication authentication) {
         log.info("Registration Request data {}", registrationRequest);
+        RegistrationIntakeService intake = registrationIntakeService.getIfAvailable();
+        if (intake != null) {
+            RegistrationTicket ticket = intake.submit(registrationRequest, authentication);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .header(HttpHeaders.LOCATION, "/api/v1/registrations/tickets/" + ticket.getTicketId())
+                    .body(ticket);
+        }
         RegistrationsResponse registrationSaved = registrationService.createRegistration(registrationRequest, authentication);
         if (null != registrationSaved) {
             return ResponseEntity.status(HttpStatus.CREATED).body(registrationSaved);
@@ -99,6 +196,28 @@ public class RegistrationController {
         }
     }
 
+    /**
+     * Get the outcome of a registration accepted by the asynchronous intake
+     * @param ticketId       the id of the ticket
+     * @param authentication the authentication object
+     * @return the ticket, with the registration once it is written
+     */
+    @PreAuthorize("hasRole('USER')")
+    @GetMapping(value = "/registrations/tickets/{ticketId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Get a registration ticket", description = "Retrieves the status of a registration accepted for asynchronous processing.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the ticket"),
+            @ApiResponse(responseCode = "404", description = "Ticket not found or expired")
+    })
+    public RegistrationTicket getRegistrationTicket(@PathVariable String ticketId, Authentication authentication) {
+        log.info("Getting registration ticket {}", ticketId);
+        RegistrationIntakeService intake = registrationIntakeService.getIfAvailable();
+        if (intake == null) {
+            throw new RegistrationTicketNotFoundException("Registration ticket not found with given id: " + ticketId);
+        }
+        return intake.getTicket(ticketId, authentication);
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     @DeleteMapping(value = "/registrations/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
     @Operation(summary = "Delete a user registration", description = "Deletes a user registration using its id.")
@@ -119,11 +238,13 @@ public class RegistrationController {
      * @return a list of all user registrations
      */
     @PreAuthorize("hasRole('USER')")
+    @RateLimited("user-registrations")
     @GetMapping(value = "/user/registrations", produces = MediaType.APPLICATION_JSON_VALUE)
     @Operation(summary = "Get all user registrations", description = "Retrieves a list of all registrations specific to user.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved list of registrations specific to user"),
             @ApiResponse(responseCode = "401", description = "User is not authenticated"),
+            @ApiResponse(responseCode = "429", description = "Too many requests of the user"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     public ResponseEntity<?> getUserRegistrations(Authentication authentication) {
@@ -1,10 +1,16 @@
 package com.app.controller;
 
+import com.app.config.IdempotencyFilter;
 import com.app.model.request.WorkshopRequest;
 import com.app.model.request.WorkshopUpdateRequest;
+import com.app.model.response.CatalogSnapshot;
+import com.app.model.response.WorkshopBatchResponse;
 import com.app.model.response.WorkshopResponse;
 import com.app.service.WorkshopService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -12,12 +18,18 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.Duration;
 import java.util.List;
 
 /**
@@ -34,37 +46,128 @@ public class WorkshopController {
     private final WorkshopService workshopService;
 
     /**
-     * Get all upcoming workshops
+     * How long shared caches may serve the public upcoming workshops without revalidating
+     */
+    @Value("${workshop.http-cache.max-age:PT10S}")
+    private Duration publicMaxAge;
+
+    /**
+     * How long shared caches may serve a stale page while they revalidate in the background
+     */
+    @Value("${workshop.http-cache.stale-while-revalidate:PT30S}")
+    private Duration publicStaleWhileRevalidate;
+
+    /**
+     * Header carrying the cursor of the next page of upcoming workshops
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    /**
+     * Get one page of upcoming workshops
      *
-     * @return a list of all upcoming workshops.
+     * @param cursor         the cursor of the page, taken from the previous response
+     * @param limit          the maximum number of workshops to return
+     * @param acceptEncoding the encodings accepted by the client
+     * @return a page of upcoming workshops as pre-serialized JSON, gzip compressed when the client accepts it.
+     * The next page cursor is sent in the X-Next-Cursor header. A matching If-None-Match gets 304.
      */
     @GetMapping(value = "/workshops/upcoming", produces = MediaType.APPLICATION_JSON_VALUE)
-    @Operation(summary = "Get all upcoming workshops", description = "Retrieves a list of all  upcoming workshops.")
+    @Operation(summary = "Get all upcoming workshops", description = "Retrieves a page of upcoming workshops ordered by start time. " +
+            "Pass the X-Next-Cursor header of a response as cursor to get the next page.")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Successfully retrieved list of upcoming workshops"),
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved list of upcoming workshops",
+                    content = {@Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = WorkshopResponse.class)))}),
+            @ApiResponse(responseCode = "304", description = "Page not modified"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public List<WorkshopResponse> getUpcomingWorkshops() {
-        log.info("Getting all upcoming workshop details ");
-        return workshopService.getUpcomingWorkshops();
+    public ResponseEntity<byte[]> getUpcomingWorkshops(@RequestParam(required = false) String cursor,
+                                                       @RequestParam(defaultValue = "" + WorkshopService.DEFAULT_PAGE_SIZE) int limit,
+                                                       @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        log.info("Getting upcoming workshop details, cursor {} limit {}", cursor, limit);
+        CatalogSnapshot snapshot = workshopService.getUpcomingWorkshopsSnapshot(cursor, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .cacheControl(CacheControl.maxAge(publicMaxAge).cachePublic()
+                        .staleWhileRevalidate(publicStaleWhileRevalidate));
+        if (null != snapshot.getNextCursor()) {
+            response.header(NEXT_CURSOR_HEADER, snapshot.getNextCursor());
+        }
+        // The ETag differs per encoding, the returned bytes are a different representation
+        if (null != snapshot.getGzip() && acceptsGzip(acceptEncoding)) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .eTag(snapshot.getEtag() + "-gzip")
+                    .body(snapshot.getGzip());
+        }
+        return response.eTag(snapshot.getEtag()).body(snapshot.getJson());
+    }
 
+    /**
+     * Checks whether the Accept-Encoding header allows a gzip response.
+     *
+     * @param acceptEncoding the Accept-Encoding header value
+     * @return true if gzip or any encoding is accepted with a non-zero quality
+     */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (null == acceptEncoding) {
+            return false;
+        }
+        for (String encoding : acceptEncoding.split(",")) {
+            String[] parts = encoding.trim().split(";");
+            String name = parts[0].trim();
+            if (("gzip".equalsIgnoreCase(name) || "*".equals(name))
+                    && !(parts.length > 1 && parts[1].trim().matches("q=0(\\.0*)?"))) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
-     * Get all workshops
+     * Header carrying the total number of elements of a paginated list
+     */
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    /**
+     * Get all workshops, one page at a time
      *
-     * @return a list of all workshops.
+     * @param page the page number, starting at 0
+     * @param size the page size
+     * @return a page of workshops, the total number of workshops is sent in the X-Total-Count header.
      */
     @PreAuthorize("hasRole('ADMIN')")
     @GetMapping(value = "/workshops", produces = MediaType.APPLICATION_JSON_VALUE)
-    @Operation(summary = "Get all workshops", description = "Retrieves a list of all workshops.")
+    @Operation(summary = "Get all workshops", description = "Retrieves a page of workshops with their registrations.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved list of workshops"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public List<WorkshopResponse> getWorkshops() {
-        log.info("Getting all workshop details by admin user");
-        return workshopService.getAllWorkshops();
+    public ResponseEntity<List<WorkshopResponse>> getWorkshops(@RequestParam(defaultValue = "0") int page,
+                                                               @RequestParam(defaultValue = "" + WorkshopService.DEFAULT_PAGE_SIZE) int size) {
+        log.info("Getting all workshop details by admin user, page {} size {}", page, size);
+        Page<WorkshopResponse> workshops = workshopService.getAllWorkshops(page, size);
+        return ResponseEntity.status(HttpStatus.OK)
+                .header(TOTAL_COUNT_HEADER, String.valueOf(workshops.getTotalElements()))
+                .body(workshops.getContent());
+    }
+
+    /**
+     * Get several workshops by code in one request
+     *
+     * @param codes the codes of the workshops, at most 100
+     * @return the workshops found, without their registrations, and the codes that were not found.
+     */
+    @PreAuthorize("hasRole('ADMIN') or hasRole('USER')")
+    @GetMapping(value = "/workshops", params = "codes", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Get workshops by codes", description = "Retrieves the details of several workshops in one request, reporting the codes that were not found.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved workshop details"),
+            @ApiResponse(responseCode = "400", description = "Too many workshop codes")
+    })
+    public WorkshopBatchResponse getWorkshopsByCodes(@RequestParam List<String> codes) {
+        log.info("Getting {} workshops by code", codes.size());
+        return workshopService.getWorkshopsByCodes(codes);
     }
 
     /**
@@ -77,10 +180,14 @@ public class WorkshopController {
     @PostMapping(value = "/workshops", consumes = MediaType.APPLICATION_JSON_VALUE,
             produces = MediaType.APPLICATION_JSON_VALUE)
     @Operation(summary = "Create a new workshop", description = "Create a new workshop")
+    @Parameter(name = IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, in = ParameterIn.HEADER,
+            description = "Unique key of the operation, retries with the same key get the first response back")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "201", description = "Create a new workshop",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = WorkshopRequest.class))}),
-            @ApiResponse(responseCode = "400", description = "Workshop not created", content = @Content)})
+            @ApiResponse(responseCode = "400", description = "Workshop not created", content = @Content),
+            @ApiResponse(responseCode = "409", description = "A request with the same idempotency key is in progress", content = @Content),
+            @ApiResponse(responseCode = "422", description = "Idempotency key used for a different request", content = @Content)})
     public ResponseEntity<WorkshopRequest> createWorkshop(@Valid @RequestBody WorkshopRequest workshopRequest) {
         log.info("Workshop Request data {}", workshopRequest);
         WorkshopRequest workshopSaved = workshopService.createWorkshop(workshopRequest);
@@ -95,7 +202,8 @@ public class WorkshopController {
      * Get a workshop by code
      *
      * @param workshopCode the code of the workshop to retrieve.
-     * @return the workshop with the specified code.
+     * @param webRequest   the current request, used to answer If-None-Match from the cached ETag
+     * @return the workshop with the specified code, or 304 if the client copy is still current.
      */
     @PreAuthorize("hasRole('ADMIN') or hasRole('USER')")
     @GetMapping(value = "/workshops/{workshopCode}", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -103,14 +211,25 @@ public class WorkshopController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved workshop details",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = WorkshopRequest.class))}),
+            @ApiResponse(responseCode = "304", description = "Workshop not modified"),
             @ApiResponse(responseCode = "400", description = "Invalid workshop code")
     })
-    public ResponseEntity<WorkshopResponse> getWorkshop(@PathVariable String workshopCode) {
+    public ResponseEntity<WorkshopResponse> getWorkshop(@PathVariable String workshopCode, WebRequest webRequest) {
         log.info("Getting workshop with code  {} ", workshopCode);
+        String cachedETag = workshopService.getCachedETag(workshopCode);
+        if (null != cachedETag && webRequest.checkNotModified(cachedETag)) {
+            log.debug("Workshop {} not modified", workshopCode);
+            return null;
+        }
         // Get the workshop details using the provided code
         WorkshopResponse workshopResponse = workshopService.getWorkshopByCode(workshopCode);
         if (null != workshopResponse) {
-            return ResponseEntity.status(HttpStatus.OK).body(workshopResponse);
+            ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK)
+                    .cacheControl(CacheControl.noCache().cachePrivate());
+            if (null != workshopResponse.getEtag()) {
+                response.eTag(workshopResponse.getEtag());
+            }
+            return response.body(workshopResponse);
         } else {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
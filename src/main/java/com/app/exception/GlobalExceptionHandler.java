@@ -4,8 +4,11 @@ import com.app.model.response.CustomErrorResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -40,6 +43,17 @@ public class GlobalExceptionHandler {
 
     }
 
+    @ExceptionHandler(ImportJobNotFoundException.class)
+    public ResponseEntity<CustomErrorResponse> handleImportJobNotFoundException(ImportJobNotFoundException ex) {
+        CustomErrorResponse customErrorResponse = CustomErrorResponse.builder()
+                .header("ImportJobNotFound")
+                .message(ex.getMessage())
+                .build();
+
+        return new ResponseEntity<>(customErrorResponse, HttpStatus.NOT_FOUND);
+
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<?> handleMethodArgumentNotValidException(MethodArgumentNotValidException ex) {
         LOGGER.error("Validation failed for workshop : {}", ex);
@@ -96,4 +110,49 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(customError, HttpStatus.OK);
     }
 
+    @ExceptionHandler(RegistrationTicketNotFoundException.class)
+    public ResponseEntity<CustomErrorResponse> handleRegistrationTicketNotFoundException(RegistrationTicketNotFoundException ex) {
+        CustomErrorResponse customErrorResponse = CustomErrorResponse.builder()
+                .header("RegistrationTicketNotFound")
+                .message(ex.getMessage())
+                .build();
+        return new ResponseEntity<>(customErrorResponse, HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler(RegistrationIntakeFullException.class)
+    public ResponseEntity<?> handleRegistrationIntakeFullException(RegistrationIntakeFullException ex) {
+        LOGGER.warn("Registration intake full : {}", ex.getMessage());
+        CustomErrorResponse customError = CustomErrorResponse.builder()
+                .header("Service busy")
+                .message(ex.getMessage())
+                .build();
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(customError);
+    }
+
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<?> handleRateLimitExceededException(RateLimitExceededException ex) {
+        LOGGER.debug("Rate limit exceeded : {}", ex.getMessage());
+        CustomErrorResponse customError = CustomErrorResponse.builder()
+                .header("Too many requests")
+                .message(ex.getMessage())
+                .build();
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(customError);
+    }
+
+    @ExceptionHandler({CannotCreateTransactionException.class, DataAccessResourceFailureException.class})
+    public ResponseEntity<?> handleDatabaseUnavailableException(RuntimeException ex) {
+        LOGGER.warn("No database connection available : {}", ex.getMessage());
+        CustomErrorResponse customError = CustomErrorResponse.builder()
+                .header("Service busy")
+                .message("The service is busy, please try again later")
+                .build();
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(customError);
+    }
+
 }
@@ -0,0 +1,12 @@
+package com.app.exception;
+
+import java.io.Serial;
+
+public class ImportJobNotFoundException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = 6218807641255314219L;
+
+    public ImportJobNotFoundException(final String message) {
+        super(message);
+    }
+}
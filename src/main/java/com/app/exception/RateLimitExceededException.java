@@ -0,0 +1,18 @@
+package com.app.exception;
+
+import lombok.Getter;
+
+import java.io.Serial;
+
+@Getter
+public class RateLimitExceededException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = 6093124410847291655L;
+    // The seconds until the next call is allowed
+    private final long retryAfterSeconds;
+
+    public RateLimitExceededException(final String message, final long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,12 @@
+package com.app.exception;
+
+import java.io.Serial;
+
+public class RegistrationIntakeFullException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = 4410237650125839921L;
+
+    public RegistrationIntakeFullException(final String message) {
+        super(message);
+    }
+}
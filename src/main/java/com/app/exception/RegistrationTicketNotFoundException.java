@@ -0,0 +1,12 @@
+package com.app.exception;
+
+import java.io.Serial;
+
+public class RegistrationTicketNotFoundException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = 2871469316604528417L;
+
+    public RegistrationTicketNotFoundException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,44 @@
+package com.app.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.ZonedDateTime;
+
+/**
+ * The stored response of a request sent with an {@code Idempotency-Key}, shared by all instances. A record
+ * without a status is a claim of the request that is still executing.
+ */
+@Entity
+@Table(name = "idempotency_keys")
+@Data
+public class IdempotencyRecord {
+
+    // Hash of the user, the endpoint and the key sent by the client
+    @Id
+    @Column(name = "key_hash", length = 64)
+    private String keyHash;
+
+    // Hash of the request body, a retry must send the same body
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    // Status of the response, null while the request is executing
+    @Column(name = "status")
+    private Integer status;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    @Column(name = "location", length = 1024)
+    private String location;
+
+    @Column(name = "body")
+    private byte[] body;
+
+    @Column(name = "created_at", nullable = false)
+    private ZonedDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private ZonedDateTime expiresAt;
+}
@@ -0,0 +1,33 @@
+package com.app.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Why one line of an import was rejected.
+ */
+@Entity
+@Table(name = "import_errors")
+@IdClass(ImportRowId.class)
+@Data
+@NoArgsConstructor
+public class ImportError {
+
+    @Id
+    @Column(name = "job_id", length = 36)
+    private String jobId;
+
+    @Id
+    @Column(name = "line_no")
+    private long lineNo;
+
+    @Column(name = "message", nullable = false, length = 1000)
+    private String message;
+
+    public ImportError(String jobId, long lineNo, String message) {
+        this.jobId = jobId;
+        this.lineNo = lineNo;
+        this.message = message;
+    }
+}
@@ -0,0 +1,53 @@
+package com.app.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.ZonedDateTime;
+
+/**
+ * An import of workshops or registrations from an uploaded file, with its progress.
+ */
+@Entity
+@Table(name = "import_jobs")
+@Data
+public class ImportJob {
+
+    @Id
+    @Column(name = "job_id", length = 36)
+    private String jobId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "kind", nullable = false)
+    private ImportKind kind;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private ImportStatus status;
+
+    // Rows read from the file so far
+    @Column(name = "rows_read", nullable = false)
+    private long rowsRead;
+
+    // Rows merged into the target table
+    @Column(name = "rows_imported", nullable = false)
+    private long rowsImported;
+
+    // Rows rejected by the validation or the merge, see the import errors
+    @Column(name = "rows_rejected", nullable = false)
+    private long rowsRejected;
+
+    // Why the job failed
+    @Column(name = "message")
+    private String message;
+
+    @Column(name = "created_at", nullable = false)
+    private ZonedDateTime createdAt;
+
+    @Column(name = "finished_at")
+    private ZonedDateTime finishedAt;
+
+    // Last time the instance running the job reported progress, a job not updated for long is failed
+    @Column(name = "updated_at", nullable = false)
+    private ZonedDateTime updatedAt;
+}
@@ -0,0 +1,27 @@
+package com.app.model.entity;
+
+import com.app.exception.InvalidWorkshopDataException;
+
+/**
+ * Enum representing what an import job loads.
+ */
+public enum ImportKind {
+    WORKSHOPS,
+    REGISTRATIONS;
+
+    /**
+     * Returns the import kind with the given name, ignoring case.
+     *
+     * @param name the name of the kind
+     * @return the import kind
+     * @throws InvalidWorkshopDataException if the kind is not supported
+     */
+    public static ImportKind of(String name) {
+        for (ImportKind kind : values()) {
+            if (kind.name().equalsIgnoreCase(name)) {
+                return kind;
+            }
+        }
+        throw new InvalidWorkshopDataException("Unsupported import: " + name);
+    }
+}
@@ -0,0 +1,20 @@
+package com.app.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Identifies one line of the file of an import job.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportRowId implements Serializable {
+
+    private String jobId;
+
+    private long lineNo;
+}
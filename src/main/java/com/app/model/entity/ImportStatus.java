@@ -0,0 +1,12 @@
+package com.app.model.entity;
+
+/**
+ * Enum representing the progress of an import job.
+ */
+public enum ImportStatus {
+    RECEIVED,
+    VALIDATING,
+    MERGING,
+    COMPLETED,
+    FAILED
+}
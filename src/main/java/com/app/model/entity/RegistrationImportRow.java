@@ -0,0 +1,45 @@
+package com.app.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * Staging row of a registration import. Rows are bulk loaded with plain JDBC and merged into the
+ * registrations table with set-based SQL, the entity only describes the table.
+ */
+@Entity
+@Table(name = "registration_import_rows", indexes = {
+        @Index(name = "idx_registration_import_rows_user", columnList = "job_id, workshop_code, user_name"),
+        @Index(name = "idx_registration_import_rows_reg_id", columnList = "reg_id")})
+@IdClass(ImportRowId.class)
+@Data
+public class RegistrationImportRow {
+
+    @Id
+    @Column(name = "job_id", length = 36)
+    private String jobId;
+
+    @Id
+    @Column(name = "line_no")
+    private long lineNo;
+
+    // Id the registration gets if the row is merged, allocated from the registrations sequence
+    @Column(name = "reg_id", nullable = false)
+    private Integer registrationId;
+
+    @Column(name = "workshop_code", nullable = false)
+    private String workshopCode;
+
+    @Column(name = "user_name", nullable = false)
+    private String userName;
+
+    @Column(name = "user_email", nullable = false)
+    private String userEmail;
+
+    @Column(name = "user_phone")
+    private String userPhone;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "user_preferred_contact", nullable = false)
+    private PreferredContact userPreferredContact;
+}
@@ -4,11 +4,17 @@ import jakarta.persistence.*;
 import lombok.Data;
 
 @Entity
-@Table(name = "registrations")
+@Table(name = "registrations", indexes = {
+        @Index(name = "idx_registrations_workshop_code_id", columnList = "workshop_code, reg_id"),
+        @Index(name = "idx_registrations_user_name_id", columnList = "user_name, reg_id")}, uniqueConstraints = {
+        // A user registers at most once per workshop, duplicates are detected by the insert
+        @UniqueConstraint(name = "uk_registrations_workshop_code_user_name", columnNames = {"workshop_code", "user_name"})})
 @Data
 public class Registrations {
 
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence, so ids are assigned without a round trip per insert and inserts can be batched
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "registrations_seq")
+    @SequenceGenerator(name = "registrations_seq", sequenceName = "registrations_seq", allocationSize = 50)
     @Id
     @Column(name = "reg_id")
     private Integer registrationId;
@@ -0,0 +1,31 @@
+package com.app.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * One slot of the sharded seat inventory of a workshop. The remaining seats of a
+ * workshop in sharded mode are the sum of its shards.
+ */
+@Entity
+@Table(name = "workshop_seat_shards",
+        uniqueConstraints = @UniqueConstraint(name = "uk_workshop_seat_shards_code_no", columnNames = {"workshop_code", "shard_no"}))
+@Data
+public class SeatInventoryShard {
+
+    // Pooled sequence, so ids are assigned without a round trip per insert and inserts can be batched
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "workshop_seat_shards_seq")
+    @SequenceGenerator(name = "workshop_seat_shards_seq", sequenceName = "workshop_seat_shards_seq", allocationSize = 50)
+    @Id
+    @Column(name = "shard_id")
+    private Integer shardId;
+
+    @Column(name = "workshop_code", nullable = false)
+    private String workshopCode;
+
+    @Column(name = "shard_no", nullable = false)
+    private int shardNo;
+
+    @Column(name = "seats_left", nullable = false)
+    private int seatsLeft;
+}
@@ -2,20 +2,37 @@ package com.app.model.entity;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import java.time.ZonedDateTime;
 import java.util.Set;
 
 @Entity
-@Table(name = "workshops")
+@Table(name = "workshops", indexes = {
+        @Index(name = "idx_workshops_end_time", columnList = "end_time"),
+        @Index(name = "idx_workshops_start_time_id", columnList = "start_time, workshop_id")})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Workshop.CACHE_REGION)
+@NaturalIdCache(region = Workshop.NATURAL_ID_CACHE_REGION)
 @Data
 public class Workshop {
 
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Second-level cache regions of workshops by id and of workshop ids by code
+    public static final String CACHE_REGION = "workshops";
+    public static final String NATURAL_ID_CACHE_REGION = "workshop-codes";
+
+    // Pooled sequence, so ids are assigned without a round trip per insert and inserts can be batched
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "workshops_seq")
+    @SequenceGenerator(name = "workshops_seq", sequenceName = "workshops_seq", allocationSize = 50)
     @Id
     @Column(name = "workshop_id")
     private Integer workshopId;
 
+    @NaturalId
     @Column(name = "code", nullable = false, unique = true)
     private String code;
 
@@ -34,7 +51,37 @@ public class Workshop {
     @Column(name = "capacity", nullable = false)
     private int capacity;
 
+    // Number of seats already claimed, guarded against capacity in a single UPDATE
+    @ColumnDefault("0")
+    @Column(name = "registered_count", nullable = false, updatable = false)
+    private int registeredCount;
+
+    // Number of inventory shards the capacity is split across, 0 when the seat counter above is used
+    @ColumnDefault("0")
+    @Column(name = "inventory_shards", nullable = false, updatable = false)
+    private int inventoryShards;
+
+    // Version of the workshop details, bumped on every update of the entity
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private long version;
+
+    // Revision of the seats and registrations, bumped by every seat claim, release or correction
+    @ColumnDefault("0")
+    @Column(name = "seat_revision", nullable = false, updatable = false)
+    private long seatRevision;
+
     @OneToMany( cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @JoinColumn(name = "workshop_code", referencedColumnName="code")
     private Set<Registrations> registrations;
+
+    /**
+     * Returns whether the seats of this workshop are held in a sharded inventory.
+     *
+     * @return true if the capacity is split across several inventory shards
+     */
+    public boolean hasShardedInventory() {
+        return inventoryShards > 1;
+    }
 }
@@ -0,0 +1,48 @@
+package com.app.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Staging row of a workshop import. Rows are bulk loaded with plain JDBC and merged into the
+ * workshops table with set-based SQL, the entity only describes the table.
+ */
+@Entity
+@Table(name = "workshop_import_rows", indexes = {
+        @Index(name = "idx_workshop_import_rows_code", columnList = "job_id, code")})
+@IdClass(ImportRowId.class)
+@Data
+public class WorkshopImportRow {
+
+    @Id
+    @Column(name = "job_id", length = 36)
+    private String jobId;
+
+    @Id
+    @Column(name = "line_no")
+    private long lineNo;
+
+    // Id the workshop gets if the row is merged, allocated from the workshops sequence
+    @Column(name = "workshop_id", nullable = false)
+    private Integer workshopId;
+
+    @Column(name = "code", nullable = false)
+    private String code;
+
+    @Column(name = "name", nullable = false)
+    private String name;
+
+    @Column(name = "description", nullable = false)
+    private String description;
+
+    @Column(name = "start_time", nullable = false)
+    private ZonedDateTime startTime;
+
+    @Column(name = "end_time", nullable = false)
+    private ZonedDateTime endTime;
+
+    @Column(name = "capacity", nullable = false)
+    private int capacity;
+}
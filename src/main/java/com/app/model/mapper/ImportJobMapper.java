@@ -0,0 +1,14 @@
+package com.app.model.mapper;
+
+import com.app.model.entity.ImportJob;
+import com.app.model.response.ImportJobResponse;
+import org.mapstruct.Mapper;
+
+/**
+ * Maps ImportJob entities to ImportJobResponse.
+ */
+@Mapper(componentModel = "spring")
+public interface ImportJobMapper {
+
+    ImportJobResponse ImportJobToImportJobResponse(ImportJob importJob);
+}
@@ -30,10 +30,54 @@ public interface WorkshopMapper {
 
 
     @Mapping(target = "registrations", ignore = true)
+    @Mapping(target = "seatsTaken", source = "registeredCount")
+    @Mapping(target = "seatsLeft", expression = "java(seatsLeft(workshop))")
+    @Mapping(target = "etag", ignore = true)
     WorkshopResponse WorkshopToWorkshopWithoutRegistrationsResponse(Workshop workshop);
 
 
+    @Mapping(target = "seatsTaken", source = "registeredCount")
+    @Mapping(target = "seatsLeft", expression = "java(seatsLeft(workshop))")
+    @Mapping(target = "etag", expression = "java(etag(workshop))")
     WorkshopResponse WorkshopToWorkshopResponse(Workshop workshop);
 
+    /**
+     * Maps a Workshop entity to its details without the registrations, which are only loaded from the
+     * database and served page by page by the registrations endpoints.
+     *
+     * @param workshop the Workshop entity to map
+     * @return the workshop details with their ETag
+     */
+    @Mapping(target = "registrations", ignore = true)
+    @Mapping(target = "seatsTaken", source = "registeredCount")
+    @Mapping(target = "seatsLeft", expression = "java(seatsLeft(workshop))")
+    @Mapping(target = "etag", expression = "java(etag(workshop))")
+    WorkshopResponse WorkshopToWorkshopDetailsResponse(Workshop workshop);
+
+    /**
+     * Returns the ETag of the workshop, built from the entity version and the seat revision. Registrations
+     * of a sharded workshop do not bump the seat revision, so they get none.
+     *
+     * @param workshop the Workshop entity
+     * @return the ETag, or null for a workshop with a sharded inventory
+     */
+    default String etag(Workshop workshop) {
+        if (workshop.hasShardedInventory()) {
+            return null;
+        }
+        return workshop.getWorkshopId() + "-" + workshop.getVersion() + "-" + workshop.getSeatRevision();
+    }
+
+    /**
+     * Returns the number of seats still available in the workshop, from the counter on the workshop row.
+     * The counter is not maintained for a sharded workshop, whose seats are summed from its shards instead.
+     *
+     * @param workshop the Workshop entity
+     * @return the remaining seats, never negative
+     */
+    default Integer seatsLeft(Workshop workshop) {
+        return Math.max(workshop.getCapacity() - workshop.getRegisteredCount(), 0);
+    }
+
 
 }
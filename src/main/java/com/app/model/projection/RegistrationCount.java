@@ -0,0 +1,11 @@
+package com.app.model.projection;
+
+/**
+ * Projection of the number of registrations stored for a workshop.
+ */
+public interface RegistrationCount {
+
+    String getWorkshopCode();
+
+    long getRegistrationCount();
+}
@@ -0,0 +1,11 @@
+package com.app.model.projection;
+
+/**
+ * Projection of the remaining seats of one inventory shard.
+ */
+public interface ShardSeats {
+
+    int getShardNo();
+
+    int getSeatsLeft();
+}
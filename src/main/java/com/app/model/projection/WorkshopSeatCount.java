@@ -0,0 +1,15 @@
+package com.app.model.projection;
+
+/**
+ * Projection of the maintained seat counter of a workshop.
+ */
+public interface WorkshopSeatCount {
+
+    Integer getWorkshopId();
+
+    String getCode();
+
+    int getRegisteredCount();
+
+    long getSeatRevision();
+}
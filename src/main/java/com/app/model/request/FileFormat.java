@@ -0,0 +1,37 @@
+package com.app.model.request;
+
+import com.app.exception.InvalidWorkshopDataException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.http.MediaType;
+
+/**
+ * Enum representing the file formats registrations are exported in and data is imported from.
+ */
+@Getter
+@AllArgsConstructor
+public enum FileFormat {
+    NDJSON(MediaType.parseMediaType("application/x-ndjson"), "ndjson"),
+    CSV(MediaType.parseMediaType("text/csv"), "csv");
+
+    // The content type of the format
+    private final MediaType mediaType;
+    // The file extension of the format
+    private final String extension;
+
+    /**
+     * Returns the file format with the given name, ignoring case.
+     *
+     * @param name the name of the format
+     * @return the file format
+     * @throws InvalidWorkshopDataException if the format is not supported
+     */
+    public static FileFormat of(String name) {
+        for (FileFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new InvalidWorkshopDataException("Unsupported file format: " + name);
+    }
+}
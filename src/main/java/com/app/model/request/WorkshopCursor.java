@@ -0,0 +1,49 @@
+package com.app.model.request;
+
+import com.app.exception.InvalidWorkshopDataException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor pointing at the last workshop of a page, ordered by start time and id.
+ *
+ * @param startTime  the start time of the last workshop returned
+ * @param workshopId the id of the last workshop returned
+ */
+public record WorkshopCursor(ZonedDateTime startTime, Integer workshopId) {
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * Encodes the cursor into a URL safe token.
+     *
+     * @return the encoded cursor
+     */
+    public String encode() {
+        String value = startTime.toInstant() + SEPARATOR + workshopId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor previously returned by {@link #encode()}.
+     *
+     * @param cursor the encoded cursor
+     * @return the decoded cursor
+     * @throws InvalidWorkshopDataException if the cursor is malformed
+     */
+    public static WorkshopCursor decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.lastIndexOf(SEPARATOR);
+            ZonedDateTime startTime = Instant.parse(value.substring(0, separator)).atZone(ZoneOffset.UTC);
+            return new WorkshopCursor(startTime, Integer.valueOf(value.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException ex) {
+            throw new InvalidWorkshopDataException("Invalid cursor: " + cursor);
+        }
+    }
+}
@@ -31,4 +31,8 @@ public class WorkshopRequest {
     @NotNull(message = "Capacity cannot be empty")
     @Min(value = 1, message = "Capacity must be greater than 0")
     private Integer capacity;
+
+    @Min(value = 0, message = "Inventory shards must not be negative")
+    @Max(value = 64, message = "Inventory shards must not exceed 64")
+    private Integer inventoryShards;
 }
@@ -0,0 +1,20 @@
+package com.app.model.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * The outcome of one registration of a bulk registration, at the same index as in the request.
+ */
+@Data
+@Builder
+public class BulkRegistrationResult {
+
+    private int index;
+    private String workshopCode;
+    private String userName;
+    private RegistrationStatus status;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private RegistrationsResponse registration;
+}
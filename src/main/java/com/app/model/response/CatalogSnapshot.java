@@ -0,0 +1,21 @@
+package com.app.model.response;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * A page of upcoming workshops kept as ready-made response bodies.
+ */
+@Getter
+@Builder
+public class CatalogSnapshot {
+
+    // The page serialized as UTF-8 JSON
+    private final byte[] json;
+    // The JSON compressed with gzip, null when the page is too small to be worth compressing
+    private final byte[] gzip;
+    // The cursor of the next page, null on the last page
+    private final String nextCursor;
+    // Strong validator derived from the JSON content
+    private final String etag;
+}
@@ -0,0 +1,14 @@
+package com.app.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@AllArgsConstructor
+public class ImportErrorResponse {
+
+    private long lineNo;
+    private String message;
+}
@@ -0,0 +1,26 @@
+package com.app.model.response;
+
+import com.app.model.entity.ImportKind;
+import com.app.model.entity.ImportStatus;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.ZonedDateTime;
+
+@Data
+@Builder
+public class ImportJobResponse {
+
+    private String jobId;
+    private ImportKind kind;
+    private ImportStatus status;
+    private long rowsRead;
+    private long rowsImported;
+    private long rowsRejected;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String message;
+    private ZonedDateTime createdAt;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private ZonedDateTime finishedAt;
+}
@@ -0,0 +1,17 @@
+package com.app.model.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One keyset page of registrations, with the cursor of the next page if there is one.
+ */
+@Data
+@Builder
+public class RegistrationPage {
+
+    private List<RegistrationsResponse> registrations;
+    private Integer nextCursor;
+}
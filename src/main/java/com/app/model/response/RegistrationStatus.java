@@ -0,0 +1,15 @@
+package com.app.model.response;
+
+/**
+ * Enum representing the outcome of one registration of a bulk registration, or of a registration
+ * accepted by the asynchronous intake.
+ */
+public enum RegistrationStatus {
+    // Accepted by the asynchronous intake and not yet written
+    PENDING,
+    REGISTERED,
+    ALREADY_REGISTERED,
+    WORKSHOP_FULL,
+    WORKSHOP_NOT_FOUND,
+    INVALID
+}
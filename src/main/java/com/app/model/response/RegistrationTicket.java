@@ -0,0 +1,21 @@
+package com.app.model.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * A registration accepted by the asynchronous intake, with its outcome once it was written to the database.
+ */
+@Data
+@Builder
+public class RegistrationTicket {
+
+    private String ticketId;
+    private String workshopCode;
+    private String userName;
+    // PENDING until the registration was written
+    private RegistrationStatus status;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private RegistrationsResponse registration;
+}
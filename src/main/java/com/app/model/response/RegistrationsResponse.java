@@ -1,11 +1,13 @@
 package com.app.model.response;
 
 import com.app.model.entity.PreferredContact;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 
 @Data
 @Builder
+@AllArgsConstructor
 public class RegistrationsResponse {
 
     private Integer registrationId;
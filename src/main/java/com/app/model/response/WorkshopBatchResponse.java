@@ -0,0 +1,17 @@
+package com.app.model.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * The workshops found for a batch of codes, in the order of the requested codes, and the codes that were not found.
+ */
+@Data
+@Builder
+public class WorkshopBatchResponse {
+
+    private List<WorkshopResponse> workshops;
+    private List<String> missingCodes;
+}
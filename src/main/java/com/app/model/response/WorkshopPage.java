@@ -0,0 +1,17 @@
+package com.app.model.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One keyset page of workshops, with the cursor of the next page if there is one.
+ */
+@Data
+@Builder
+public class WorkshopPage {
+
+    private List<WorkshopResponse> workshops;
+    private String nextCursor;
+}
@@ -1,9 +1,11 @@
 package com.app.model.response;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.validation.constraints.FutureOrPresent;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 
@@ -12,6 +14,7 @@ import java.util.Set;
 
 @Data
 @Builder
+@AllArgsConstructor
 public class WorkshopResponse {
 
     private String code;
@@ -20,6 +23,32 @@ public class WorkshopResponse {
     private ZonedDateTime startTime;
     private ZonedDateTime endTime;
     private Integer capacity;
+    private Integer seatsTaken;
+    private Integer seatsLeft;
     @JsonInclude(JsonInclude.Include.NON_NULL)
     private Set<RegistrationsResponse> registrations;
+    // Strong validator of this representation, null when it cannot be derived from the workshop versions
+    @JsonIgnore
+    private String etag;
+    // Id of the workshop, only used to build keyset cursors
+    @JsonIgnore
+    private Integer workshopId;
+
+    /**
+     * Creates a workshop without its registrations directly from the columns of a projection query.
+     *
+     * @param workshopId      the id of the workshop
+     * @param code            the code of the workshop
+     * @param name            the name of the workshop
+     * @param description     the description of the workshop
+     * @param startTime       the start time of the workshop
+     * @param endTime         the end time of the workshop
+     * @param capacity        the capacity of the workshop
+     * @param seatsTaken      the number of seats taken
+     */
+    public WorkshopResponse(Integer workshopId, String code, String name, String description, ZonedDateTime startTime,
+                            ZonedDateTime endTime, Integer capacity, Integer seatsTaken) {
+        this(code, name, description, startTime, endTime, capacity, seatsTaken,
+                Math.max(capacity - seatsTaken, 0), null, null, workshopId);
+    }
 }
@@ -0,0 +1,50 @@
+package com.app.repository;
+
+import com.app.model.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.ZonedDateTime;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    /**
+     * Claims a key that has no record yet. Fails with a constraint violation if another request claimed it.
+     */
+    @Transactional
+    @Modifying
+    @Query("INSERT INTO IdempotencyRecord (keyHash, requestHash, createdAt, expiresAt) VALUES (:keyHash, :requestHash, :now, :expiresAt)")
+    int claim(@Param("keyHash") String keyHash, @Param("requestHash") String requestHash,
+              @Param("now") ZonedDateTime now, @Param("expiresAt") ZonedDateTime expiresAt);
+
+    /**
+     * Claims a key whose record expired, or whose request was claimed before {@code staleBefore} and never
+     * completed because its instance stopped.
+     *
+     * @return 1 if the key was claimed, 0 if another request holds it
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.requestHash = :requestHash, r.status = NULL, r.contentType = NULL, r.location = NULL, r.body = NULL, r.createdAt = :now, r.expiresAt = :expiresAt "
+            + "WHERE r.keyHash = :keyHash AND (r.expiresAt < :now OR (r.status IS NULL AND r.createdAt < :staleBefore))")
+    int takeOver(@Param("keyHash") String keyHash, @Param("requestHash") String requestHash, @Param("now") ZonedDateTime now,
+                 @Param("expiresAt") ZonedDateTime expiresAt, @Param("staleBefore") ZonedDateTime staleBefore);
+
+    /**
+     * Drops the claim of a request whose response is not kept, so a retry executes it again.
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.keyHash = :keyHash AND r.status IS NULL")
+    int release(@Param("keyHash") String keyHash);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") ZonedDateTime now);
+}
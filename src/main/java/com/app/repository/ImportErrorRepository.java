@@ -0,0 +1,27 @@
+package com.app.repository;
+
+import com.app.model.entity.ImportError;
+import com.app.model.entity.ImportRowId;
+import com.app.model.response.ImportErrorResponse;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ImportErrorRepository extends JpaRepository<ImportError, ImportRowId> {
+
+    /**
+     * Returns the page of errors of an import job following the given line, ordered by line.
+     *
+     * @param jobId     the id of the import job
+     * @param afterLine the line of the last error of the previous page, 0 for the first page
+     * @param pageable  the page size
+     * @return the next page of errors
+     */
+    @Query("SELECT new com.app.model.response.ImportErrorResponse(e.lineNo, e.message) FROM ImportError e WHERE e.jobId = :jobId AND e.lineNo > :afterLine ORDER BY e.lineNo")
+    List<ImportErrorResponse> findResponses(@Param("jobId") String jobId, @Param("afterLine") long afterLine, Pageable pageable);
+}
@@ -0,0 +1,46 @@
+package com.app.repository;
+
+import com.app.model.entity.ImportJob;
+import com.app.model.entity.ImportStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ImportJobRepository extends JpaRepository<ImportJob, String> {
+
+    /**
+     * Records that the job is still running.
+     *
+     * @return 1 if the job is still unfinished, 0 otherwise
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ImportJob j SET j.updatedAt = :now WHERE j.jobId = :jobId AND j.status IN :unfinished")
+    int touch(@Param("jobId") String jobId, @Param("unfinished") Collection<ImportStatus> unfinished,
+              @Param("now") ZonedDateTime now);
+
+    @Query("SELECT j.jobId FROM ImportJob j WHERE j.status IN :unfinished AND j.updatedAt < :staleBefore")
+    List<String> findStaleJobIds(@Param("unfinished") Collection<ImportStatus> unfinished,
+                                 @Param("staleBefore") ZonedDateTime staleBefore);
+
+    /**
+     * Fails an unfinished job that was not updated since {@code staleBefore}.
+     *
+     * @return 1 if the job was failed, 0 if it finished or reported progress meanwhile
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ImportJob j SET j.status = com.app.model.entity.ImportStatus.FAILED, j.message = :message, j.finishedAt = :now, j.updatedAt = :now "
+            + "WHERE j.jobId = :jobId AND j.status IN :unfinished AND j.updatedAt < :staleBefore")
+    int failStale(@Param("jobId") String jobId, @Param("unfinished") Collection<ImportStatus> unfinished,
+                  @Param("staleBefore") ZonedDateTime staleBefore, @Param("now") ZonedDateTime now,
+                  @Param("message") String message);
+}
@@ -0,0 +1,21 @@
+package com.app.repository;
+
+import com.app.model.entity.Registrations;
+
+import java.util.List;
+
+/**
+ * Inserts registrations that may collide with concurrent registrations of the same users.
+ */
+public interface RegistrationInsertRepository {
+
+    /**
+     * Inserts the registrations whose user is not registered to the workshop yet, in workshop code and
+     * user name order. A registration colliding with one that is committed, or still in flight in another
+     * transaction, is skipped instead of failing the whole statement.
+     *
+     * @param registrations the registrations to insert, ids are assigned to the inserted ones
+     * @return the registrations that were inserted
+     */
+    List<Registrations> insertIfAbsent(List<Registrations> registrations);
+}
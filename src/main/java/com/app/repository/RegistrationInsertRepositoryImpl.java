@@ -0,0 +1,119 @@
+package com.app.repository;
+
+import com.app.model.entity.Registrations;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inserts registrations with plain JDBC on the connection of the current transaction. On PostgreSQL the
+ * rows go in one statement that skips conflicts, on any other database (H2 in local tests) they are
+ * inserted one at a time and a unique violation skips the row.
+ */
+class RegistrationInsertRepositoryImpl implements RegistrationInsertRepository {
+
+    private static final String INSERT = "INSERT INTO registrations "
+            + "(reg_id, workshop_code, user_name, user_email, user_phone, user_preferred_contact) VALUES ";
+    private static final String ROW = "(?, ?, ?, ?, ?, ?)";
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Runs in a transaction so the unwrapped session stays open for the inserts
+    @Override
+    @Transactional
+    public List<Registrations> insertIfAbsent(List<Registrations> registrations) {
+        if (registrations.isEmpty()) {
+            return List.of();
+        }
+        entityManager.flush();
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        // Ids come from the same pooled sequence optimizer Hibernate uses for persisted registrations
+        BeforeExecutionGenerator generator = (BeforeExecutionGenerator) session.getFactory().getMappingMetamodel()
+                .getEntityDescriptor(Registrations.class).getGenerator();
+        // Inserted in a fixed order, so two batches with common users wait on each other instead of deadlocking
+        List<Registrations> ordered = registrations.stream()
+                .sorted(Comparator.comparing(Registrations::getWorkshopCode).thenComparing(Registrations::getUserName))
+                .toList();
+        for (Registrations registration : ordered) {
+            registration.setRegistrationId((Integer) generator.generate(session, registration, null, EventType.INSERT));
+        }
+        boolean postgres = session.getJdbcServices().getDialect() instanceof PostgreSQLDialect;
+        return session.doReturningWork(connection -> postgres ? insertSkippingConflicts(connection, ordered)
+                : insertOneByOne(connection, ordered));
+    }
+
+    /**
+     * Inserts all rows in one statement. ON CONFLICT DO NOTHING also skips a row whose conflicting insert is
+     * still in flight, once that transaction commits.
+     */
+    private static List<Registrations> insertSkippingConflicts(Connection connection, List<Registrations> registrations)
+            throws SQLException {
+        String sql = INSERT + String.join(", ", Collections.nCopies(registrations.size(), ROW))
+                + " ON CONFLICT (workshop_code, user_name) DO NOTHING RETURNING reg_id";
+        Map<Integer, Registrations> byId = new HashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int parameter = 1;
+            for (Registrations registration : registrations) {
+                parameter = bind(statement, parameter, registration);
+                byId.put(registration.getRegistrationId(), registration);
+            }
+            List<Registrations> inserted = new ArrayList<>();
+            try (ResultSet ids = statement.executeQuery()) {
+                while (ids.next()) {
+                    inserted.add(byId.get(ids.getInt(1)));
+                }
+            }
+            return inserted;
+        }
+    }
+
+    /**
+     * Inserts the rows one at a time. H2 keeps the transaction usable after a failed statement, so a
+     * duplicate only skips its own row.
+     */
+    private static List<Registrations> insertOneByOne(Connection connection, List<Registrations> registrations)
+            throws SQLException {
+        List<Registrations> inserted = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(INSERT + ROW)) {
+            for (Registrations registration : registrations) {
+                bind(statement, 1, registration);
+                try {
+                    statement.executeUpdate();
+                    inserted.add(registration);
+                } catch (SQLException ex) {
+                    if (!UNIQUE_VIOLATION.equals(ex.getSQLState())) {
+                        throw ex;
+                    }
+                }
+            }
+        }
+        return inserted;
+    }
+
+    private static int bind(PreparedStatement statement, int parameter, Registrations registration) throws SQLException {
+        statement.setInt(parameter++, registration.getRegistrationId());
+        statement.setString(parameter++, registration.getWorkshopCode());
+        statement.setString(parameter++, registration.getUserName());
+        statement.setString(parameter++, registration.getUserEmail());
+        statement.setString(parameter++, registration.getUserPhone());
+        statement.setString(parameter++, registration.getUserPreferredContact().name());
+        return parameter;
+    }
+}
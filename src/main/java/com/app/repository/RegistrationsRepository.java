@@ -1,15 +1,70 @@
 package com.app.repository;
 
 import com.app.model.entity.Registrations;
+import com.app.model.projection.RegistrationCount;
+import com.app.model.response.RegistrationsResponse;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
-public interface RegistrationsRepository extends JpaRepository<Registrations, Integer> {
+public interface RegistrationsRepository extends JpaRepository<Registrations, Integer>, RegistrationInsertRepository {
 
-    List<Registrations> findByUserName(String userName);
+    // Builds a RegistrationsResponse straight from the columns, skipping the persistence context
+    String RESPONSE = "new com.app.model.response.RegistrationsResponse(r.registrationId, r.workshopCode, "
+            + "r.userName, r.userEmail, r.userPhone, r.userPreferredContact)";
 
+    @Query("SELECT " + RESPONSE + " FROM Registrations r ORDER BY r.registrationId")
+    List<RegistrationsResponse> findAllResponses();
+
+    @Query("SELECT " + RESPONSE + " FROM Registrations r WHERE r.userName = :userName ORDER BY r.registrationId")
+    List<RegistrationsResponse> findResponsesByUserName(@Param("userName") String userName);
+
+    /**
+     * Returns the page of registrations of a workshop following the given registration id, ordered by id.
+     *
+     * @param code     the code of the workshop
+     * @param afterId  the id of the last registration of the previous page, 0 for the first page
+     * @param pageable the page size
+     * @return the next page of registrations
+     */
+    @Query("SELECT " + RESPONSE + " FROM Registrations r WHERE r.workshopCode = :code AND r.registrationId > :afterId ORDER BY r.registrationId")
+    List<RegistrationsResponse> findResponsesByWorkshopCode(@Param("code") String code, @Param("afterId") int afterId,
+                                                            Pageable pageable);
+
+    boolean existsByWorkshopCode(String code);
+
+    /**
+     * Streams the registrations to export through a forward-only cursor, filtered by workshop code and
+     * by the start time of the workshop. Must be consumed inside a transaction and closed afterwards.
+     *
+     * @param code the code of the workshop, null for all workshops
+     * @param from the inclusive lower bound of the workshop start time, null for no bound
+     * @param to   the exclusive upper bound of the workshop start time, null for no bound
+     * @return the registrations ordered by id
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT " + RESPONSE + " FROM Registrations r JOIN Workshop w ON w.code = r.workshopCode"
+            + " WHERE (:code IS NULL OR r.workshopCode = :code)"
+            + " AND (:from IS NULL OR w.startTime >= :from)"
+            + " AND (:to IS NULL OR w.startTime < :to)"
+            + " ORDER BY r.registrationId")
+    Stream<RegistrationsResponse> streamForExport(@Param("code") String code, @Param("from") ZonedDateTime from,
+                                                  @Param("to") ZonedDateTime to);
+
+    @Query("SELECT r.workshopCode AS workshopCode, COUNT(r) AS registrationCount FROM Registrations r WHERE r.workshopCode IN :codes GROUP BY r.workshopCode")
+    List<RegistrationCount> countByWorkshopCodes(@Param("codes") Collection<String> codes);
 
 }
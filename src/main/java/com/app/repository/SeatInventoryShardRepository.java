@@ -0,0 +1,45 @@
+package com.app.repository;
+
+import com.app.model.entity.SeatInventoryShard;
+import com.app.model.projection.ShardSeats;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface SeatInventoryShardRepository extends JpaRepository<SeatInventoryShard, Integer> {
+
+    @Query("SELECT s.shardNo AS shardNo, s.seatsLeft AS seatsLeft FROM SeatInventoryShard s WHERE s.workshopCode = :code")
+    List<ShardSeats> findShardSeats(@Param("code") String code);
+
+    @Query("SELECT COALESCE(SUM(s.seatsLeft), 0) FROM SeatInventoryShard s WHERE s.workshopCode = :code")
+    long sumSeatsLeft(@Param("code") String code);
+
+    /**
+     * Locks all shards of the workshop in a stable order, so concurrent rebalances cannot deadlock.
+     *
+     * @param code the code of the workshop
+     * @return the locked shards ordered by shard number
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM SeatInventoryShard s WHERE s.workshopCode = :code ORDER BY s.shardNo")
+    List<SeatInventoryShard> lockShards(@Param("code") String code);
+
+    @Modifying
+    @Query("UPDATE SeatInventoryShard s SET s.seatsLeft = s.seatsLeft - 1 WHERE s.workshopCode = :code AND s.shardNo = :shardNo AND s.seatsLeft > 0")
+    int claimSeat(@Param("code") String code, @Param("shardNo") int shardNo);
+
+    @Modifying
+    @Query("UPDATE SeatInventoryShard s SET s.seatsLeft = s.seatsLeft + 1 WHERE s.workshopCode = :code AND s.shardNo = :shardNo")
+    int releaseSeat(@Param("code") String code, @Param("shardNo") int shardNo);
+
+    @Modifying
+    @Query("DELETE FROM SeatInventoryShard s WHERE s.workshopCode = :code")
+    int deleteByWorkshopCode(@Param("code") String code);
+}
@@ -0,0 +1,21 @@
+package com.app.repository;
+
+import com.app.model.entity.Workshop;
+
+import java.util.Optional;
+
+/**
+ * Looks up workshops by their natural id, the code.
+ */
+public interface WorkshopNaturalIdRepository {
+
+    /**
+     * Returns the workshop with the given code. The code is resolved to the id through the natural-id
+     * cache and the workshop is read from the second-level cache, so repeated lookups of the same
+     * workshop do not reach the database.
+     *
+     * @param code the code of the workshop
+     * @return the workshop, or empty if there is none with the code
+     */
+    Optional<Workshop> findByCode(String code);
+}
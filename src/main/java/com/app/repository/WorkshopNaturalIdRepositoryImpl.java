@@ -0,0 +1,27 @@
+package com.app.repository;
+
+import com.app.model.entity.Workshop;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import org.hibernate.Session;
+
+import java.util.Optional;
+
+/**
+ * Natural-id lookups of workshops through the Hibernate session.
+ */
+class WorkshopNaturalIdRepositoryImpl implements WorkshopNaturalIdRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Runs in a transaction so the unwrapped session stays open for the lookup
+    @Override
+    @Transactional
+    public Optional<Workshop> findByCode(String code) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(Workshop.class)
+                .loadOptional(code);
+    }
+}
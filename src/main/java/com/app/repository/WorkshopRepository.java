@@ -1,21 +1,129 @@
 package com.app.repository;
 
 import com.app.model.entity.Workshop;
+import com.app.model.projection.WorkshopSeatCount;
+import com.app.model.response.WorkshopResponse;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface WorkshopRepository extends JpaRepository<Workshop, Integer> {
+public interface WorkshopRepository extends JpaRepository<Workshop, Integer>, WorkshopNaturalIdRepository,
+        WorkshopSeatCounterRepository {
+
+    // The seats taken, from the inventory shards for a sharded workshop whose counter is not maintained
+    String SEATS_TAKEN = "CASE WHEN w.inventoryShards > 1 THEN w.capacity - CAST((SELECT COALESCE(SUM(s.seatsLeft), 0) "
+            + "FROM SeatInventoryShard s WHERE s.workshopCode = w.code) AS Integer) ELSE w.registeredCount END";
+
+    // Builds a WorkshopResponse without registrations straight from the columns, skipping the persistence context
+    String SUMMARY = "new com.app.model.response.WorkshopResponse(w.workshopId, w.code, w.name, w.description, "
+            + "w.startTime, w.endTime, w.capacity, " + SEATS_TAKEN + ")";
+
+    /**
+     * Reads and locks the current row of a workshop until the end of the transaction, bypassing the
+     * second-level cache. Used by writes that check the seat counter.
+     *
+     * @param code the code of the workshop
+     * @return the workshop, or empty if there is none with the code
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT w FROM Workshop w WHERE w.code = :code")
+    Optional<Workshop> lockByCode(@Param("code") String code);
 
-    Optional<Workshop> findByCode(String code);
     boolean existsWorkshopByCode(String code);
-    int countByCode(String code);
-    @Query("SELECT CASE WHEN COUNT(r) > 0 THEN true ELSE false END FROM Workshop w JOIN w.registrations r WHERE w.code = :code AND r.userName = :userName")
-    boolean existsByCodeAndUserName(@Param("code") String code, @Param("userName") String userName);
+
+    /**
+     * Locks the workshops with the given codes until the end of the transaction. Rows are locked in code
+     * order so concurrent bulk registrations cannot deadlock.
+     *
+     * @param codes the codes of the workshops
+     * @return the workshops found
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT w FROM Workshop w WHERE w.code IN :codes ORDER BY w.code")
+    List<Workshop> lockByCodeIn(@Param("codes") Collection<String> codes);
+
+    /**
+     * Returns the first page of workshops ending after the given time, ordered by start time and id, as read-only responses.
+     *
+     * @param now      the current time
+     * @param pageable the page size
+     * @return the first page of upcoming workshops
+     */
+    @Query("SELECT " + SUMMARY + " FROM Workshop w WHERE w.endTime > :now ORDER BY w.startTime, w.workshopId")
+    List<WorkshopResponse> findUpcoming(@Param("now") ZonedDateTime now, Pageable pageable);
+
+    /**
+     * Returns the page of upcoming workshops following the given keyset position, as read-only responses.
+     *
+     * @param now        the current time
+     * @param startTime  the start time of the last workshop of the previous page
+     * @param workshopId the id of the last workshop of the previous page
+     * @param pageable   the page size
+     * @return the next page of upcoming workshops
+     */
+    @Query("SELECT " + SUMMARY + " FROM Workshop w WHERE w.endTime > :now AND (w.startTime > :startTime OR (w.startTime = :startTime AND w.workshopId > :workshopId)) ORDER BY w.startTime, w.workshopId")
+    List<WorkshopResponse> findUpcomingAfter(@Param("now") ZonedDateTime now, @Param("startTime") ZonedDateTime startTime,
+                                             @Param("workshopId") Integer workshopId, Pageable pageable);
+
+    /**
+     * Returns the workshops with the given codes, as read-only responses without registrations.
+     *
+     * @param codes the codes of the workshops
+     * @return the workshops found, in no particular order
+     */
+    @Query("SELECT " + SUMMARY + " FROM Workshop w WHERE w.code IN :codes")
+    List<WorkshopResponse> findSummariesByCodeIn(@Param("codes") Collection<String> codes);
+
+    /**
+     * Returns one page of workshop ids, ordered by id.
+     *
+     * @param pageable the page to return
+     * @return the ids of the workshops of the page
+     */
+    @Query("SELECT w.workshopId FROM Workshop w ORDER BY w.workshopId")
+    List<Integer> findWorkshopIds(Pageable pageable);
+
+    /**
+     * Returns the workshops with the given ids together with their registrations, in one query.
+     *
+     * @param ids the ids of the workshops
+     * @return the workshops ordered by id, with their registrations initialized
+     */
+    @Query("SELECT w FROM Workshop w LEFT JOIN FETCH w.registrations WHERE w.workshopId IN :ids ORDER BY w.workshopId")
+    List<Workshop> findWithRegistrationsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    @Query("SELECT w.inventoryShards FROM Workshop w WHERE w.code = :code")
+    Optional<Integer> findInventoryShardsByCode(@Param("code") String code);
+
+    /**
+     * Returns the seats left on the counter of the workshop row, not counting a sharded inventory.
+     *
+     * @param code the code of the workshop
+     * @return the seats left, empty if the workshop does not exist
+     */
+    @Query("SELECT w.capacity - w.registeredCount FROM Workshop w WHERE w.code = :code")
+    Optional<Integer> findSeatsLeftByCode(@Param("code") String code);
+
+    /**
+     * Returns the seat counters of the workshops following the given id, ordered by id. Sharded workshops
+     * are skipped, their counter is not maintained.
+     *
+     * @param afterId  the last workshop id of the previous batch
+     * @param pageable the batch size
+     * @return the seat counters of the next batch of workshops
+     */
+    @Query("SELECT w.workshopId AS workshopId, w.code AS code, w.registeredCount AS registeredCount, w.seatRevision AS seatRevision FROM Workshop w WHERE w.workshopId > :afterId AND w.inventoryShards <= 1 ORDER BY w.workshopId")
+    List<WorkshopSeatCount> findSeatCountsAfter(@Param("afterId") Integer afterId, Pageable pageable);
 
 
 }
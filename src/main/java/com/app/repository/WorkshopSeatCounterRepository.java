@@ -0,0 +1,47 @@
+package com.app.repository;
+
+/**
+ * Changes the seat counter on the workshop row. Only the changed workshop is evicted from the
+ * second-level cache, the other cached workshops stay valid.
+ */
+public interface WorkshopSeatCounterRepository {
+
+    /**
+     * Claims one seat of the workshop. The capacity check and the increment run in the same
+     * statement, so concurrent registrations can never push the count above the capacity.
+     * Workshops with a sharded inventory are never matched.
+     *
+     * @param code the code of the workshop
+     * @return 1 if a seat was claimed, 0 if the workshop is full, sharded or does not exist
+     */
+    int claimSeat(String code);
+
+    /**
+     * Claims several seats of the workshop at once, with the same guard as a single claim.
+     *
+     * @param code  the code of the workshop
+     * @param seats the number of seats to claim
+     * @return 1 if the seats were claimed, 0 if not enough seats are left or the workshop is sharded
+     */
+    int claimSeats(String code, int seats);
+
+    /**
+     * Releases one previously claimed seat of the workshop.
+     *
+     * @param code the code of the workshop
+     * @return 1 if a seat was released, 0 otherwise
+     */
+    int releaseSeat(String code);
+
+    /**
+     * Corrects the seat counter of the workshop, only if no seat was claimed or released since the counter
+     * was read. The seat revision is compared rather than the counter, which a claim followed by a release
+     * would restore.
+     *
+     * @param code             the code of the workshop
+     * @param expectedRevision the seat revision observed by the caller
+     * @param actual           the number of stored registrations
+     * @return 1 if the counter was corrected, 0 if it changed in the meantime
+     */
+    int correctSeatCount(String code, long expectedRevision, int actual);
+}
@@ -0,0 +1,104 @@
+package com.app.repository;
+
+import com.app.model.entity.Workshop;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import org.hibernate.Session;
+import org.hibernate.query.NativeQuery;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+
+/**
+ * Seat counter updates as native statements. A bulk update of the Workshop entity would make Hibernate
+ * invalidate the whole workshops region, so the statements are bound to a query space of their own and
+ * the changed workshop is evicted by id.
+ */
+class WorkshopSeatCounterRepositoryImpl implements WorkshopSeatCounterRepository {
+
+    // Query space of the seat counter updates, no cached entity is mapped to it
+    static final String SEAT_COUNTER_SPACE = "workshop_seat_counters";
+
+    private static final String CLAIM_SEATS = "UPDATE workshops SET registered_count = registered_count + :seats, "
+            + "seat_revision = seat_revision + 1 "
+            + "WHERE code = :code AND registered_count + :seats <= capacity AND inventory_shards <= 1";
+
+    private static final String RELEASE_SEAT = "UPDATE workshops SET registered_count = registered_count - 1, "
+            + "seat_revision = seat_revision + 1 "
+            + "WHERE code = :code AND registered_count > 0 AND inventory_shards <= 1";
+
+    private static final String CORRECT_SEAT_COUNT = "UPDATE workshops SET registered_count = :actual, "
+            + "seat_revision = seat_revision + 1 "
+            + "WHERE code = :code AND seat_revision = :expectedRevision AND inventory_shards <= 1";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public int claimSeat(String code) {
+        return update(CLAIM_SEATS, code, Map.of("seats", 1));
+    }
+
+    @Override
+    @Transactional
+    public int claimSeats(String code, int seats) {
+        return update(CLAIM_SEATS, code, Map.of("seats", seats));
+    }
+
+    @Override
+    @Transactional
+    public int releaseSeat(String code) {
+        return update(RELEASE_SEAT, code, Map.of());
+    }
+
+    @Override
+    @Transactional
+    public int correctSeatCount(String code, long expectedRevision, int actual) {
+        return update(CORRECT_SEAT_COUNT, code, Map.of("expectedRevision", expectedRevision, "actual", actual));
+    }
+
+    /**
+     * Runs a counter update and evicts the workshop if its row changed.
+     */
+    private int update(String sql, String code, Map<String, Object> parameters) {
+        NativeQuery<?> query = entityManager.createNativeQuery(sql)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace(SEAT_COUNTER_SPACE)
+                .setParameter("code", code);
+        parameters.forEach(query::setParameter);
+        int updated = query.executeUpdate();
+        if (updated > 0) {
+            evict(code);
+        }
+        return updated;
+    }
+
+    /**
+     * Evicts the cached workshop now, so the rest of the transaction reads the new counter, and again
+     * when the transaction ends, since a concurrent read may have cached the previous row in the meantime.
+     */
+    private void evict(String code) {
+        // Resolved through the natural-id cache, the database is only read if the code is not cached
+        Workshop workshop = entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(Workshop.class)
+                .getReference(code);
+        if (workshop == null) {
+            return;
+        }
+        Object id = entityManager.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(workshop);
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        cache.evict(Workshop.class, id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.evict(Workshop.class, id);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.app.service;
+
+import com.app.model.request.FileFormat;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the records of an import file one at a time, so the file never has to fit in memory. CSV files
+ * start with a header line naming the fields, NDJSON files hold one JSON object per line.
+ */
+class ImportRecordReader implements Closeable {
+
+    // The file being read
+    private final BufferedReader reader;
+    // The format of the file
+    private final FileFormat format;
+    // Parses the NDJSON lines
+    private final ObjectMapper objectMapper;
+    // The field names of a CSV file
+    private final List<String> header;
+    // The number of the last record read, the CSV header is record 1
+    private long lineNo;
+
+    ImportRecordReader(BufferedReader reader, FileFormat format, ObjectMapper objectMapper) throws IOException {
+        this.reader = reader;
+        this.format = format;
+        this.objectMapper = objectMapper;
+        if (format == FileFormat.CSV) {
+            List<String> names = readCsvRecord();
+            this.header = names == null ? List.of() : names.stream().map(String::trim).toList();
+            this.lineNo = 1;
+        } else {
+            this.header = List.of();
+        }
+    }
+
+    /**
+     * Returns the next record, skipping blank lines.
+     *
+     * @return the next record, or null at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    ImportRecord next() throws IOException {
+        return format == FileFormat.CSV ? nextCsv() : nextJson();
+    }
+
+    private ImportRecord nextCsv() throws IOException {
+        List<String> fields;
+        do {
+            fields = readCsvRecord();
+            if (fields == null) {
+                return null;
+            }
+            lineNo++;
+        } while (fields.size() == 1 && fields.getFirst().isBlank());
+        if (fields.size() != header.size()) {
+            return new ImportRecord(lineNo, Map.of(), "Expected " + header.size() + " fields but found " + fields.size());
+        }
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < fields.size(); i++) {
+            values.put(header.get(i), fields.get(i).isEmpty() ? null : fields.get(i));
+        }
+        return new ImportRecord(lineNo, values, null);
+    }
+
+    private ImportRecord nextJson() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNo++;
+        } while (line.isBlank());
+        try {
+            Map<String, Object> json = objectMapper.readValue(line, new TypeReference<>() {
+            });
+            Map<String, String> values = new HashMap<>();
+            json.forEach((name, value) -> values.put(name, value == null ? null : value.toString()));
+            return new ImportRecord(lineNo, values, null);
+        } catch (JsonProcessingException ex) {
+            return new ImportRecord(lineNo, Map.of(), "Invalid JSON: " + ex.getOriginalMessage());
+        }
+    }
+
+    /**
+     * Reads one CSV record, quoted fields may contain separators, quotes and line breaks.
+     *
+     * @return the fields of the record, or null at the end of the file
+     */
+    private List<String> readCsvRecord() throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean read = false;
+        int c;
+        while ((c = reader.read()) != -1) {
+            read = true;
+            if (quoted) {
+                if (c != '"') {
+                    field.append((char) c);
+                    continue;
+                }
+                reader.mark(1);
+                int next = reader.read();
+                if (next == '"') {
+                    field.append('"');
+                } else {
+                    quoted = false;
+                    if (next != -1) {
+                        reader.reset();
+                    }
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+        if (!read) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * One record of an import file.
+     *
+     * @param lineNo the number of the record, the line for NDJSON and the row for CSV
+     * @param values the values by field name, null for empty fields
+     * @param error  why the record could not be parsed, null if it was parsed
+     */
+    record ImportRecord(long lineNo, Map<String, String> values, String error) {
+    }
+}
@@ -0,0 +1,404 @@
+package com.app.service;
+
+import com.app.exception.ImportJobNotFoundException;
+import com.app.model.entity.ImportError;
+import com.app.model.entity.ImportJob;
+import com.app.model.entity.ImportKind;
+import com.app.model.entity.ImportStatus;
+import com.app.model.entity.PreferredContact;
+import com.app.model.mapper.ImportJobMapper;
+import com.app.model.request.FileFormat;
+import com.app.model.request.RegistrationsRequest;
+import com.app.model.request.WorkshopRequest;
+import com.app.model.response.ImportErrorResponse;
+import com.app.model.response.ImportJobResponse;
+import com.app.repository.ImportErrorRepository;
+import com.app.repository.ImportJobRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Service class for importing workshops and registrations from large files. The upload is spooled to a
+ * temporary file and imported in the background: rows are validated in chunks with the same rules as the
+ * single create endpoints, bulk loaded into a staging table, and merged with set-based SQL. Progress and
+ * the rejected rows are stored, so any instance can report on the job. A running job is touched regularly,
+ * and a job left unfinished by a stopped instance is failed and its staged rows removed once it is stale.
+ */
+@Service
+@Slf4j
+public class ImportService {
+
+    // Number of rows validated and staged at once
+    static final int CHUNK_SIZE = 1000;
+
+    // Statuses of a job that is still running
+    private static final List<ImportStatus> UNFINISHED = List.of(
+            ImportStatus.RECEIVED, ImportStatus.VALIDATING, ImportStatus.MERGING);
+
+    // Repository for the import jobs
+    private final ImportJobRepository importJobRepository;
+    // Repository for the rejected rows
+    private final ImportErrorRepository importErrorRepository;
+    // Mapper for the import job responses
+    private final ImportJobMapper importJobMapper;
+    // Loads and merges the staged rows
+    private final ImportStaging importStaging;
+    // Applies the bean validation rules of the create requests
+    private final Validator validator;
+    // Parses NDJSON files
+    private final ObjectMapper objectMapper;
+    // Caches to clear once an import changed the data
+    private final UpcomingWorkshopsCache upcomingWorkshopsCache;
+    private final WorkshopVersionCache workshopVersionCache;
+    // Runs the imports one at a time
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    // Time after which an unfinished job that was not touched is failed
+    private final Duration staleAfter;
+    // The job being imported by this instance, touched until it ends
+    private volatile String runningJobId;
+
+    public ImportService(ImportJobRepository importJobRepository, ImportErrorRepository importErrorRepository,
+                         ImportJobMapper importJobMapper, ImportStaging importStaging, Validator validator,
+                         ObjectMapper objectMapper, UpcomingWorkshopsCache upcomingWorkshopsCache,
+                         WorkshopVersionCache workshopVersionCache,
+                         @Value("${workshop.import.stale-after:PT5M}") Duration staleAfter) {
+        this.importJobRepository = importJobRepository;
+        this.importErrorRepository = importErrorRepository;
+        this.importJobMapper = importJobMapper;
+        this.importStaging = importStaging;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.upcomingWorkshopsCache = upcomingWorkshopsCache;
+        this.workshopVersionCache = workshopVersionCache;
+        this.staleAfter = staleAfter;
+    }
+
+    /**
+     * Stores the upload and starts importing it in the background.
+     *
+     * @param kind   what the file contains
+     * @param format the format of the file
+     * @param upload the content of the file
+     * @return the created import job
+     * @throws IOException if the upload cannot be stored
+     */
+    public ImportJobResponse startImport(ImportKind kind, FileFormat format, InputStream upload) throws IOException {
+        Path file = Files.createTempFile("import-", "." + format.getExtension());
+        try {
+            Files.copy(upload, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            Files.deleteIfExists(file);
+            throw ex;
+        }
+        ImportJob job = new ImportJob();
+        job.setJobId(UUID.randomUUID().toString());
+        job.setKind(kind);
+        job.setStatus(ImportStatus.RECEIVED);
+        job.setCreatedAt(ZonedDateTime.now());
+        save(job);
+        log.info("Import job {} of {} received", job.getJobId(), kind);
+        executor.execute(() -> runImport(job, format, file));
+        return importJobMapper.ImportJobToImportJobResponse(job);
+    }
+
+    /**
+     * Returns the progress of an import job.
+     *
+     * @param jobId the id of the import job
+     * @return the import job
+     * @throws ImportJobNotFoundException if there is no such job
+     */
+    public ImportJobResponse getImportJob(String jobId) {
+        return importJobRepository.findById(jobId)
+                .map(importJobMapper::ImportJobToImportJobResponse)
+                .orElseThrow(() -> new ImportJobNotFoundException("Import job not found with given id: " + jobId));
+    }
+
+    /**
+     * Returns one page of the rows rejected by an import job, ordered by line.
+     *
+     * @param jobId  the id of the import job
+     * @param cursor the line of the last error of the previous page, null for the first page
+     * @param limit  the page size, capped at the maximum page size
+     * @return the rejected rows with the reason
+     * @throws ImportJobNotFoundException if there is no such job
+     */
+    public List<ImportErrorResponse> getImportErrors(String jobId, Long cursor, int limit) {
+        if (!importJobRepository.existsById(jobId)) {
+            throw new ImportJobNotFoundException("Import job not found with given id: " + jobId);
+        }
+        return importErrorRepository.findResponses(jobId, cursor == null ? 0 : cursor,
+                PageRequest.ofSize(Math.clamp(limit, 1, WorkshopService.MAX_PAGE_SIZE)));
+    }
+
+    /**
+     * Imports the file of a job and records the outcome on the job.
+     *
+     * @param job    the import job
+     * @param format the format of the file
+     * @param file   the stored upload, deleted once the import ends
+     */
+    void runImport(ImportJob job, FileFormat format, Path file) {
+        try (ImportRecordReader reader = new ImportRecordReader(
+                Files.newBufferedReader(file, StandardCharsets.UTF_8), format, objectMapper)) {
+            runningJobId = job.getJobId();
+            updateStatus(job, ImportStatus.VALIDATING);
+            List<ImportRecordReader.ImportRecord> chunk = new ArrayList<>(CHUNK_SIZE);
+            ImportRecordReader.ImportRecord record;
+            while ((record = reader.next()) != null) {
+                chunk.add(record);
+                if (chunk.size() == CHUNK_SIZE) {
+                    stageChunk(job, chunk);
+                    chunk.clear();
+                }
+            }
+            stageChunk(job, chunk);
+            updateStatus(job, ImportStatus.MERGING);
+            ImportStaging.MergeResult result = job.getKind() == ImportKind.WORKSHOPS
+                    ? importStaging.mergeWorkshops(job.getJobId())
+                    : importStaging.mergeRegistrations(job.getJobId());
+            job.setRowsImported(result.imported());
+            job.setRowsRejected(job.getRowsRejected() + result.rejected());
+            job.setFinishedAt(ZonedDateTime.now());
+            updateStatus(job, ImportStatus.COMPLETED);
+            upcomingWorkshopsCache.invalidateAll();
+            workshopVersionCache.evictAll();
+            log.info("Import job {} completed, {} rows imported, {} rows rejected",
+                    job.getJobId(), job.getRowsImported(), job.getRowsRejected());
+        } catch (Exception ex) {
+            log.error("Import job {} failed", job.getJobId(), ex);
+            job.setMessage(StringUtils.abbreviate(ex.getMessage(), 255));
+            job.setFinishedAt(ZonedDateTime.now());
+            updateStatus(job, ImportStatus.FAILED);
+        } finally {
+            runningJobId = null;
+            importStaging.clear(job.getJobId());
+            deleteQuietly(file);
+        }
+    }
+
+    /**
+     * Validates a chunk of records, stages the valid rows and records the invalid ones.
+     */
+    private void stageChunk(ImportJob job, List<ImportRecordReader.ImportRecord> chunk) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(chunk.size());
+        List<ImportError> errors = new ArrayList<>();
+        for (ImportRecordReader.ImportRecord record : chunk) {
+            List<String> messages = new ArrayList<>();
+            Object[] row = record.error() != null ? null : switch (job.getKind()) {
+                case WORKSHOPS -> toWorkshopRow(job.getJobId(), record, messages);
+                case REGISTRATIONS -> toRegistrationRow(job.getJobId(), record, messages);
+            };
+            if (record.error() != null) {
+                messages.add(record.error());
+            }
+            if (messages.isEmpty()) {
+                rows.add(row);
+            } else {
+                errors.add(new ImportError(job.getJobId(), record.lineNo(), StringUtils.abbreviate(String.join("; ", messages), 1000)));
+            }
+        }
+        // The generated id is the third column of both staging tables
+        String sequence = job.getKind() == ImportKind.WORKSHOPS ? "workshops_seq" : "registrations_seq";
+        List<Integer> ids = importStaging.allocateIds(sequence, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            rows.get(i)[2] = ids.get(i);
+        }
+        if (job.getKind() == ImportKind.WORKSHOPS) {
+            importStaging.load(ImportStaging.WORKSHOP_ROWS, ImportStaging.WORKSHOP_COLUMNS, rows);
+        } else {
+            importStaging.load(ImportStaging.REGISTRATION_ROWS, ImportStaging.REGISTRATION_COLUMNS, rows);
+        }
+        importErrorRepository.saveAll(errors);
+        job.setRowsRead(job.getRowsRead() + chunk.size());
+        job.setRowsRejected(job.getRowsRejected() + errors.size());
+        save(job);
+    }
+
+    /**
+     * Validates a workshop record with the rules of creating a workshop.
+     *
+     * @return the staging row, or null if the record is invalid
+     */
+    private Object[] toWorkshopRow(String jobId, ImportRecordReader.ImportRecord record, List<String> messages) {
+        Map<String, String> values = record.values();
+        WorkshopRequest request = WorkshopRequest.builder()
+                .code(values.get("code"))
+                .name(values.get("name"))
+                .description(values.get("description"))
+                .startTime(parseTime(values.get("startTime"), "start time", messages))
+                .endTime(parseTime(values.get("endTime"), "end time", messages))
+                .capacity(parseInt(values.get("capacity"), "capacity", messages))
+                .build();
+        validate(request, messages);
+        if (request.getStartTime() != null && request.getEndTime() != null && request.getStartTime().isAfter(request.getEndTime())) {
+            messages.add("Start time must be before end time");
+        }
+        if (!messages.isEmpty()) {
+            return null;
+        }
+        return new Object[]{jobId, record.lineNo(), null, request.getCode(), request.getName(), request.getDescription(),
+                request.getStartTime(), request.getEndTime(), request.getCapacity()};
+    }
+
+    /**
+     * Validates a registration record with the rules of the bulk registration.
+     *
+     * @return the staging row, or null if the record is invalid
+     */
+    private Object[] toRegistrationRow(String jobId, ImportRecordReader.ImportRecord record, List<String> messages) {
+        Map<String, String> values = record.values();
+        RegistrationsRequest request = RegistrationsRequest.builder()
+                .workshopCode(values.get("workshopCode"))
+                .userName(values.get("userName"))
+                .userEmail(values.get("userEmail"))
+                .userPhone(values.get("userPhone"))
+                .userPreferredContact(parseContact(values.get("userPreferredContact"), messages))
+                .build();
+        validate(request, messages);
+        if (StringUtils.isAnyBlank(request.getUserName(), request.getUserEmail())) {
+            messages.add("User name and email are required");
+        }
+        if (!messages.isEmpty()) {
+            return null;
+        }
+        return new Object[]{jobId, record.lineNo(), null, request.getWorkshopCode(), request.getUserName(),
+                request.getUserEmail(), request.getUserPhone(), request.getUserPreferredContact()};
+    }
+
+    private <T> void validate(T request, List<String> messages) {
+        for (ConstraintViolation<T> violation : validator.validate(request)) {
+            messages.add(violation.getMessage());
+        }
+    }
+
+    private static ZonedDateTime parseTime(String value, String field, List<String> messages) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return ZonedDateTime.parse(value.trim());
+        } catch (DateTimeParseException ex) {
+            messages.add("Invalid " + field + ": " + value);
+            return null;
+        }
+    }
+
+    private static Integer parseInt(String value, String field, List<String> messages) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value.trim());
+        } catch (NumberFormatException ex) {
+            messages.add("Invalid " + field + ": " + value);
+            return null;
+        }
+    }
+
+    private static PreferredContact parseContact(String value, List<String> messages) {
+        if (value == null) {
+            return null;
+        }
+        for (PreferredContact contact : PreferredContact.values()) {
+            if (contact.name().equalsIgnoreCase(value.trim())) {
+                return contact;
+            }
+        }
+        messages.add("Invalid preferred contact: " + value);
+        return null;
+    }
+
+    private void updateStatus(ImportJob job, ImportStatus status) {
+        job.setStatus(status);
+        save(job);
+    }
+
+    private void save(ImportJob job) {
+        job.setUpdatedAt(ZonedDateTime.now());
+        importJobRepository.save(job);
+    }
+
+    /**
+     * Touches the job being imported, so other instances do not take it for stale while a long chunk or
+     * the merge runs.
+     */
+    @Scheduled(fixedDelayString = "${workshop.import.heartbeat-interval-ms:60000}")
+    public void touchRunningJob() {
+        String jobId = runningJobId;
+        if (jobId != null) {
+            importJobRepository.touch(jobId, UNFINISHED, ZonedDateTime.now());
+        }
+    }
+
+    /**
+     * Fails the jobs left unfinished by an instance that stopped, they are never resumed.
+     *
+     * @return the number of jobs failed
+     */
+    @Scheduled(initialDelayString = "${workshop.import.heartbeat-interval-ms:60000}",
+            fixedDelayString = "${workshop.import.heartbeat-interval-ms:60000}")
+    public int failStaleJobs() {
+        return failJobsNotUpdatedSince(ZonedDateTime.now().minus(staleAfter));
+    }
+
+    /**
+     * Fails the unfinished jobs not updated since the given time and removes their staged rows.
+     *
+     * @param staleBefore the time before which an unfinished job is stale
+     * @return the number of jobs failed
+     */
+    int failJobsNotUpdatedSince(ZonedDateTime staleBefore) {
+        int failed = 0;
+        for (String jobId : importJobRepository.findStaleJobIds(UNFINISHED, staleBefore)) {
+            // Skipped if the job reported progress meanwhile
+            if (importJobRepository.failStale(jobId, UNFINISHED, staleBefore, ZonedDateTime.now(),
+                    "Import interrupted, the file must be uploaded again") == 1) {
+                importStaging.clear(jobId);
+                log.warn("Import job {} was not updated since {} and is failed", jobId, staleBefore);
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            log.warn("Could not delete import file {}", file, ex);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,314 @@
+package com.app.service;
+
+import com.app.model.entity.Workshop;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Loads import rows into the staging tables and merges them into the workshops and registrations tables
+ * with set-based SQL. On PostgreSQL the rows are streamed with the COPY protocol, on any other database
+ * (H2 in local tests) they are inserted with JDBC batches.
+ */
+@Component
+@Slf4j
+public class ImportStaging {
+
+    // Staging table and columns of workshop imports
+    static final String WORKSHOP_ROWS = "workshop_import_rows";
+    static final List<String> WORKSHOP_COLUMNS = List.of(
+            "job_id", "line_no", "workshop_id", "code", "name", "description", "start_time", "end_time", "capacity");
+
+    // Staging table and columns of registration imports
+    static final String REGISTRATION_ROWS = "registration_import_rows";
+    static final List<String> REGISTRATION_COLUMNS = List.of(
+            "job_id", "line_no", "reg_id", "workshop_code", "user_name", "user_email", "user_phone", "user_preferred_contact");
+
+    // Must match the allocation size of the entity sequences, each sequence value is the top of a block of ids
+    private static final int ID_BLOCK_SIZE = 50;
+
+    private static final String MERGE_WORKSHOPS = """
+            INSERT INTO workshops (workshop_id, code, name, description, start_time, end_time, capacity,
+                                   registered_count, inventory_shards, version, seat_revision)
+            SELECT s.workshop_id, s.code, s.name, s.description, s.start_time, s.end_time, s.capacity, 0, 0, 0, 0
+            FROM workshop_import_rows s
+            WHERE s.job_id = ?
+              AND s.line_no = (SELECT MIN(d.line_no) FROM workshop_import_rows d WHERE d.job_id = s.job_id AND d.code = s.code)
+              AND NOT EXISTS (SELECT 1 FROM workshops w WHERE w.code = s.code)
+            """;
+
+    private static final String REJECT_WORKSHOPS = """
+            INSERT INTO import_errors (job_id, line_no, message)
+            SELECT s.job_id, s.line_no, 'Workshop already exists with given code: ' || s.code
+            FROM workshop_import_rows s
+            WHERE s.job_id = ?
+              AND NOT EXISTS (SELECT 1 FROM workshops w WHERE w.workshop_id = s.workshop_id)
+            """;
+
+    // Takes the first line of each user and skips registered users and sharded or missing workshops. Seats are
+    // not checked yet, the workshops are only locked after the insert, in the order a single registration takes
+    // its locks in. Rows are inserted in code and user order so two imports with common users cannot deadlock
+    private static final String MERGE_REGISTRATIONS = """
+            INSERT INTO registrations (reg_id, workshop_code, user_name, user_email, user_phone, user_preferred_contact)
+            SELECT s.reg_id, s.workshop_code, s.user_name, s.user_email, s.user_phone, s.user_preferred_contact
+            FROM registration_import_rows s
+            JOIN workshops w ON w.code = s.workshop_code
+            WHERE s.job_id = ?
+              AND w.inventory_shards <= 1
+              AND s.line_no = (SELECT MIN(d.line_no) FROM registration_import_rows d
+                               WHERE d.job_id = s.job_id AND d.workshop_code = s.workshop_code AND d.user_name = s.user_name)
+              AND NOT EXISTS (SELECT 1 FROM registrations r
+                              WHERE r.workshop_code = s.workshop_code AND r.user_name = s.user_name)
+            ORDER BY s.workshop_code, s.user_name
+            """;
+
+    // On PostgreSQL a user registered by a transaction still in flight is skipped too, once that one commits
+    private static final String SKIP_CONFLICTS = " ON CONFLICT (workshop_code, user_name) DO NOTHING";
+
+    // Locks the workshops of the import in code order, like the bulk registration
+    private static final String LOCK_WORKSHOPS = """
+            SELECT w.workshop_id FROM workshops w
+            WHERE w.code IN (SELECT s.workshop_code FROM registration_import_rows s WHERE s.job_id = ?)
+            ORDER BY w.code
+            FOR UPDATE
+            """;
+
+    // Removes the inserted registrations beyond the seats left, the seats are filled in line order
+    private static final String REMOVE_OVERBOOKED = """
+            DELETE FROM registrations
+            WHERE reg_id IN (SELECT c.reg_id
+                             FROM (SELECT s.reg_id, s.workshop_code,
+                                          ROW_NUMBER() OVER (PARTITION BY s.workshop_code ORDER BY s.line_no) AS seat
+                                   FROM registration_import_rows s
+                                   JOIN registrations r ON r.reg_id = s.reg_id
+                                   WHERE s.job_id = ?) c
+                             LEFT JOIN workshops w ON w.code = c.workshop_code
+                             WHERE w.workshop_id IS NULL
+                                OR c.seat > w.capacity - w.registered_count)
+            """;
+
+    private static final String CLAIM_IMPORTED_SEATS = """
+            UPDATE workshops w
+            SET registered_count = registered_count + (SELECT COUNT(*) FROM registration_import_rows s
+                                                       JOIN registrations r ON r.reg_id = s.reg_id
+                                                       WHERE s.job_id = ? AND s.workshop_code = w.code),
+                seat_revision = seat_revision + 1
+            WHERE w.code IN (SELECT s.workshop_code FROM registration_import_rows s
+                             JOIN registrations r ON r.reg_id = s.reg_id
+                             WHERE s.job_id = ?)
+            """;
+
+    private static final String REJECT_REGISTRATIONS = """
+            INSERT INTO import_errors (job_id, line_no, message)
+            SELECT s.job_id, s.line_no,
+                   CASE WHEN w.workshop_id IS NULL THEN 'Workshop not found with given code: ' || s.workshop_code
+                        WHEN w.inventory_shards > 1 THEN 'Workshop uses a sharded inventory and cannot be imported into'
+                        WHEN EXISTS (SELECT 1 FROM registrations r
+                                     WHERE r.workshop_code = s.workshop_code AND r.user_name = s.user_name)
+                             THEN 'User already registered'
+                        ELSE 'Workshop is full , user cannot register' END
+            FROM registration_import_rows s
+            LEFT JOIN workshops w ON w.code = s.workshop_code
+            WHERE s.job_id = ?
+              AND NOT EXISTS (SELECT 1 FROM registrations r WHERE r.reg_id = s.reg_id)
+            """;
+
+    // Executes the staging and merge statements
+    private final JdbcTemplate jdbcTemplate;
+    // The dialect of the database, for sequence calls
+    private final Dialect dialect;
+    // Whether rows can be loaded with COPY and conflicting registrations skipped
+    private final boolean postgres;
+    // The second-level cache, which does not see the merge statements
+    private final Cache secondLevelCache;
+
+    public ImportStaging(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        this.postgres = dialect instanceof PostgreSQLDialect;
+        this.secondLevelCache = entityManagerFactory.getCache();
+    }
+
+    /**
+     * Allocates ids from an entity sequence, one sequence call per block of ids, in the same way Hibernate
+     * does. Ids taken here are never handed out by Hibernate and the other way around.
+     *
+     * @param sequence the name of the sequence
+     * @param count    the number of ids
+     * @return the ids
+     */
+    public List<Integer> allocateIds(String sequence, int count) {
+        String nextValue = dialect.getSequenceSupport().getSequenceNextValString(sequence);
+        List<Integer> ids = new ArrayList<>(count);
+        while (ids.size() < count) {
+            Long hi = jdbcTemplate.queryForObject(nextValue, Long.class);
+            if (hi == null || hi < ID_BLOCK_SIZE) {
+                // The first value of a fresh sequence is not the top of a full block
+                continue;
+            }
+            for (long id = hi - ID_BLOCK_SIZE + 1; id <= hi && ids.size() < count; id++) {
+                ids.add(Math.toIntExact(id));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Loads rows into a staging table.
+     *
+     * @param table   the staging table
+     * @param columns the columns of the rows
+     * @param rows    the rows, values in column order
+     */
+    public void load(String table, List<String> columns, List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        if (postgres) {
+            copy(table, columns, rows);
+        } else {
+            String placeholders = String.join(", ", columns.stream().map(column -> "?").toList());
+            String sql = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" + placeholders + ")";
+            jdbcTemplate.batchUpdate(sql, rows.stream().map(ImportStaging::toJdbcValues).toList());
+        }
+    }
+
+    /**
+     * Streams rows into a staging table with the COPY protocol of PostgreSQL.
+     */
+    private void copy(String table, List<String> columns, List<Object[]> rows) {
+        StringBuilder csv = new StringBuilder(rows.size() * 128);
+        for (Object[] row : rows) {
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    csv.append(',');
+                }
+                appendCsvValue(csv, row[i]);
+            }
+            csv.append('\n');
+        }
+        String sql = "COPY " + table + " (" + String.join(", ", columns) + ") FROM STDIN WITH (FORMAT csv)";
+        Long copied = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql, new StringReader(csv.toString()));
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Could not copy rows into " + table, ex);
+            }
+        });
+        log.debug("Copied {} rows into {}", copied, table);
+    }
+
+    /**
+     * Appends a value in the CSV format of COPY, an unquoted empty value is NULL.
+     */
+    private static void appendCsvValue(StringBuilder csv, Object value) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Number) {
+            csv.append(value);
+            return;
+        }
+        String text = value instanceof ZonedDateTime time ? time.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME) : value.toString();
+        csv.append('"').append(text.replace("\"", "\"\"")).append('"');
+    }
+
+    private static Object[] toJdbcValues(Object[] row) {
+        return Arrays.stream(row)
+                .map(value -> switch (value) {
+                    case ZonedDateTime time -> time.toOffsetDateTime();
+                    case Enum<?> constant -> constant.name();
+                    case null, default -> value;
+                })
+                .toArray();
+    }
+
+    /**
+     * Merges the staged workshops of a job. The first line of each code is imported unless a workshop
+     * with that code already exists, every other line is recorded as an import error.
+     *
+     * @param jobId the id of the import job
+     * @return the number of imported and rejected rows
+     */
+    @Transactional
+    public MergeResult mergeWorkshops(String jobId) {
+        int imported = jdbcTemplate.update(MERGE_WORKSHOPS, jobId);
+        int rejected = jdbcTemplate.update(REJECT_WORKSHOPS, jobId);
+        return new MergeResult(imported, rejected);
+    }
+
+    /**
+     * Merges the staged registrations of a job. The registrations are inserted first, then the workshops
+     * are locked so the seats are counted against concurrent registrations, the registrations that do not
+     * fit are removed and the seat counters are raised. Every other line is recorded as an import error
+     * with its reason.
+     *
+     * @param jobId the id of the import job
+     * @return the number of imported and rejected rows
+     */
+    @Transactional
+    public MergeResult mergeRegistrations(String jobId) {
+        int inserted = jdbcTemplate.update(postgres ? MERGE_REGISTRATIONS + SKIP_CONFLICTS : MERGE_REGISTRATIONS, jobId);
+        jdbcTemplate.queryForList(LOCK_WORKSHOPS, Integer.class, jobId);
+        int imported = inserted - jdbcTemplate.update(REMOVE_OVERBOOKED, jobId);
+        jdbcTemplate.update(CLAIM_IMPORTED_SEATS, jobId, jobId);
+        int rejected = jdbcTemplate.update(REJECT_REGISTRATIONS, jobId);
+        evictWorkshopsAfterCommit();
+        return new MergeResult(imported, rejected);
+    }
+
+    /**
+     * Evicts the cached workshops once the current transaction commits, their seat counters were
+     * raised by plain SQL.
+     */
+    private void evictWorkshopsAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    secondLevelCache.evict(Workshop.class);
+                }
+            });
+        } else {
+            secondLevelCache.evict(Workshop.class);
+        }
+    }
+
+    /**
+     * Removes the staged rows of a job.
+     *
+     * @param jobId the id of the import job
+     */
+    public void clear(String jobId) {
+        jdbcTemplate.update("DELETE FROM " + WORKSHOP_ROWS + " WHERE job_id = ?", jobId);
+        jdbcTemplate.update("DELETE FROM " + REGISTRATION_ROWS + " WHERE job_id = ?", jobId);
+    }
+
+    /**
+     * The outcome of a merge.
+     *
+     * @param imported the number of rows merged into the target table
+     * @param rejected the number of rows recorded as import errors
+     */
+    public record MergeResult(int imported, int rejected) {
+    }
+}
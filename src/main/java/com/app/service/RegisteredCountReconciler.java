@@ -0,0 +1,86 @@
+package com.app.service;
+
+import com.app.model.projection.RegistrationCount;
+import com.app.model.projection.WorkshopSeatCount;
+import com.app.repository.RegistrationsRepository;
+import com.app.repository.WorkshopRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Periodically compares the maintained seat counter of every workshop with the
+ * registrations actually stored and corrects any drift. Sharded workshops are skipped,
+ * their seats are kept in the inventory shards instead of the counter.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "workshop.reconciler.enabled", havingValue = "true", matchIfMissing = true)
+public class RegisteredCountReconciler {
+
+    // Repository for accessing workshop data
+    private final WorkshopRepository workshopRepository;
+    // Repository for accessing registration data
+    private final RegistrationsRepository registrationsRepository;
+
+    // Number of workshops compared per batch
+    @Value("${workshop.reconciler.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Walks all workshops in batches ordered by id and corrects the counters that drifted.
+     *
+     * @return the number of workshops whose counter was corrected
+     */
+    @Scheduled(initialDelayString = "${workshop.reconciler.initial-delay-ms:60000}",
+            fixedDelayString = "${workshop.reconciler.interval-ms:600000}")
+    public int reconcile() {
+        int corrected = 0;
+        Integer lastId = 0;
+        List<WorkshopSeatCount> batch;
+        do {
+            batch = workshopRepository.findSeatCountsAfter(lastId, PageRequest.ofSize(batchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+            corrected += reconcileBatch(batch);
+            lastId = batch.getLast().getWorkshopId();
+        } while (batch.size() == batchSize);
+        if (corrected > 0) {
+            log.warn("Corrected registered seat count of {} workshops", corrected);
+        }
+        return corrected;
+    }
+
+    /**
+     * Compares one batch of workshop counters with the stored registrations.
+     *
+     * @param batch the seat counters of the batch
+     * @return the number of workshops whose counter was corrected
+     */
+    private int reconcileBatch(List<WorkshopSeatCount> batch) {
+        Map<String, Long> actualCounts = registrationsRepository.countByWorkshopCodes(
+                        batch.stream().map(WorkshopSeatCount::getCode).toList()).stream()
+                .collect(Collectors.toMap(RegistrationCount::getWorkshopCode, RegistrationCount::getRegistrationCount));
+        int corrected = 0;
+        for (WorkshopSeatCount seatCount : batch) {
+            int actual = actualCounts.getOrDefault(seatCount.getCode(), 0L).intValue();
+            if (actual != seatCount.getRegisteredCount()) {
+                log.debug("Seat count drift for workshop {}: counter {} registrations {}",
+                        seatCount.getCode(), seatCount.getRegisteredCount(), actual);
+                // Skipped if a registration changed the seats meanwhile, the next run picks it up
+                corrected += workshopRepository.correctSeatCount(seatCount.getCode(), seatCount.getSeatRevision(), actual);
+            }
+        }
+        return corrected;
+    }
+}
@@ -0,0 +1,254 @@
+package com.app.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Durable log of the registrations accepted by the asynchronous intake, kept in a memory-mapped file used as
+ * a ring. Each record holds a sequence number and a checksum, and is followed by an end marker that is
+ * only replaced by the length of the next record once that record is written, so a record torn by a crash
+ * ends the log instead of corrupting it. The header holds the sequence of the last record persisted to the
+ * database and the offset of the first record that is not, so the space of persisted records is reused
+ * and only the records after it are replayed on restart.
+ */
+class RegistrationIntakeLog implements Closeable {
+
+    // Marks a file written by this class, followed by the persisted sequence and the start offset
+    private static final int MAGIC = 0x52494c31;
+    private static final int PERSISTED_SEQUENCE_OFFSET = 8;
+    private static final int START_OFFSET = 16;
+    private static final int HEADER_SIZE = 64;
+    // Length, checksum and sequence number before the payload of a record
+    private static final int RECORD_HEADER_SIZE = 16;
+    private static final int END_MARKER = 0;
+    // Written instead of a length when the next record starts after the header
+    private static final int WRAP_MARKER = -1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    // Whether every write is forced to the storage device before it is acknowledged
+    private final boolean forceWrites;
+    private final ReentrantLock lock = new ReentrantLock();
+    // The records that were not persisted when the log was opened
+    private final List<Entry> recovered = new ArrayList<>();
+    // Offset of the end marker, where the next record is written
+    private int position;
+    // Offset of the first record that is not persisted
+    private int start;
+    private long lastSequence;
+
+    RegistrationIntakeLog(Path file, int size, boolean forceWrites) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        lockExclusively(file);
+        // An existing log keeps its size, its ring cannot be cut short
+        this.capacity = (int) Math.max(size, channel.size());
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        this.forceWrites = forceWrites;
+        if (buffer.getInt(0) != MAGIC) {
+            buffer.putInt(HEADER_SIZE, END_MARKER);
+            buffer.putLong(PERSISTED_SEQUENCE_OFFSET, 0);
+            buffer.putInt(START_OFFSET, HEADER_SIZE);
+            buffer.putInt(0, MAGIC);
+            buffer.force();
+        }
+        recover();
+    }
+
+    /**
+     * Locks the file for this process until the channel is closed, two processes writing the same log
+     * would overwrite each other's records.
+     */
+    private void lockExclusively(Path file) throws IOException {
+        FileLock fileLock;
+        try {
+            fileLock = channel.tryLock();
+        } catch (OverlappingFileLockException ex) {
+            fileLock = null;
+        }
+        if (fileLock == null) {
+            channel.close();
+            throw new IOException("The intake log " + file + " is already in use by another process");
+        }
+    }
+
+    /**
+     * Returns the records that were not persisted when the log was opened, in the order they were appended.
+     */
+    List<Entry> recovered() {
+        return List.copyOf(recovered);
+    }
+
+    /**
+     * Appends a record, forced to the storage device before this method returns if writes are forced.
+     *
+     * @param payload the payload of the record
+     * @return the appended record, or null if the log is full
+     */
+    Entry append(byte[] payload) {
+        int length = RECORD_HEADER_SIZE + payload.length;
+        lock.lock();
+        try {
+            long sequence = lastSequence + 1;
+            int offset;
+            if (position >= start && position + length + Integer.BYTES <= capacity) {
+                offset = position;
+                write(offset, sequence, payload);
+            } else if (position >= start && HEADER_SIZE + length + Integer.BYTES <= start) {
+                // Continues after the header, the record is written before the wrap marker makes it reachable
+                offset = HEADER_SIZE;
+                write(offset, sequence, payload);
+                buffer.putInt(position, WRAP_MARKER);
+                force(position, Integer.BYTES);
+            } else if (position < start && position + length + Integer.BYTES <= start) {
+                offset = position;
+                write(offset, sequence, payload);
+            } else {
+                return null;
+            }
+            lastSequence = sequence;
+            position = offset + length;
+            return new Entry(sequence, position, payload);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records that all records up to the given one are persisted, their space is reused.
+     *
+     * @param entry the last persisted record
+     */
+    void markPersisted(Entry entry) {
+        lock.lock();
+        try {
+            if (entry.sequence() <= buffer.getLong(PERSISTED_SEQUENCE_OFFSET)) {
+                return;
+            }
+            buffer.putLong(PERSISTED_SEQUENCE_OFFSET, entry.sequence());
+            buffer.putInt(START_OFFSET, entry.end());
+            force(0, HEADER_SIZE);
+            start = entry.end();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the bytes taken by records that are not persisted, and by the end of the file skipped by a wrap.
+     */
+    long used() {
+        lock.lock();
+        try {
+            return position >= start ? position - start : (capacity - start) + (position - HEADER_SIZE);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            buffer.force();
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes a record and the end marker after it, then its length, which makes it part of the log.
+     */
+    private void write(int offset, long sequence, byte[] payload) {
+        int length = RECORD_HEADER_SIZE + payload.length;
+        buffer.putLong(offset + 8, sequence);
+        buffer.put(offset + RECORD_HEADER_SIZE, payload);
+        buffer.putInt(offset + length, END_MARKER);
+        buffer.putInt(offset + 4, checksum(sequence, payload));
+        force(offset + 4, length - 4 + Integer.BYTES);
+        buffer.putInt(offset, payload.length);
+        force(offset, Integer.BYTES);
+    }
+
+    /**
+     * Reads the records from the start offset up to the end marker, or up to the first torn record.
+     */
+    private void recover() {
+        long persistedSequence = buffer.getLong(PERSISTED_SEQUENCE_OFFSET);
+        start = buffer.getInt(START_OFFSET);
+        lastSequence = persistedSequence;
+        int offset = start;
+        boolean wrapped = false;
+        while (true) {
+            if (offset + Integer.BYTES > capacity) {
+                break;
+            }
+            int payloadLength = buffer.getInt(offset);
+            if (payloadLength == WRAP_MARKER && !wrapped && offset >= start) {
+                wrapped = true;
+                offset = HEADER_SIZE;
+                continue;
+            }
+            if (payloadLength <= 0 || payloadLength > capacity - offset - RECORD_HEADER_SIZE - Integer.BYTES) {
+                break;
+            }
+            int end = offset + RECORD_HEADER_SIZE + payloadLength;
+            if (wrapped && end + Integer.BYTES > start) {
+                break;
+            }
+            long sequence = buffer.getLong(offset + 8);
+            byte[] payload = new byte[payloadLength];
+            buffer.get(offset + RECORD_HEADER_SIZE, payload);
+            if (sequence <= lastSequence || buffer.getInt(offset + 4) != checksum(sequence, payload)) {
+                break;
+            }
+            recovered.add(new Entry(sequence, end, payload));
+            lastSequence = sequence;
+            offset = end;
+        }
+        position = offset;
+        // Whatever follows the last intact record is dropped
+        buffer.putInt(position, END_MARKER);
+        force(position, Integer.BYTES);
+    }
+
+    private void force(int index, int length) {
+        if (forceWrites) {
+            buffer.force(index, length);
+        }
+    }
+
+    private static int checksum(long sequence, byte[] payload) {
+        CRC32C crc = new CRC32C();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (sequence >>> shift));
+        }
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * A record of the log.
+     *
+     * @param sequence the sequence number, increasing by one per record
+     * @param end      the offset after the record
+     * @param payload  the payload
+     */
+    record Entry(long sequence, int end, byte[] payload) {
+    }
+}
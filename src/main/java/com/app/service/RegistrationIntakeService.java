@@ -0,0 +1,467 @@
+package com.app.service;
+
+import com.app.exception.InvalidWorkshopDataException;
+import com.app.exception.RegistrationIntakeFullException;
+import com.app.exception.RegistrationTicketNotFoundException;
+import com.app.exception.UserAlreadyRegisteredException;
+import com.app.model.entity.PreferredContact;
+import com.app.model.request.RegistrationsRequest;
+import com.app.model.response.BulkRegistrationResult;
+import com.app.model.response.RegistrationStatus;
+import com.app.model.response.RegistrationTicket;
+import com.app.repository.WorkshopRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Asynchronous intake of registrations. A registration is admitted against an in-memory estimate of the
+ * seats left of its workshop, appended to a durable local log and acknowledged with a ticket, without
+ * waiting for the database. A background writer persists the queued registrations in batches through the
+ * bulk registration, which makes the final duplicate and capacity checks, and records the outcome of each
+ * ticket. Registrations still in the log when the service stops are written after the next start.
+ */
+@Service
+@ConditionalOnProperty(name = "workshop.registration-intake.async", havingValue = "true")
+@Slf4j
+public class RegistrationIntakeService {
+
+    private static final long POLL_MILLIS = 100;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+    private static final long MAX_RETRY_DELAY_MILLIS = 30_000;
+
+    // Writes the queued registrations
+    private final RegistrationService registrationService;
+    // Reads the seats left of a workshop for the estimate
+    private final WorkshopRepository workshopRepository;
+    private final SeatInventoryService seatInventoryService;
+    // Serializes the registrations into the log
+    private final ObjectMapper objectMapper;
+    // The durable log of the accepted registrations
+    private final RegistrationIntakeLog intakeLog;
+    // Estimated seats left by workshop code, reloaded from the database after the time to live
+    private final Cache<String, AtomicInteger> seatsLeft;
+    // The tickets of the written registrations by id, kept for the time to live after they were written
+    private final Cache<String, RegistrationTicket> tickets;
+    // The tickets of the registrations accepted and not yet written by id, never evicted, the log bounds them
+    private final ConcurrentMap<String, RegistrationTicket> pendingTickets = new ConcurrentHashMap<>();
+    // Registrations accepted and not yet written, by workshop code
+    private final ConcurrentMap<String, AtomicInteger> queuedByWorkshop = new ConcurrentHashMap<>();
+    // The workshops and users of the registrations accepted and not yet written
+    private final Set<String> queuedUsers = ConcurrentHashMap.newKeySet();
+    // The registrations waiting for the writer, in the order of the log
+    private final BlockingQueue<Queued> queue = new LinkedBlockingQueue<>();
+    // Keeps the queue in the order of the log
+    private final ReentrantLock appendLock = new ReentrantLock();
+    // Runs the writer
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+    // The maximum number of registrations written in one transaction
+    private final int batchSize;
+    // How long the writer may take to write the queue when the service stops
+    private final Duration shutdownTimeout;
+    private final MeterRegistry meterRegistry;
+    private final Counter accepted;
+    private volatile boolean running = true;
+
+    public RegistrationIntakeService(RegistrationService registrationService, WorkshopRepository workshopRepository,
+                                     SeatInventoryService seatInventoryService, ObjectMapper objectMapper,
+                                     @Value("${workshop.registration-intake.log-file:data/registration-intake.log}") Path logFile,
+                                     @Value("${workshop.registration-intake.log-size:64MB}") DataSize logSize,
+                                     @Value("${workshop.registration-intake.force-writes:true}") boolean forceWrites,
+                                     @Value("${workshop.registration-intake.batch-size:200}") int batchSize,
+                                     @Value("${workshop.registration-intake.seat-estimate-ttl:PT5S}") Duration seatEstimateTtl,
+                                     @Value("${workshop.registration-intake.ticket-ttl:PT1H}") Duration ticketTtl,
+                                     @Value("${workshop.registration-intake.max-tickets:100000}") long maxTickets,
+                                     @Value("${workshop.registration-intake.shutdown-timeout:PT10S}") Duration shutdownTimeout,
+                                     MeterRegistry meterRegistry) throws IOException {
+        this.registrationService = registrationService;
+        this.workshopRepository = workshopRepository;
+        this.seatInventoryService = seatInventoryService;
+        this.objectMapper = objectMapper;
+        if (logSize.toBytes() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The registration intake log size " + logSize
+                    + " is larger than the maximum of " + Integer.MAX_VALUE + " bytes");
+        }
+        this.intakeLog = new RegistrationIntakeLog(logFile, (int) logSize.toBytes(), forceWrites);
+        this.batchSize = Math.min(batchSize, RegistrationService.MAX_BULK_SIZE);
+        this.shutdownTimeout = shutdownTimeout;
+        this.seatsLeft = Caffeine.newBuilder()
+                .expireAfterWrite(seatEstimateTtl)
+                .build();
+        this.tickets = Caffeine.newBuilder()
+                .maximumSize(maxTickets)
+                .expireAfterWrite(ticketTtl)
+                .build();
+        this.meterRegistry = meterRegistry;
+        this.accepted = Counter.builder("workshop.registration-intake.accepted")
+                .description("Registrations accepted by the asynchronous intake")
+                .register(meterRegistry);
+        Gauge.builder("workshop.registration-intake.queued", queue, BlockingQueue::size)
+                .description("Accepted registrations waiting to be written")
+                .register(meterRegistry);
+        Gauge.builder("workshop.registration-intake.log.used", intakeLog, RegistrationIntakeLog::used)
+                .description("Bytes of the intake log taken by registrations not yet written")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues the registrations left in the log by the previous run, then starts the writer.
+     */
+    @PostConstruct
+    void start() {
+        List<RegistrationIntakeLog.Entry> recovered = intakeLog.recovered();
+        for (RegistrationIntakeLog.Entry entry : recovered) {
+            QueuedRegistration registration;
+            try {
+                registration = objectMapper.readValue(entry.payload(), QueuedRegistration.class);
+            } catch (IOException ex) {
+                log.error("Skipping unreadable registration {} of the intake log", entry.sequence(), ex);
+                continue;
+            }
+            queuedUsers.add(registration.userKey());
+            queue(entry, registration);
+        }
+        if (!recovered.isEmpty()) {
+            log.info("Writing {} registrations accepted before the restart", queue.size());
+        }
+        writer.execute(this::writeQueued);
+    }
+
+    /**
+     * Accepts a registration of the authenticated user, to be written in the background.
+     *
+     * @param registrationsRequest the registration details
+     * @param authentication       the authentication object
+     * @return the ticket of the registration
+     * @throws UserAlreadyRegisteredException  if a registration of the user for the workshop is waiting to be written
+     * @throws InvalidWorkshopDataException    if the workshop does not exist or has no seats left
+     * @throws RegistrationIntakeFullException if the log has no room for the registration
+     */
+    public RegistrationTicket submit(RegistrationsRequest registrationsRequest, Authentication authentication) {
+        RegistrationService.applyUser(registrationsRequest, authentication);
+        String workshopCode = registrationsRequest.getWorkshopCode();
+        if (StringUtils.isBlank(workshopCode) || registrationsRequest.getUserPreferredContact() == null) {
+            throw new InvalidWorkshopDataException("Workshop code and preferred contact are required");
+        }
+        if (!running) {
+            throw new RegistrationIntakeFullException("Registrations are not accepted while the service stops, please try again later");
+        }
+        QueuedRegistration registration = new QueuedRegistration(UUID.randomUUID().toString(), workshopCode,
+                registrationsRequest.getUserName(), registrationsRequest.getUserEmail(),
+                registrationsRequest.getUserPhone(), registrationsRequest.getUserPreferredContact());
+        if (!queuedUsers.add(registration.userKey())) {
+            throw new UserAlreadyRegisteredException("User already registered");
+        }
+        boolean seatTaken = false;
+        RegistrationTicket ticket;
+        try {
+            takeSeat(workshopCode);
+            seatTaken = true;
+            byte[] payload = objectMapper.writeValueAsBytes(registration);
+            appendLock.lock();
+            try {
+                RegistrationIntakeLog.Entry entry = intakeLog.append(payload);
+                if (entry == null) {
+                    throw new RegistrationIntakeFullException("Too many registrations are waiting to be written, please try again later");
+                }
+                ticket = queue(entry, registration);
+            } finally {
+                appendLock.unlock();
+            }
+        } catch (RuntimeException | JsonProcessingException ex) {
+            queuedUsers.remove(registration.userKey());
+            if (seatTaken) {
+                returnSeat(workshopCode);
+            }
+            if (ex instanceof JsonProcessingException) {
+                throw new IllegalStateException("Registration cannot be serialized", ex);
+            }
+            throw (RuntimeException) ex;
+        }
+        accepted.increment();
+        log.debug("Accepted registration {} for workshop code {}", registration.ticketId(), workshopCode);
+        return ticket;
+    }
+
+    /**
+     * Returns a ticket of the authenticated user.
+     *
+     * @param ticketId       the id of the ticket
+     * @param authentication the authentication object
+     * @return the ticket with the outcome of the registration
+     * @throws RegistrationTicketNotFoundException if the ticket is unknown, expired or belongs to another user
+     */
+    public RegistrationTicket getTicket(String ticketId, Authentication authentication) {
+        RegistrationTicket ticket = pendingTickets.get(ticketId);
+        if (ticket == null) {
+            ticket = tickets.getIfPresent(ticketId);
+        }
+        if (ticket == null || !ticket.getUserName().equals(userNameOf(authentication))) {
+            throw new RegistrationTicketNotFoundException("Registration ticket not found with given id: " + ticketId);
+        }
+        return ticket;
+    }
+
+    @PreDestroy
+    void shutdown() throws IOException, InterruptedException {
+        running = false;
+        writer.shutdown();
+        if (!writer.awaitTermination(shutdownTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            log.warn("{} registrations left in the intake log, they are written after the next start", queue.size());
+            writer.shutdownNow();
+            writer.awaitTermination(1, TimeUnit.SECONDS);
+        }
+        intakeLog.close();
+    }
+
+    /**
+     * Makes an appended registration pending and hands it to the writer.
+     */
+    private RegistrationTicket queue(RegistrationIntakeLog.Entry entry, QueuedRegistration registration) {
+        RegistrationTicket ticket = registration.ticket(RegistrationStatus.PENDING, null);
+        pendingTickets.put(registration.ticketId(), ticket);
+        queuedByWorkshop.computeIfAbsent(registration.workshopCode(), code -> new AtomicInteger()).incrementAndGet();
+        queue.add(new Queued(entry, registration));
+        return ticket;
+    }
+
+    /**
+     * Takes a seat from the estimate of the workshop, loading the estimate if it expired.
+     */
+    private void takeSeat(String workshopCode) {
+        AtomicInteger seats = seatsLeft.get(workshopCode, this::loadSeatsLeft);
+        if (seats.getAndUpdate(left -> left > 0 ? left - 1 : left) <= 0) {
+            throw new InvalidWorkshopDataException("Workshop is full , user cannot register");
+        }
+    }
+
+    private void returnSeat(String workshopCode) {
+        AtomicInteger seats = seatsLeft.getIfPresent(workshopCode);
+        if (seats != null) {
+            seats.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the seats left of a workshop in the database, less the registrations waiting to be written.
+     */
+    private AtomicInteger loadSeatsLeft(String workshopCode) {
+        int inventoryShards = workshopRepository.findInventoryShardsByCode(workshopCode)
+                .orElseThrow(() -> new InvalidWorkshopDataException("Workshop not found with given code: " + workshopCode));
+        int seats = inventoryShards > 1
+                ? seatInventoryService.getSeatsLeft(workshopCode)
+                : workshopRepository.findSeatsLeftByCode(workshopCode).orElse(0);
+        AtomicInteger queued = queuedByWorkshop.get(workshopCode);
+        return new AtomicInteger(seats - (queued == null ? 0 : queued.get()));
+    }
+
+    /**
+     * Writes the queue in batches until the service stops and the queue is empty. A batch that fails is kept
+     * and tried again after a growing delay, so the writer never stops while the service runs.
+     */
+    private void writeQueued() {
+        List<Queued> batch = new ArrayList<>(batchSize);
+        // The outcome of the batch once it is written, so a failure after the write does not write it again
+        List<BulkRegistrationResult> results = null;
+        long retryDelay = RETRY_DELAY_MILLIS;
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    Queued first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                }
+                if (results == null) {
+                    List<BulkRegistrationResult> written = write(batch);
+                    if (written == null) {
+                        return;
+                    }
+                    if (written.size() != batch.size()) {
+                        throw new IllegalStateException("Expected " + batch.size() + " results but got " + written.size());
+                    }
+                    results = written;
+                }
+                complete(batch, results);
+                batch.clear();
+                results = null;
+                retryDelay = RETRY_DELAY_MILLIS;
+            } catch (InterruptedException ex) {
+                // Only interrupted when the service stops, the batch stays in the log for the next start
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                log.error("Could not write {} queued registrations, retrying in {} ms", batch.size(), retryDelay, ex);
+                try {
+                    Thread.sleep(retryDelay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Writes a batch of registrations. A batch the database rejects for another reason than being
+     * unavailable is written one registration at a time, so one bad registration does not hold up the others.
+     *
+     * @return the result of each registration, or null if the service stopped before the batch was written
+     */
+    private List<BulkRegistrationResult> write(List<Queued> batch) throws InterruptedException {
+        List<RegistrationsRequest> requests = batch.stream().map(queued -> queued.registration().request()).toList();
+        try {
+            return persist(requests);
+        } catch (RuntimeException ex) {
+            log.error("Writing {} queued registrations failed, writing them one at a time", requests.size(), ex);
+        }
+        List<BulkRegistrationResult> results = new ArrayList<>();
+        for (RegistrationsRequest request : requests) {
+            try {
+                List<BulkRegistrationResult> result = persist(List.of(request));
+                if (result == null) {
+                    return null;
+                }
+                results.addAll(result);
+            } catch (RuntimeException single) {
+                log.error("Dropping queued registration of {} for workshop code {}", request.getUserName(),
+                        request.getWorkshopCode(), single);
+                results.add(BulkRegistrationResult.builder().status(RegistrationStatus.INVALID).build());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Records the outcome of a written batch and frees its records in the log.
+     */
+    private void complete(List<Queued> batch, List<BulkRegistrationResult> results) {
+        for (int i = 0; i < batch.size(); i++) {
+            complete(batch.get(i).registration(), results.get(i));
+        }
+        intakeLog.markPersisted(batch.getLast().entry());
+    }
+
+    /**
+     * Writes registrations, retrying while the database is unavailable.
+     *
+     * @return the results, or null if the service stopped before they were written
+     */
+    private List<BulkRegistrationResult> persist(List<RegistrationsRequest> requests) throws InterruptedException {
+        while (true) {
+            try {
+                return registrationService.createRegistrations(requests);
+            } catch (TransientDataAccessException | CannotCreateTransactionException | DataAccessResourceFailureException ex) {
+                if (!running) {
+                    return null;
+                }
+                log.warn("Could not write {} queued registrations, retrying: {}", requests.size(), ex.getMessage());
+                Thread.sleep(RETRY_DELAY_MILLIS);
+            }
+        }
+    }
+
+    private void complete(QueuedRegistration registration, BulkRegistrationResult result) {
+        // Stored before the pending ticket is dropped, so a poll in between finds one of them
+        tickets.put(registration.ticketId(), registration.ticket(result.getStatus(), result));
+        pendingTickets.remove(registration.ticketId());
+        if (!queuedUsers.remove(registration.userKey())) {
+            // Completed before, by an attempt of the batch that failed further on
+            return;
+        }
+        queuedByWorkshop.computeIfPresent(registration.workshopCode(),
+                (code, queued) -> queued.decrementAndGet() == 0 ? null : queued);
+        if (result.getStatus() != RegistrationStatus.REGISTERED) {
+            // The seat taken from the estimate was not used, or the estimate was too high
+            seatsLeft.invalidate(registration.workshopCode());
+        }
+        Counter.builder("workshop.registration-intake.written")
+                .tag("status", result.getStatus().name().toLowerCase())
+                .description("Accepted registrations written to the database, by outcome")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static String userNameOf(Authentication authentication) {
+        if (authentication instanceof JwtAuthenticationToken jwtAuth
+                && jwtAuth.getTokenAttributes().get("preferred_username") != null) {
+            return jwtAuth.getTokenAttributes().get("preferred_username").toString();
+        }
+        return authentication == null ? null : authentication.getName();
+    }
+
+    /**
+     * A registration waiting for the writer, with its record in the log.
+     */
+    private record Queued(RegistrationIntakeLog.Entry entry, QueuedRegistration registration) {
+    }
+
+    /**
+     * A registration accepted by the intake, as it is stored in the log.
+     */
+    record QueuedRegistration(String ticketId, String workshopCode, String userName, String userEmail, String userPhone,
+                              PreferredContact userPreferredContact) {
+
+        String userKey() {
+            return workshopCode + '\u0000' + userName;
+        }
+
+        RegistrationsRequest request() {
+            return RegistrationsRequest.builder()
+                    .workshopCode(workshopCode)
+                    .userName(userName)
+                    .userEmail(userEmail)
+                    .userPhone(userPhone)
+                    .userPreferredContact(userPreferredContact)
+                    .build();
+        }
+
+        RegistrationTicket ticket(RegistrationStatus status, BulkRegistrationResult result) {
+            return RegistrationTicket.builder()
+                    .ticketId(ticketId)
+                    .workshopCode(workshopCode)
+                    .userName(userName)
+                    .status(status)
+                    .registration(result == null ? null : result.getRegistration())
+                    .build();
+        }
+    }
+}
@@ -8,22 +8,44 @@ import com.app.exception.UserAlreadyRegisteredException;
 import com.app.model.entity.Registrations;
 import com.app.model.entity.Workshop;
 import com.app.model.mapper.RegistrationsMapper;
+import com.app.model.request.FileFormat;
 import com.app.model.request.RegistrationsRequest;
+import com.app.model.response.BulkRegistrationResult;
+import com.app.model.response.RegistrationStatus;
 import com.app.model.response.RegistrationsResponse;
 import com.app.repository.RegistrationsRepository;
 import com.app.repository.WorkshopRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import jakarta.transaction.Transactional;
-import jakarta.validation.constraints.NotBlank;
-import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Service class for managing registrations.
@@ -33,6 +55,12 @@ import java.util.List;
 @Slf4j
 public class RegistrationService {
 
+    // Maximum number of registrations in one bulk registration
+    public static final int MAX_BULK_SIZE = 500;
+
+    // Header line of the CSV export
+    private static final String CSV_HEADER = "registrationId,workshopCode,userName,userEmail,userPhone,userPreferredContact\n";
+
     // The workshop registration repository
     private final WorkshopRegistrationService workshopRegistrationService;
     // The registration repository
@@ -41,6 +69,12 @@ public class RegistrationService {
     private final RegistrationsMapper registrationsMapper;
 
     private final WorkshopRepository workshopRepository;
+    // The sharded seat inventory of high-demand workshops
+    private final SeatInventoryService seatInventoryService;
+    // Cache of the current ETag of each workshop
+    private final WorkshopVersionCache workshopVersionCache;
+    // Writes the NDJSON export
+    private final ObjectMapper objectMapper;
 
     /**
      * Returns all workshops.
@@ -48,19 +82,96 @@ public class RegistrationService {
      * @return a list of all workshops
      */
     public List<RegistrationsResponse> getAllRegistrations() {
-        return registrationRepository.findAll().stream()
-                .map(registrationsMapper::RegistrationsToRegistrationsResponse)
-                .toList();
+        return registrationRepository.findAllResponses();
+    }
+
+    /**
+     * Writes the registrations to the output as they are read from the database, so memory use does not
+     * depend on the number of registrations exported.
+     *
+     * @param format       the export format
+     * @param workshopCode the code of the workshop, null for all workshops
+     * @param from         the inclusive lower bound of the workshop start time, null for no bound
+     * @param to           the exclusive upper bound of the workshop start time, null for no bound
+     * @param out          the output to write to
+     * @throws IOException if writing to the output fails
+     */
+    @Transactional
+    public void exportRegistrations(FileFormat format, String workshopCode, ZonedDateTime from, ZonedDateTime to,
+                                    OutputStream out) throws IOException {
+        log.debug("Exporting registrations as {} for workshop code {} from {} to {}", format, workshopCode, from, to);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        try (Stream<RegistrationsResponse> registrations = registrationRepository.streamForExport(
+                StringUtils.trimToNull(workshopCode), from, to)) {
+            ObjectWriter jsonWriter = objectMapper.writerFor(RegistrationsResponse.class);
+            if (format == FileFormat.CSV) {
+                writer.write(CSV_HEADER);
+            }
+            for (RegistrationsResponse registration : (Iterable<RegistrationsResponse>) registrations::iterator) {
+                writer.write(format == FileFormat.CSV ? toCsv(registration) : jsonWriter.writeValueAsString(registration));
+                writer.write('\n');
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Returns the registration as a CSV line without the line break.
+     */
+    private static String toCsv(RegistrationsResponse registration) {
+        return String.join(",",
+                String.valueOf(registration.getRegistrationId()),
+                csvField(registration.getWorkshopCode()),
+                csvField(registration.getUserName()),
+                csvField(registration.getUserEmail()),
+                csvField(registration.getUserPhone()),
+                registration.getUserPreferredContact() == null ? "" : registration.getUserPreferredContact().name());
+    }
+
+    /**
+     * Quotes a CSV field if it contains a separator, a quote or a line break.
+     */
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (StringUtils.containsAny(value, ',', '"', '\n', '\r')) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
     }
 
     /**
-     * Creates a new registration.
+     * Creates a new registration. The registration is inserted first and a duplicate is detected by the
+     * unique constraint on workshop code and user name, so no lookup precedes the insert and concurrent
+     * duplicates cannot slip through. A seat is then claimed with a single guarded update on the workshop
+     * row in the same transaction, so the workshop can never be overbooked by concurrent requests.
      *
      * @param registrationsRequest the registration details
      * @param authentication       the authentication object
      * @return the created registration
      */
+    @Transactional
     public RegistrationsResponse createRegistration(RegistrationsRequest registrationsRequest, Authentication authentication) {
+        applyUser(registrationsRequest, authentication);
+        final String workshopCode = registrationsRequest.getWorkshopCode();
+        final Registrations registrationToSave = registrationsMapper.RegistrationsRequestToRegistrations(registrationsRequest);
+        registrationToSave.setWorkshopCode(workshopCode);
+        Registrations savedRegistration = insertRegistration(registrationToSave);
+        log.debug("Claiming a seat for workshop code {}", workshopCode);
+        claimSeat(workshopCode);
+        workshopVersionCache.evict(workshopCode);
+        return registrationsMapper.RegistrationsToRegistrationsResponse(savedRegistration);
+    }
+
+    /**
+     * Sets the user name and email of a registration from the token of the authenticated user.
+     *
+     * @param registrationsRequest the registration details
+     * @param authentication       the authentication object
+     * @throws InvalidUserException if the token has no user name or email
+     */
+    static void applyUser(RegistrationsRequest registrationsRequest, Authentication authentication) {
         String userName = "";
         String email = "";
         if (authentication instanceof JwtAuthenticationToken jwtAuth) {
@@ -70,36 +181,173 @@ public class RegistrationService {
         if (StringUtils.isBlank(userName) || StringUtils.isBlank(email)) {
             throw new InvalidUserException("User not found");
         }
-        log.debug("Check if registration already exists {}", registrationsRequest.getWorkshopCode());
-        if (checkIfUserAlreadyRegistered(registrationsRequest.getWorkshopCode(), userName)) {
-            throw new UserAlreadyRegisteredException("User already registered");
-        }
-        log.debug("check if capacity is full for workshop code {}", registrationsRequest.getWorkshopCode());
-        if (workshopRegistrationService.isWorkshopFull(registrationsRequest.getWorkshopCode())) {
-            throw new InvalidWorkshopDataException("Workshop is full , user cannot register");
-        }
         registrationsRequest.setUserName(userName);
         registrationsRequest.setUserEmail(email);
-        final Registrations registrationToSave = registrationsMapper.RegistrationsRequestToRegistrations(registrationsRequest);
-        Workshop updateWorkshop = workshopRepository.findByCode(registrationsRequest.getWorkshopCode())
-                .orElseThrow(() -> new InvalidWorkshopDataException("Workshop not found with given code: " + registrationsRequest.getWorkshopCode()));
+    }
 
-        Registrations savedRegistration = registrationRepository.save(registrationToSave);
-        updateWorkshop.getRegistrations().add(registrationToSave);
-        Workshop savedWorkshop = workshopRepository.save(updateWorkshop);
-        savedRegistration.setWorkshopCode(savedWorkshop.getCode());
-        return registrationsMapper.RegistrationsToRegistrationsResponse(savedRegistration);
+    /**
+     * Registers a batch of users. The registrations are inserted first, skipping users who are already
+     * registered, then the workshops are locked and the seats of each workshop are claimed with one update.
+     * Registrations that did not get a seat are removed again. Each item gets its own result instead of
+     * failing the whole batch.
+     *
+     * @param registrationsRequests the registrations, each with the user details
+     * @return the result of each registration, in the order of the request
+     * @throws InvalidWorkshopDataException if the batch is larger than the maximum bulk size
+     */
+    @Transactional
+    public List<BulkRegistrationResult> createRegistrations(List<RegistrationsRequest> registrationsRequests) {
+        if (registrationsRequests.size() > MAX_BULK_SIZE) {
+            throw new InvalidWorkshopDataException("At most " + MAX_BULK_SIZE + " registrations can be created at once");
+        }
+        log.debug("Creating {} registrations in bulk", registrationsRequests.size());
+        RegistrationStatus[] statuses = new RegistrationStatus[registrationsRequests.size()];
+        // Indexes of the valid users by workshop code, the first item of each user only
+        Map<String, List<Integer>> candidates = new LinkedHashMap<>();
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < registrationsRequests.size(); i++) {
+            RegistrationsRequest request = registrationsRequests.get(i);
+            if (StringUtils.isAnyBlank(request.getWorkshopCode(), request.getUserName(), request.getUserEmail())
+                    || request.getUserPreferredContact() == null) {
+                statuses[i] = RegistrationStatus.INVALID;
+            } else if (!seen.add(registrationKey(request.getWorkshopCode(), request.getUserName()))) {
+                statuses[i] = RegistrationStatus.ALREADY_REGISTERED;
+            } else {
+                candidates.computeIfAbsent(request.getWorkshopCode(), code -> new ArrayList<>()).add(i);
+            }
+        }
+        Registrations[] registrations = new Registrations[registrationsRequests.size()];
+        List<Integer> rejected = new ArrayList<>();
+        if (!candidates.isEmpty()) {
+            candidates.forEach((code, indexes) -> indexes.forEach(i -> {
+                registrations[i] = registrationsMapper.RegistrationsRequestToRegistrations(registrationsRequests.get(i));
+                registrations[i].setWorkshopCode(code);
+            }));
+            // Inserted before the workshops are locked, the order a single registration takes its locks in. The
+            // insert skips users registered by other transactions, including ones that have not committed yet
+            Set<Registrations> inserted = Collections.newSetFromMap(new IdentityHashMap<>());
+            inserted.addAll(registrationRepository.insertIfAbsent(candidates.values().stream()
+                    .flatMap(List::stream)
+                    .map(i -> registrations[i])
+                    .toList()));
+            Map<String, Workshop> workshops = workshopRepository.lockByCodeIn(candidates.keySet()).stream()
+                    .collect(Collectors.toMap(Workshop::getCode, Function.identity()));
+            candidates.forEach((code, indexes) -> {
+                List<Integer> newUsers = new ArrayList<>();
+                for (int i : indexes) {
+                    if (inserted.contains(registrations[i])) {
+                        newUsers.add(i);
+                    } else {
+                        statuses[i] = RegistrationStatus.ALREADY_REGISTERED;
+                        registrations[i] = null;
+                    }
+                }
+                Set<Integer> claimed = new HashSet<>(claimSeats(workshops.get(code), newUsers, statuses));
+                newUsers.stream().filter(i -> !claimed.contains(i)).forEach(rejected::add);
+            });
+        }
+        if (!rejected.isEmpty()) {
+            registrationRepository.deleteAllByIdInBatch(rejected.stream().map(i -> registrations[i].getRegistrationId()).toList());
+            rejected.forEach(i -> registrations[i] = null);
+        }
+        candidates.keySet().forEach(workshopVersionCache::evict);
+        return IntStream.range(0, registrationsRequests.size())
+                .mapToObj(i -> BulkRegistrationResult.builder()
+                        .index(i)
+                        .workshopCode(registrationsRequests.get(i).getWorkshopCode())
+                        .userName(registrationsRequests.get(i).getUserName())
+                        .status(statuses[i])
+                        .registration(registrations[i] == null ? null
+                                : registrationsMapper.RegistrationsToRegistrationsResponse(registrations[i]))
+                        .build())
+                .toList();
+    }
+
+    /**
+     * Claims the seats of a bulk registration for one locked workshop. Users are served in request order
+     * until the workshop is full, and the result of everyone else is recorded.
+     *
+     * @param workshop the locked workshop, null if it does not exist
+     * @param indexes  the indexes of the users whose registration was inserted
+     * @param statuses the results of the bulk registration
+     * @return the indexes of the users who got a seat
+     */
+    private List<Integer> claimSeats(Workshop workshop, List<Integer> indexes, RegistrationStatus[] statuses) {
+        List<Integer> claimed = new ArrayList<>();
+        for (int i : indexes) {
+            statuses[i] = workshop == null ? RegistrationStatus.WORKSHOP_NOT_FOUND : RegistrationStatus.WORKSHOP_FULL;
+        }
+        if (workshop == null || indexes.isEmpty()) {
+            return claimed;
+        }
+        if (workshop.hasShardedInventory()) {
+            // All seats are taken in one locked pass, claiming them one at a time could rebalance in a second
+            // transaction that waits for the shard locks this transaction already holds
+            int seats = seatInventoryService.claimSeats(workshop.getCode(), indexes.size());
+            claimed.addAll(indexes.subList(0, seats));
+        } else {
+            int seats = Math.min(indexes.size(), Math.max(workshop.getCapacity() - workshop.getRegisteredCount(), 0));
+            if (seats > 0 && workshopRepository.claimSeats(workshop.getCode(), seats) == 1) {
+                claimed.addAll(indexes.subList(0, seats));
+            }
+        }
+        claimed.forEach(i -> statuses[i] = RegistrationStatus.REGISTERED);
+        return claimed;
+    }
+
+    private static String registrationKey(String workshopCode, String userName) {
+        return workshopCode + '\u0000' + userName;
+    }
+
+    /**
+     * Claims one seat of the workshop, the capacity check and the increment happen in the same statement.
+     * Workshops with a sharded inventory claim the seat from one of their shards instead.
+     *
+     * @param workshopCode the code of the workshop
+     * @throws InvalidWorkshopDataException if the workshop does not exist or is full
+     */
+    private void claimSeat(String workshopCode) {
+        if (workshopRepository.claimSeat(workshopCode) == 1) {
+            return;
+        }
+        int inventoryShards = workshopRepository.findInventoryShardsByCode(workshopCode)
+                .orElseThrow(() -> new InvalidWorkshopDataException("Workshop not found with given code: " + workshopCode));
+        if (inventoryShards <= 1 || !seatInventoryService.claimSeat(workshopCode)) {
+            throw new InvalidWorkshopDataException("Workshop is full , user cannot register");
+        }
     }
 
     /**
-     * Checks if the user is already registered for the workshop.
+     * Releases the seat held by a cancelled registration.
      *
      * @param workshopCode the code of the workshop
-     * @param userName     the name of the user
-     * @return true if the user is already registered, false otherwise
      */
-    private boolean checkIfUserAlreadyRegistered(@NotBlank(message = "Code cannot be empty") @Size(min = 5, max = 15, message = "Code of workshop must be of size 5-15") String workshopCode, String userName) {
-        return workshopRepository.existsByCodeAndUserName(workshopCode, userName);
+    private void releaseSeat(String workshopCode) {
+        if (workshopRepository.releaseSeat(workshopCode) == 0) {
+            workshopRepository.findInventoryShardsByCode(workshopCode)
+                    .filter(inventoryShards -> inventoryShards > 1)
+                    .ifPresent(inventoryShards -> seatInventoryService.releaseSeat(workshopCode, inventoryShards));
+        }
+    }
+
+    /**
+     * Inserts a registration right away, so a violation of the unique constraint on workshop code and
+     * user name surfaces here instead of at commit.
+     *
+     * @param registration the registration to insert
+     * @return the saved registration
+     * @throws UserAlreadyRegisteredException if the user is already registered for the workshop
+     */
+    private Registrations insertRegistration(Registrations registration) {
+        try {
+            return registrationRepository.saveAndFlush(registration);
+        } catch (DataIntegrityViolationException ex) {
+            if (ex.getCause() instanceof ConstraintViolationException violation
+                    && violation.getKind() == ConstraintViolationException.ConstraintKind.UNIQUE) {
+                throw new UserAlreadyRegisteredException("User already registered");
+            }
+            throw ex;
+        }
     }
 
     /**
@@ -110,9 +358,11 @@ public class RegistrationService {
     @Transactional
     public void deleteRegistration(Integer id) {
         log.debug("Deleting registration with id {}", id);
-        registrationRepository.findById(id)
+        Registrations registration = registrationRepository.findById(id)
                 .orElseThrow(() -> new RegistrationDoesnotExistException("Registration not available with given id: " + id));
-        registrationRepository.deleteById(id);
+        registrationRepository.delete(registration);
+        releaseSeat(registration.getWorkshopCode());
+        workshopVersionCache.evict(registration.getWorkshopCode());
     }
 
     /**
@@ -130,12 +380,6 @@ public class RegistrationService {
             throw new InvalidUserException("User not found");
         }
         log.debug("Getting all registration details specific to user {}", userName);
-        List<Registrations> registrations = registrationRepository.findByUserName(userName);
-        if (CollectionUtils.isNotEmpty(registrations)) {
-            return registrations.stream()
-                    .map(registrationsMapper::RegistrationsToRegistrationsResponse)
-                    .toList();
-        }
-        return List.of();
+        return registrationRepository.findResponsesByUserName(userName);
     }
 }
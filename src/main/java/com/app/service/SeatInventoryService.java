@@ -0,0 +1,206 @@
+package com.app.service;
+
+import com.app.exception.InvalidWorkshopDataException;
+import com.app.model.entity.SeatInventoryShard;
+import com.app.model.projection.ShardSeats;
+import com.app.repository.SeatInventoryShardRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Service class for the sharded seat inventory of high-demand workshops. The capacity of such a
+ * workshop is split across several shard rows, so concurrent registrations lock different rows
+ * instead of queueing on the workshop row.
+ */
+@Service
+@Slf4j
+public class SeatInventoryService {
+
+    // Repository for accessing the inventory shards
+    private final SeatInventoryShardRepository shardRepository;
+    // Runs rebalancing in its own short transaction
+    private final TransactionTemplate rebalanceTransaction;
+    // Workshops currently being rebalanced by this instance
+    private final Set<String> rebalancing = ConcurrentHashMap.newKeySet();
+
+    public SeatInventoryService(SeatInventoryShardRepository shardRepository, PlatformTransactionManager transactionManager) {
+        this.shardRepository = shardRepository;
+        this.rebalanceTransaction = new TransactionTemplate(transactionManager);
+        this.rebalanceTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Creates the inventory shards of a workshop, splitting the capacity evenly.
+     *
+     * @param code     the code of the workshop
+     * @param capacity the capacity of the workshop
+     * @param shards   the number of shards
+     */
+    public void createShards(String code, int capacity, int shards) {
+        log.debug("Creating {} inventory shards for workshop code {}", shards, code);
+        List<SeatInventoryShard> inventory = IntStream.range(0, shards)
+                .mapToObj(shardNo -> {
+                    SeatInventoryShard shard = new SeatInventoryShard();
+                    shard.setWorkshopCode(code);
+                    shard.setShardNo(shardNo);
+                    shard.setSeatsLeft(share(capacity, shards, shardNo));
+                    return shard;
+                })
+                .toList();
+        shardRepository.saveAll(inventory);
+    }
+
+    /**
+     * Claims one seat from a randomly chosen non-empty shard. Must run inside the registration transaction,
+     * and that transaction must not hold shard locks yet, since a rebalance waits for all of them.
+     *
+     * @param code the code of the workshop
+     * @return true if a seat was claimed, false if all shards are empty
+     */
+    public boolean claimSeat(String code) {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            List<ShardSeats> shards = shardRepository.findShardSeats(code);
+            List<Integer> available = new ArrayList<>();
+            int seatsLeft = 0;
+            for (ShardSeats shard : shards) {
+                if (shard.getSeatsLeft() > 0) {
+                    available.add(shard.getShardNo());
+                    seatsLeft += shard.getSeatsLeft();
+                }
+            }
+            if (available.isEmpty()) {
+                return false;
+            }
+            if (available.size() < shards.size() && seatsLeft >= shards.size()) {
+                rebalance(code);
+            }
+            while (!available.isEmpty()) {
+                int shardNo = available.remove(ThreadLocalRandom.current().nextInt(available.size()));
+                if (shardRepository.claimSeat(code, shardNo) == 1) {
+                    return true;
+                }
+            }
+            // Every shard we saw drained meanwhile, seats may have been moved by a rebalance
+        }
+        return false;
+    }
+
+    /**
+     * Claims several seats in one pass. All shards are locked once in shard order and the seats are taken
+     * from the fullest shards first, so the caller never rebalances while it already holds shard locks.
+     * Must run inside the registration transaction.
+     *
+     * @param code  the code of the workshop
+     * @param seats the number of seats wanted
+     * @return the number of seats claimed, less than wanted if the workshop filled up
+     */
+    public int claimSeats(String code, int seats) {
+        List<SeatInventoryShard> shards = shardRepository.lockShards(code);
+        int claimed = 0;
+        while (claimed < seats) {
+            SeatInventoryShard fullest = shards.stream()
+                    .max(Comparator.comparingInt(SeatInventoryShard::getSeatsLeft))
+                    .filter(shard -> shard.getSeatsLeft() > 0)
+                    .orElse(null);
+            if (fullest == null) {
+                break;
+            }
+            fullest.setSeatsLeft(fullest.getSeatsLeft() - 1);
+            claimed++;
+        }
+        return claimed;
+    }
+
+    /**
+     * Returns one seat to a randomly chosen shard. Must run inside the cancellation transaction.
+     *
+     * @param code   the code of the workshop
+     * @param shards the number of shards of the workshop
+     */
+    public void releaseSeat(String code, int shards) {
+        shardRepository.releaseSeat(code, ThreadLocalRandom.current().nextInt(shards));
+    }
+
+    /**
+     * Returns the remaining seats of the workshop, the sum of all its shards.
+     *
+     * @param code the code of the workshop
+     * @return the number of remaining seats
+     */
+    public int getSeatsLeft(String code) {
+        return (int) shardRepository.sumSeatsLeft(code);
+    }
+
+    /**
+     * Adds seats to, or removes seats from, the inventory and spreads the result evenly over the shards.
+     *
+     * @param code  the code of the workshop
+     * @param delta the change of capacity
+     * @throws InvalidWorkshopDataException if more seats would be removed than are left
+     */
+    public void resize(String code, int delta) {
+        redistribute(code, delta);
+    }
+
+    /**
+     * Deletes the inventory shards of a workshop.
+     *
+     * @param code the code of the workshop
+     */
+    public void deleteShards(String code) {
+        shardRepository.deleteByWorkshopCode(code);
+    }
+
+    /**
+     * Spreads the remaining seats evenly over all shards once some of them have drained. Runs in its own
+     * transaction before the caller claims a seat, and is skipped if this instance is already rebalancing.
+     *
+     * @param code the code of the workshop
+     */
+    private void rebalance(String code) {
+        if (!rebalancing.add(code)) {
+            return;
+        }
+        try {
+            log.debug("Rebalancing inventory shards for workshop code {}", code);
+            rebalanceTransaction.executeWithoutResult(status -> redistribute(code, 0));
+        } finally {
+            rebalancing.remove(code);
+        }
+    }
+
+    /**
+     * Locks all shards of the workshop and spreads the remaining seats plus the given delta evenly.
+     *
+     * @param code  the code of the workshop
+     * @param delta the number of seats to add or remove
+     */
+    private void redistribute(String code, int delta) {
+        List<SeatInventoryShard> shards = shardRepository.lockShards(code);
+        int total = shards.stream().mapToInt(SeatInventoryShard::getSeatsLeft).sum() + delta;
+        if (total < 0) {
+            throw new InvalidWorkshopDataException("Capacity cannot be less than the number of registrations");
+        }
+        for (int i = 0; i < shards.size(); i++) {
+            shards.get(i).setSeatsLeft(share(total, shards.size(), i));
+        }
+    }
+
+    /**
+     * Returns the share of the seats for a shard, the remainder goes to the lowest shard numbers.
+     */
+    private static int share(int seats, int shards, int shardNo) {
+        return seats / shards + (shardNo < seats % shards ? 1 : 0);
+    }
+}
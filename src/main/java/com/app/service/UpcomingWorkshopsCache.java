@@ -0,0 +1,226 @@
+package com.app.service;
+
+import com.app.model.entity.Workshop;
+import com.app.model.request.WorkshopCursor;
+import com.app.model.response.CatalogSnapshot;
+import com.app.model.response.WorkshopPage;
+import com.app.model.response.WorkshopResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bounded in-memory cache of the pages of upcoming workshops. Pages are kept as pre-serialized JSON
+ * plus a gzip variant, so cache hits skip serialization entirely. Entries expire after the configured
+ * time to live, or as soon as the first workshop of the page ends, whichever comes first. Writes to a
+ * workshop only invalidate the cached pages whose keyset range contains the workshop.
+ */
+@Component
+@Slf4j
+public class UpcomingWorkshopsCache {
+
+    // Orders workshops the same way the upcoming query does
+    private static final Comparator<WorkshopCursor> POSITION_ORDER = Comparator
+            .comparing((WorkshopCursor position) -> position.startTime().toInstant())
+            .thenComparing(WorkshopCursor::workshopId);
+
+    // Pages smaller than this are not compressed
+    private static final int GZIP_MIN_SIZE = 1024;
+
+    // The cached pages by cursor and page size
+    private final Cache<PageKey, CachedPage> cache;
+    // Whether the cache is used at all
+    private final boolean enabled;
+    // Serializes the pages the same way as the web layer
+    private final ObjectMapper objectMapper;
+
+    public UpcomingWorkshopsCache(@Value("${workshop.catalog-cache.enabled:true}") boolean enabled,
+                                  @Value("${workshop.catalog-cache.ttl:PT30S}") Duration ttl,
+                                  @Value("${workshop.catalog-cache.max-entries:1000}") long maxEntries,
+                                  MeterRegistry meterRegistry,
+                                  ObjectMapper objectMapper) {
+        this.enabled = enabled;
+        this.objectMapper = objectMapper;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new PageExpiry(ttl))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "upcomingWorkshops");
+    }
+
+    /**
+     * Returns the snapshot of the cached page, loading and serializing it on a miss.
+     *
+     * @param cursor the cursor of the page, null for the first page
+     * @param limit  the page size
+     * @param loader loads the page from the database
+     * @return the snapshot of the page of upcoming workshops
+     */
+    public CatalogSnapshot get(String cursor, int limit, Supplier<WorkshopPage> loader) {
+        if (!enabled) {
+            return snapshot(loader.get());
+        }
+        PageKey key = new PageKey(cursor, limit);
+        return cache.get(key, pageKey -> {
+            WorkshopPage page = loader.get();
+            return new CachedPage(pageKey, page, snapshot(page));
+        }).snapshot();
+    }
+
+    /**
+     * Serializes a page into JSON, and gzip if it is large enough.
+     *
+     * @param page the page to serialize
+     * @return the snapshot of the page
+     */
+    private CatalogSnapshot snapshot(WorkshopPage page) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(page.getWorkshops());
+            return CatalogSnapshot.builder()
+                    .json(json)
+                    .gzip(json.length >= GZIP_MIN_SIZE ? gzip(json) : null)
+                    .nextCursor(page.getNextCursor())
+                    .etag(etag(json))
+                    .build();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not serialize upcoming workshops", ex);
+        }
+    }
+
+    /**
+     * Derives a strong ETag from the serialized page, so identical pages get the same ETag on every instance.
+     */
+    private static String etag(byte[] json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    private static byte[] gzip(byte[] json) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(json);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Invalidates, once the current transaction commits, the pages a workshop was or is now part of.
+     *
+     * @param before the position of the workshop before the change, null for a new workshop
+     * @param after  the workshop after the change, null for a deleted workshop
+     */
+    public void invalidate(WorkshopCursor before, Workshop after) {
+        WorkshopCursor afterPosition = after == null ? null : new WorkshopCursor(after.getStartTime(), after.getWorkshopId());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(before, afterPosition);
+                }
+            });
+        } else {
+            evict(before, afterPosition);
+        }
+    }
+
+    /**
+     * Invalidates every cached page, after changes made outside of the single workshop writes.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Removes every cached page whose keyset range contains one of the given positions.
+     */
+    private void evict(WorkshopCursor before, WorkshopCursor after) {
+        cache.asMap().values().removeIf(cached -> cached.covers(before) || cached.covers(after));
+        log.debug("Invalidated upcoming workshop pages for positions {} {}", before, after);
+    }
+
+    /**
+     * Key of a cached page.
+     */
+    private record PageKey(String cursor, int limit) {
+    }
+
+    /**
+     * A cached page snapshot together with the keyset range it covers.
+     *
+     * @param snapshot the serialized page
+     * @param from     the exclusive start of the range, null for the first page
+     * @param to       the inclusive end of the range, null if the page is the last one
+     * @param endsAt   the earliest end time of the workshops in the page
+     */
+    private record CachedPage(CatalogSnapshot snapshot, WorkshopCursor from, WorkshopCursor to, ZonedDateTime endsAt) {
+
+        CachedPage(PageKey key, WorkshopPage page, CatalogSnapshot snapshot) {
+            this(snapshot,
+                    key.cursor() == null ? null : WorkshopCursor.decode(key.cursor()),
+                    page.getNextCursor() == null ? null : WorkshopCursor.decode(page.getNextCursor()),
+                    page.getWorkshops().stream()
+                            .map(WorkshopResponse::getEndTime)
+                            .filter(Objects::nonNull)
+                            .min(Comparator.naturalOrder())
+                            .orElse(null));
+        }
+
+        boolean covers(WorkshopCursor position) {
+            return position != null
+                    && (from == null || POSITION_ORDER.compare(position, from) > 0)
+                    && (to == null || POSITION_ORDER.compare(position, to) <= 0);
+        }
+    }
+
+    /**
+     * Expires a page after the time to live, or when its first workshop ends if that is sooner.
+     */
+    private record PageExpiry(Duration ttl) implements Expiry<PageKey, CachedPage> {
+
+        @Override
+        public long expireAfterCreate(PageKey key, CachedPage value, long currentTime) {
+            if (value.endsAt() == null) {
+                return ttl.toNanos();
+            }
+            Duration untilEnd = Duration.between(ZonedDateTime.now(), value.endsAt());
+            return Math.max(0, Math.min(ttl.toNanos(), untilEnd.toNanos()));
+        }
+
+        @Override
+        public long expireAfterUpdate(PageKey key, CachedPage value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(PageKey key, CachedPage value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.app.service;
+
+import com.app.model.response.WorkshopResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent reads of the same workshop, so a burst of identical reads runs one database load
+ * and one mapping. Callers arriving while a load is in progress wait for it and share its result, and
+ * so do callers arriving within the coalescing window after it completed. A result is never served
+ * for longer than the window, failed loads are shared only with the callers already waiting.
+ */
+@Component
+public class WorkshopReadCoalescer {
+
+    // The loads in progress or completed within the window, by workshop code
+    private final ConcurrentMap<String, CompletableFuture<WorkshopResponse>> flights = new ConcurrentHashMap<>();
+    // How long a completed load is shared with new callers
+    private final Duration window;
+    // The loads that reached the database
+    private final Counter loads;
+    // The callers served with the result of another caller's load
+    private final Counter merged;
+
+    public WorkshopReadCoalescer(@Value("${workshop.read-coalescing.window:PT0.1S}") Duration window,
+                                 MeterRegistry meterRegistry) {
+        this.window = window;
+        this.loads = Counter.builder("workshop.read-coalescing.loads")
+                .description("Workshop reads that ran a database load")
+                .register(meterRegistry);
+        this.merged = Counter.builder("workshop.read-coalescing.merged")
+                .description("Workshop reads served with the result of a concurrent read")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the workshop with the given code, loading it only if no load of it is in progress or
+     * completed within the window.
+     *
+     * @param code   the code of the workshop
+     * @param loader loads and maps the workshop
+     * @return the workshop
+     */
+    public WorkshopResponse get(String code, Supplier<WorkshopResponse> loader) {
+        CompletableFuture<WorkshopResponse> flight = new CompletableFuture<>();
+        CompletableFuture<WorkshopResponse> existing = flights.putIfAbsent(code, flight);
+        if (existing != null) {
+            merged.increment();
+            return await(existing);
+        }
+        loads.increment();
+        try {
+            WorkshopResponse workshop = loader.get();
+            flight.complete(workshop);
+            if (window.isZero()) {
+                flights.remove(code, flight);
+            } else {
+                CompletableFuture.delayedExecutor(window.toNanos(), TimeUnit.NANOSECONDS)
+                        .execute(() -> flights.remove(code, flight));
+            }
+            return workshop;
+        } catch (RuntimeException | Error ex) {
+            flights.remove(code, flight);
+            flight.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Stops sharing the current load of a workshop, after a write on this instance changed it. Callers
+     * already waiting still get its result, new callers start a new load. Inside a transaction this happens
+     * after the commit, a load starting before it would still read the previous workshop.
+     *
+     * @param code the code of the workshop
+     */
+    public void evict(String code) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    flights.remove(code);
+                }
+            });
+        } else {
+            flights.remove(code);
+        }
+    }
+
+    /**
+     * Waits for the load of another caller, rethrowing its failure as it was thrown.
+     */
+    private static WorkshopResponse await(CompletableFuture<WorkshopResponse> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+}
@@ -6,15 +6,16 @@ import com.app.model.request.RegistrationsRequest;
 import com.app.model.entity.Workshop;
 import com.app.model.mapper.RegistrationsMapper;
 import com.app.model.mapper.WorkshopMapper;
+import com.app.model.response.RegistrationPage;
 import com.app.model.response.RegistrationsResponse;
 import com.app.repository.RegistrationsRepository;
 import com.app.repository.WorkshopRepository;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.Optional;
 
 /**
  * Service class for managing workshop registrations.
@@ -31,33 +32,59 @@ public class WorkshopRegistrationService {
     private final RegistrationsRepository registrationsRepository;
     // Mapper for converting between Registrations and RegistrationsRequest
     private final RegistrationsMapper registrationsMapper;
+    // Service for the sharded seat inventory
+    private final SeatInventoryService seatInventoryService;
 
    /**
-     * Returns all registrations by workshop code.
+     * Returns one page of the registrations of a workshop, ordered by registration id.
      *
-     * @param code the code of the workshop
-     * @return the registrations with the given code
+     * @param code   the code of the workshop
+     * @param cursor the id of the last registration of the previous page, null for the first page
+     * @param limit  the page size, capped at the maximum page size
+     * @return the page of registrations and the cursor of the next page
      */
-    public List<RegistrationsResponse> getRegistrationsByCode(String code) {
-        log.debug("Getting registration with workshop code  {} ", code);
-        Optional<Workshop> workshop = workshopRepository.findByCode(code);
-        if (workshop.isEmpty()) {
+    public RegistrationPage getRegistrationsByCode(String code, Integer cursor, int limit) {
+        log.debug("Getting registration with workshop code  {} after {}", code, cursor);
+        int pageSize = Math.clamp(limit, 1, WorkshopService.MAX_PAGE_SIZE);
+        // Fetch one extra row to know whether there is a next page
+        List<RegistrationsResponse> registrations = registrationsRepository.findResponsesByWorkshopCode(
+                code, cursor == null ? 0 : cursor, PageRequest.ofSize(pageSize + 1));
+        if (registrations.isEmpty() && cursor == null && !workshopRepository.existsWorkshopByCode(code)) {
             throw new InvalidWorkshopDataException("Workshop not found with given code: " + code);
         }
-        return workshop.get().getRegistrations().stream()
-                .map(registrationsMapper::RegistrationsToRegistrationsResponse)
-                .toList();
+        Integer nextCursor = null;
+        if (registrations.size() > pageSize) {
+            registrations = registrations.subList(0, pageSize);
+            nextCursor = registrations.getLast().getRegistrationId();
+        }
+        return RegistrationPage.builder()
+                .registrations(registrations)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Checks if a workshop has any registration.
+     *
+     * @param code the code of the workshop
+     * @return true if at least one user is registered for the workshop
+     */
+    public boolean hasRegistrations(String code) {
+        return registrationsRepository.existsByWorkshopCode(code);
     }
 
     /**
-     * Checks if a user is already registered for a workshop.
+     * Returns the number of seats already taken in a workshop, read from the maintained counter
+     * or added up from the inventory shards.
      *
      * @param code the code of the workshop
      * @return int get the count of registrations for the given workshop code
      */
     public int getWorkshopCapacity(String code) {
         log.debug("Getting registration count with workshop code  {} ", code);
-        return workshopRepository.countByCode(code);
+        Workshop workshop = workshopRepository.findByCode(code)
+                .orElseThrow(() -> new InvalidWorkshopDataException("Workshop not found with given code: " + code));
+        return workshop.getCapacity() - getSeatsLeft(workshop);
     }
 
     /**
@@ -70,6 +97,19 @@ public class WorkshopRegistrationService {
         log.debug("checking if capacity is full for workshop code {} ", code);
         Workshop workshop = workshopRepository.findByCode(code)
                 .orElseThrow(() -> new InvalidWorkshopDataException("Workshop not found with given code: " + code));
-        return workshopRepository.countByCode(code) >= workshop.getCapacity();
+        return getSeatsLeft(workshop) <= 0;
+    }
+
+    /**
+     * Returns the remaining seats of a workshop.
+     *
+     * @param workshop the workshop
+     * @return the number of seats left
+     */
+    public int getSeatsLeft(Workshop workshop) {
+        if (workshop.hasShardedInventory()) {
+            return seatInventoryService.getSeatsLeft(workshop.getCode());
+        }
+        return workshop.getCapacity() - workshop.getRegisteredCount();
     }
 }
@@ -6,18 +6,31 @@ import com.app.exception.WorkshopAlreadyExistException;
 import com.app.exception.WorkshopNotFoundException;
 import com.app.model.entity.Workshop;
 import com.app.model.mapper.WorkshopMapper;
+import com.app.model.request.WorkshopCursor;
 import com.app.model.request.WorkshopRequest;
 import com.app.model.request.WorkshopUpdateRequest;
+import com.app.model.response.CatalogSnapshot;
+import com.app.model.response.WorkshopBatchResponse;
+import com.app.model.response.WorkshopPage;
 import com.app.model.response.WorkshopResponse;
 import com.app.repository.WorkshopRepository;
 import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 
@@ -35,32 +48,85 @@ public class WorkshopService {
     private final WorkshopMapper workshopMapper;
 
     private final WorkshopRegistrationService workshopRegistrationService;
+    // Service for the sharded seat inventory of high-demand workshops
+    private final SeatInventoryService seatInventoryService;
+    // Cache of the pages of upcoming workshops
+    private final UpcomingWorkshopsCache upcomingWorkshopsCache;
+    // Cache of the current ETag of each workshop
+    private final WorkshopVersionCache workshopVersionCache;
+    // Shares one load between concurrent reads of the same workshop
+    private final WorkshopReadCoalescer workshopReadCoalescer;
+
+    // Default and maximum number of upcoming workshops per page
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+    // Maximum number of codes in one batch lookup
+    public static final int MAX_BATCH_SIZE = 100;
 
     /**
-     * Returns all workshops.
+     * Returns the pre-serialized snapshot of one page of upcoming workshops, served from the in-memory
+     * cache. Only a cache miss reads and serializes the page.
      *
-     * @return a list of all upcoming workshops
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @param limit  the maximum number of workshops to return
+     * @return the snapshot of a page of upcoming workshops
      */
-    public List<WorkshopResponse> getUpcomingWorkshops() {
-        ZonedDateTime now = ZonedDateTime.now(); // Get the current date and time
-        return workshopRepository.findAll().stream()
-                .filter(workshop -> workshop.getEndTime().isAfter(now)) // Filter out past workshops
-                .map(workshopMapper::WorkshopToWorkshopWithoutRegistrationsResponse) // Map to WorkshopSummaryResponse
-                .toList();
+    public CatalogSnapshot getUpcomingWorkshopsSnapshot(String cursor, int limit) {
+        int pageSize = Math.clamp(limit, 1, MAX_PAGE_SIZE);
+        String pageCursor = StringUtils.trimToNull(cursor);
+        return upcomingWorkshopsCache.get(pageCursor, pageSize, () -> getUpcomingWorkshops(pageCursor, pageSize));
     }
 
     /**
-     * Returns all workshops.
+     * Returns one page of upcoming workshops, ordered by start time. Filtering and paging run in the database.
      *
-     * @return a list of all workshops
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @param limit  the maximum number of workshops to return
+     * @return a page of upcoming workshops
      */
+    public WorkshopPage getUpcomingWorkshops(String cursor, int limit) {
+        int pageSize = Math.clamp(limit, 1, MAX_PAGE_SIZE);
+        ZonedDateTime now = ZonedDateTime.now(); // Get the current date and time
+        // Fetch one extra row to know whether there is a next page
+        Pageable pageable = PageRequest.ofSize(pageSize + 1);
+        List<WorkshopResponse> workshops;
+        if (StringUtils.isBlank(cursor)) {
+            workshops = workshopRepository.findUpcoming(now, pageable);
+        } else {
+            WorkshopCursor after = WorkshopCursor.decode(cursor);
+            workshops = workshopRepository.findUpcomingAfter(now, after.startTime(), after.workshopId(), pageable);
+        }
+        String nextCursor = null;
+        if (workshops.size() > pageSize) {
+            workshops = workshops.subList(0, pageSize);
+            WorkshopResponse last = workshops.getLast();
+            nextCursor = new WorkshopCursor(last.getStartTime(), last.getWorkshopId()).encode();
+        }
+        return WorkshopPage.builder()
+                .workshops(workshops)
+                .nextCursor(nextCursor)
+                .build();
+    }
 
-    public List<WorkshopResponse> getAllWorkshops() {
-        log.debug("Getting all workshop details for admin ");
-        List<Workshop> workshops = workshopRepository.findAll();
-        return workshops.stream()
-                .map(workshopMapper::WorkshopToWorkshopResponse)
-                .collect(Collectors.toList());
+    /**
+     * Returns one page of workshops with their registrations. The page is loaded in a bounded number of
+     * queries, the ids of the page first and then the workshops with their registrations in one fetch join.
+     *
+     * @param page the page number, starting at 0
+     * @param size the page size
+     * @return a page of workshops
+     */
+    public Page<WorkshopResponse> getAllWorkshops(int page, int size) {
+        log.debug("Getting all workshop details for admin, page {} size {}", page, size);
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.clamp(size, 1, MAX_PAGE_SIZE));
+        List<Integer> ids = workshopRepository.findWorkshopIds(pageable);
+        if (ids.isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, workshopRepository.count());
+        }
+        List<WorkshopResponse> workshops = workshopRepository.findWithRegistrationsByIdIn(ids).stream()
+                .map(workshop -> withShardedSeats(workshop, workshopMapper.WorkshopToWorkshopResponse(workshop)))
+                .toList();
+        return new PageImpl<>(workshops, pageable, workshopRepository.count());
     }
 
     /**
@@ -71,6 +137,7 @@ public class WorkshopService {
      * @throws WorkshopAlreadyExistException if the workshop with the same code already exists
      * @throws InvalidWorkshopDataException  if the start time is after the end time
      */
+    @Transactional
     public WorkshopRequest createWorkshop(WorkshopRequest workshopRequest) {
         log.debug("Check if workshop already exists {}", workshopRequest.getCode());
         checkWorkshopExist(workshopRequest.getCode());
@@ -106,40 +173,107 @@ public class WorkshopService {
     private WorkshopRequest saveWorkshop(WorkshopRequest workshopRequest) {
         final Workshop workshopToSave = workshopMapper.WorkshopRequestToWorkshop(workshopRequest);
         Workshop savedWorkshop = workshopRepository.save(workshopToSave);
+        if (savedWorkshop.hasShardedInventory()) {
+            seatInventoryService.createShards(savedWorkshop.getCode(), savedWorkshop.getCapacity(), savedWorkshop.getInventoryShards());
+        }
+        upcomingWorkshopsCache.invalidate(null, savedWorkshop);
         return workshopMapper.WorkshopToWorkshopRequest(savedWorkshop);
     }
 
     /**
-     * Returns a workshop by its code.
+     * Returns a workshop by its code, without its registrations. The workshop is read from the second-level
+     * cache, and concurrent reads of the same workshop share one load and mapping.
      *
      * @param code the code of the workshop to retrieve
      * @return the workshop with the given code
      */
     public WorkshopResponse getWorkshopByCode(String code) {
+        return workshopReadCoalescer.get(code, () -> loadWorkshopByCode(code));
+    }
+
+    private WorkshopResponse loadWorkshopByCode(String code) {
         Workshop workshop = workshopRepository.findByCode(code)
                 .orElseThrow(() -> new WorkshopNotFoundException("Workshop not found with given code: " + code));
-        return workshopMapper.WorkshopToWorkshopResponse(workshop);
+        WorkshopResponse workshopResponse = withShardedSeats(workshop, workshopMapper.WorkshopToWorkshopDetailsResponse(workshop));
+        if (null != workshopResponse) {
+            workshopVersionCache.put(code, workshopResponse.getEtag());
+        }
+        return workshopResponse;
     }
 
+    /**
+     * Returns the workshops with the given codes in a single query. Codes that do not match a workshop are
+     * reported as missing instead of failing the whole lookup.
+     *
+     * @param codes the codes of the workshops, duplicates and blanks are ignored
+     * @return the workshops without their registrations, in the order of the codes, and the missing codes
+     * @throws InvalidWorkshopDataException if more than the maximum batch size of codes is requested
+     */
+    public WorkshopBatchResponse getWorkshopsByCodes(List<String> codes) {
+        Set<String> uniqueCodes = codes.stream()
+                .filter(StringUtils::isNotBlank)
+                .map(String::trim)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (uniqueCodes.size() > MAX_BATCH_SIZE) {
+            throw new InvalidWorkshopDataException("At most " + MAX_BATCH_SIZE + " workshop codes can be requested at once");
+        }
+        log.debug("Getting {} workshops by code", uniqueCodes.size());
+        Map<String, WorkshopResponse> found = uniqueCodes.isEmpty() ? Map.of()
+                : workshopRepository.findSummariesByCodeIn(uniqueCodes).stream()
+                .collect(Collectors.toMap(WorkshopResponse::getCode, Function.identity()));
+        List<WorkshopResponse> workshops = new ArrayList<>(found.size());
+        List<String> missingCodes = new ArrayList<>();
+        for (String code : uniqueCodes) {
+            WorkshopResponse workshop = found.get(code);
+            if (workshop != null) {
+                workshops.add(workshop);
+            } else {
+                missingCodes.add(code);
+            }
+        }
+        return WorkshopBatchResponse.builder()
+                .workshops(workshops)
+                .missingCodes(missingCodes)
+                .build();
+    }
 
     /**
-     * Deletes a workshop by its code.
+     * Returns the ETag of a workshop known to this instance, without reading the database.
+     *
+     * @param code the code of the workshop
+     * @return the cached ETag, or null if it is not known
+     */
+    public String getCachedETag(String code) {
+        return workshopVersionCache.get(code);
+    }
+
+
+    /**
+     * Deletes a workshop by its code. The workshop row is locked, so no registration can claim a seat
+     * between the check for registrations and the delete.
      *
      * @param workshopCode the code of the workshop to delete
      */
     @Transactional
     public void deleteWorkshop(String workshopCode) {
-        Workshop workshop = workshopRepository.findByCode(workshopCode)
+        Workshop workshop = workshopRepository.lockByCode(workshopCode)
                 .orElseThrow(() -> new WorkshopNotFoundException("Workshop not found with given code: " + workshopCode));
-        if (!workshopRegistrationService.getRegistrationsByCode(workshopCode).isEmpty()) {
+        if (workshopRegistrationService.hasRegistrations(workshopCode)) {
             throw new InvalidWorkshopDataException("Cannot delete workshop with registrations");
         }
+        if (workshop.hasShardedInventory()) {
+            seatInventoryService.deleteShards(workshopCode);
+        }
         workshopRepository.delete(workshop);
+        upcomingWorkshopsCache.invalidate(positionOf(workshop), null);
+        workshopVersionCache.evict(workshopCode);
+        workshopReadCoalescer.evict(workshopCode);
         log.info("Workshop with code {} deleted successfully", workshopCode);
     }
 
     /**
-     * Updates a workshop by its code.
+     * Updates a workshop by its code. The current row is read and locked instead of the cached workshop,
+     * so a capacity change is checked against the latest seat counter.
      *
      * @param workshopCode          the code of the workshop to update
      * @param workshopUpdateRequest the new workshop data
@@ -147,9 +281,24 @@ public class WorkshopService {
      */
     @Transactional
     public WorkshopResponse updateWorkshop(String workshopCode, WorkshopUpdateRequest workshopUpdateRequest) {
-        Workshop workshop = workshopRepository.findByCode(workshopCode)
+        Workshop workshop = workshopRepository.lockByCode(workshopCode)
                 .orElseThrow(() -> new WorkshopNotFoundException("Workshop not found with given code: " + workshopCode));
-        return updateData(workshop, workshopUpdateRequest);
+        WorkshopCursor before = positionOf(workshop);
+        WorkshopResponse updated = updateData(workshop, workshopUpdateRequest);
+        upcomingWorkshopsCache.invalidate(before, workshop);
+        workshopVersionCache.evict(workshopCode);
+        workshopReadCoalescer.evict(workshopCode);
+        return updated;
+    }
+
+    /**
+     * Returns the position of the workshop in the upcoming workshops order.
+     *
+     * @param workshop the workshop
+     * @return the keyset position of the workshop
+     */
+    private static WorkshopCursor positionOf(Workshop workshop) {
+        return new WorkshopCursor(workshop.getStartTime(), workshop.getWorkshopId());
     }
 
     /**
@@ -168,8 +317,7 @@ public class WorkshopService {
             workshop.setDescription(workshopUpdateRequest.getDescription());
         }
         if (workshopUpdateRequest.getCapacity() != null && workshopUpdateRequest.getCapacity() >= 0) {
-            //TODO check existing registrations and add error while changing capacity
-            workshop.setCapacity(workshopUpdateRequest.getCapacity());
+            updateCapacity(workshop, workshopUpdateRequest.getCapacity());
         }
         if (workshopUpdateRequest.getStartTime() != null && workshopUpdateRequest.getEndTime() != null) {
             validateStartAndEndDate(workshopUpdateRequest);
@@ -179,7 +327,40 @@ public class WorkshopService {
             validateStartOrEndTime(workshop, workshopUpdateRequest);
         }
         Workshop updatedWorkshop = workshopRepository.save(workshop);
-        return workshopMapper.WorkshopToWorkshopWithoutRegistrationsResponse(updatedWorkshop);
+        return withShardedSeats(updatedWorkshop, workshopMapper.WorkshopToWorkshopWithoutRegistrationsResponse(updatedWorkshop));
+    }
+
+    /**
+     * Sets the seats of a sharded workshop from the sum of its inventory shards, since the counter on the
+     * workshop row is not maintained for it.
+     *
+     * @param workshop the workshop
+     * @param response the mapped workshop
+     * @return the response
+     */
+    private WorkshopResponse withShardedSeats(Workshop workshop, WorkshopResponse response) {
+        if (response != null && workshop.hasShardedInventory()) {
+            int seatsLeft = seatInventoryService.getSeatsLeft(workshop.getCode());
+            response.setSeatsLeft(seatsLeft);
+            response.setSeatsTaken(Math.max(workshop.getCapacity() - seatsLeft, 0));
+        }
+        return response;
+    }
+
+    /**
+     * Updates the capacity of the workshop, moving the difference into the inventory shards if it is sharded.
+     *
+     * @param workshop the workshop to update
+     * @param capacity the new capacity
+     * @throws InvalidWorkshopDataException if the capacity is less than the number of registrations
+     */
+    private void updateCapacity(Workshop workshop, int capacity) {
+        if (workshop.hasShardedInventory()) {
+            seatInventoryService.resize(workshop.getCode(), capacity - workshop.getCapacity());
+        } else if (capacity < workshop.getRegisteredCount()) {
+            throw new InvalidWorkshopDataException("Capacity cannot be less than the number of registrations");
+        }
+        workshop.setCapacity(capacity);
     }
 
     /**
@@ -0,0 +1,82 @@
+package com.app.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * Short-lived in-memory cache of the current ETag of each workshop, so conditional reads can be
+ * answered with 304 without touching the database. Writes on this instance evict the entry once
+ * they commit, writes on other instances are picked up when the entry expires.
+ */
+@Component
+public class WorkshopVersionCache {
+
+    // The current ETag by workshop code
+    private final Cache<String, String> etags;
+
+    public WorkshopVersionCache(@Value("${workshop.etag-cache.ttl:PT10S}") Duration ttl,
+                                @Value("${workshop.etag-cache.max-entries:10000}") long maxEntries,
+                                MeterRegistry meterRegistry) {
+        this.etags = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, etags, "workshopETags");
+    }
+
+    /**
+     * Returns the cached ETag of a workshop.
+     *
+     * @param code the code of the workshop
+     * @return the ETag, or null if it is not cached
+     */
+    public String get(String code) {
+        return etags.getIfPresent(code);
+    }
+
+    /**
+     * Remembers the ETag of a workshop that was just read.
+     *
+     * @param code the code of the workshop
+     * @param etag the ETag, ignored if null
+     */
+    public void put(String code, String etag) {
+        if (etag != null) {
+            etags.put(code, etag);
+        }
+    }
+
+    /**
+     * Evicts the ETag of a workshop once the current transaction commits.
+     *
+     * @param code the code of the workshop
+     */
+    public void evict(String code) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    etags.invalidate(code);
+                }
+            });
+        } else {
+            etags.invalidate(code);
+        }
+    }
+
+    /**
+     * Evicts the ETags of all workshops, after changes made outside of the single workshop writes.
+     */
+    public void evictAll() {
+        etags.invalidateAll();
+    }
+}
@@ -62,6 +62,7 @@ public class TestData {
                 .capacity(workshop.getCapacity())
                 .startTime(workshop.getStartTime())
                 .endTime(workshop.getEndTime())
+                .workshopId(workshop.getWorkshopId())
                 .build();
     }
 
@@ -0,0 +1,97 @@
+package com.app.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of the upcoming workshops and the registration endpoints of a running
+ * instance, with many concurrent clients. Run it once against an instance started normally and once
+ * against an instance started with the {@code virtual-threads} profile, both on the same database.
+ * <p>
+ * Run with {@code mvn test-compile} followed by
+ * {@code java -cp target/test-classes:target/classes:<test classpath> org.openjdk.jmh.Main EndpointThroughputBenchmark
+ * -p baseUrl=http://localhost:8080 -p userToken=<token of a user> -p workshopCodes=<codes of open workshops>}.
+ * Each registration of the same user for a workshop after the first is rejected as a duplicate, which
+ * still runs the locking insert against the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 20)
+@Threads(200)
+@Fork(1)
+public class EndpointThroughputBenchmark {
+
+    @Param("http://localhost:8080")
+    private String baseUrl;
+
+    @Param("")
+    private String userToken;
+
+    @Param("WS_001")
+    private String workshopCodes;
+
+    private HttpClient client;
+    private HttpRequest upcoming;
+    private String[] codes;
+
+    @Setup
+    public void setUp() {
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        upcoming = HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/workshops/upcoming?limit=50")).GET().build();
+        codes = workshopCodes.split(",");
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+    }
+
+    @Benchmark
+    public int upcomingWorkshops() throws IOException, InterruptedException {
+        return client.send(upcoming, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Benchmark
+    public int register() throws IOException, InterruptedException {
+        String code = codes[ThreadLocalRandom.current().nextInt(codes.length)];
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/registrations"))
+                .header("Authorization", "Bearer " + userToken)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"workshopCode\":\"" + code + "\",\"userPreferredContact\":\"EMAIL\"}"))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EndpointThroughputBenchmark.class.getSimpleName()).build()).run();
+    }
+}
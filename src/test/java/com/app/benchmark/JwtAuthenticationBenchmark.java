@@ -0,0 +1,121 @@
+package com.app.benchmark;
+
+import com.app.config.CachingJwtAuthenticationProvider;
+import com.app.config.JwtAuthConverter;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.JwtTimestampValidator;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
+import org.springframework.security.oauth2.server.resource.web.authentication.BearerTokenAuthenticationFilter;
+
+import java.io.IOException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the bearer token authentication filter with and without the authentication cache, for a
+ * client that sends the same RS256 token with every request.
+ * <p>
+ * Run with {@code mvn test-compile} followed by
+ * {@code java -cp target/test-classes:target/classes:<test classpath> com.app.benchmark.JwtAuthenticationBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthenticationBenchmark {
+
+    @Param({"false", "true"})
+    private boolean cached;
+
+    private BearerTokenAuthenticationFilter filter;
+    private MockHttpServletRequest request;
+    private FilterChain chain;
+
+    @Setup
+    public void setUp() throws NoSuchAlgorithmException, JOSEException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+
+        NimbusJwtDecoder decoder = NimbusJwtDecoder.withPublicKey((RSAPublicKey) keyPair.getPublic()).build();
+        decoder.setJwtValidator(new JwtTimestampValidator());
+        JwtAuthenticationProvider jwtProvider = new JwtAuthenticationProvider(decoder);
+        jwtProvider.setJwtAuthenticationConverter(new JwtAuthConverter());
+        AuthenticationProvider provider = cached
+                ? new CachingJwtAuthenticationProvider(jwtProvider, Duration.ofMinutes(5), 10_000, new SimpleMeterRegistry())
+                : jwtProvider;
+        filter = new BearerTokenAuthenticationFilter(new ProviderManager(provider));
+
+        request = new MockHttpServletRequest("GET", "/api/v1/registrations");
+        request.addHeader("Authorization", "Bearer " + token(keyPair));
+        chain = (req, res) -> {
+            if (SecurityContextHolder.getContext().getAuthentication() == null) {
+                throw new IllegalStateException("Request was not authenticated");
+            }
+        };
+    }
+
+    @Benchmark
+    public void authenticate() throws ServletException, IOException {
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        SecurityContextHolder.clearContext();
+    }
+
+    /**
+     * Signs a token like the ones issued by Keycloak, with realm roles and an expiry an hour away.
+     */
+    private static String token(KeyPair keyPair) throws JOSEException {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject("user")
+                .claim("scope", "openid profile email")
+                .claim("realm_access", Map.of("roles", List.of("user", "offline_access", "uma_authorization")))
+                .issueTime(new Date())
+                .expirationTime(Date.from(Instant.now().plus(Duration.ofHours(1))))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.RS256), claims);
+        jwt.sign(new RSASSASigner(keyPair.getPrivate()));
+        return jwt.serialize();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtAuthenticationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,83 @@
+package com.app.config;
+
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Test(singleThreaded = true)
+class AdaptiveConcurrencyLimitTest {
+
+    @Test
+    public void tryAcquire_rejectsBeyondTheLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10);
+
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+
+        limit.release(-1);
+        assertTrue(limit.tryAcquire());
+        assertEquals(3, limit.getAdmitted());
+        assertEquals(1, limit.getRejected());
+    }
+
+    @Test
+    public void release_growsTheLimitWhileLatencyIsStable() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 4, 100);
+
+        runAtLimit(limit, 50, Duration.ofMillis(20));
+
+        assertTrue(limit.getLimit() > 20, "limit was " + limit.getLimit());
+    }
+
+    @Test
+    public void release_shrinksTheLimitWhenRequestsQueue() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 4, 100);
+        runAtLimit(limit, 50, Duration.ofMillis(20));
+        int grown = limit.getLimit();
+
+        runAtLimit(limit, 10, Duration.ofMillis(200));
+
+        assertTrue(limit.getLimit() < grown / 2, "limit was " + limit.getLimit() + " after " + grown);
+    }
+
+    @Test
+    public void release_staysWithinBounds() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(12, 10, 30);
+
+        runAtLimit(limit, 200, Duration.ofMillis(20));
+        assertEquals(30, limit.getLimit());
+
+        runAtLimit(limit, 30, Duration.ofSeconds(5));
+        assertEquals(10, limit.getLimit());
+    }
+
+    @Test
+    public void release_doesNotGrowAnUnusedLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 4, 100);
+
+        for (int i = 0; i < 500; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(Duration.ofMillis(20).toNanos());
+        }
+
+        assertEquals(10, limit.getLimit());
+    }
+
+    /**
+     * Keeps the limit fully used for the given number of windows, each request taking the given latency.
+     */
+    private static void runAtLimit(AdaptiveConcurrencyLimit limit, int windows, Duration rtt) {
+        for (int window = 0; window < windows; window++) {
+            int admitted = 0;
+            while (limit.tryAcquire()) {
+                admitted++;
+            }
+            for (int i = 0; i < admitted; i++) {
+                limit.release(rtt.toNanos());
+            }
+        }
+    }
+}
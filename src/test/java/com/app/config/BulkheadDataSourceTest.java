@@ -0,0 +1,75 @@
+package com.app.config;
+
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@Test(singleThreaded = true)
+class BulkheadDataSourceTest {
+
+    @Mock
+    private DataSource pool;
+
+    private BulkheadDataSource bulkhead;
+
+    @BeforeMethod
+    public void setUp() throws SQLException {
+        MockitoAnnotations.openMocks(this);
+        when(pool.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        bulkhead = new BulkheadDataSource(pool, 2, Duration.ofMillis(50));
+    }
+
+    @Test
+    public void getConnection_failsBeyondTheLimit() throws SQLException {
+        bulkhead.getConnection();
+        bulkhead.getConnection();
+
+        assertThrows(SQLTransientConnectionException.class, bulkhead::getConnection);
+        verify(pool, times(2)).getConnection();
+    }
+
+    @Test
+    public void close_releasesThePermitOnce() throws SQLException {
+        Connection connection = bulkhead.getConnection();
+        bulkhead.getConnection();
+
+        connection.close();
+        connection.close();
+
+        assertEquals(1, bulkhead.getAvailablePermits());
+        bulkhead.getConnection();
+        assertThrows(SQLTransientConnectionException.class, bulkhead::getConnection);
+    }
+
+    @Test
+    public void getConnection_releasesThePermitWhenThePoolFails() throws SQLException {
+        when(pool.getConnection()).thenThrow(new SQLTransientConnectionException("Connection is not available"));
+
+        assertThrows(SQLTransientConnectionException.class, bulkhead::getConnection);
+
+        assertEquals(2, bulkhead.getAvailablePermits());
+    }
+
+    @Test
+    public void close_closesThePooledConnection() throws SQLException {
+        Connection pooled = mock(Connection.class);
+        when(pool.getConnection()).thenReturn(pooled);
+
+        bulkhead.getConnection().close();
+
+        verify(pooled).close();
+    }
+}
@@ -0,0 +1,100 @@
+package com.app.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.InvalidBearerTokenException;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@Test(singleThreaded = true)
+class CachingJwtAuthenticationProviderTest {
+
+    @Mock
+    private AuthenticationProvider delegate;
+
+    private CachingJwtAuthenticationProvider provider;
+
+    @BeforeMethod
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        provider = new CachingJwtAuthenticationProvider(delegate, Duration.ofMinutes(5), 100, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void authenticate_verifiesTokenOnce() {
+        when(delegate.authenticate(any())).thenReturn(authentication("token-1", Instant.now().plusSeconds(300)));
+
+        Authentication first = provider.authenticate(bearer("token-1", "first"));
+        Authentication second = provider.authenticate(bearer("token-1", "second"));
+
+        verify(delegate, times(1)).authenticate(any());
+        assertEquals("user", second.getName());
+        assertTrue(second.isAuthenticated());
+        assertEquals(first.getAuthorities(), second.getAuthorities());
+        assertEquals("second", second.getDetails());
+    }
+
+    @Test
+    public void authenticate_verifiesEachTokenSeparately() {
+        when(delegate.authenticate(any()))
+                .thenReturn(authentication("token-1", Instant.now().plusSeconds(300)))
+                .thenReturn(authentication("token-2", Instant.now().plusSeconds(300)));
+
+        provider.authenticate(bearer("token-1", null));
+        provider.authenticate(bearer("token-2", null));
+
+        verify(delegate, times(2)).authenticate(any());
+    }
+
+    @Test
+    public void authenticate_doesNotServeExpiredToken() {
+        when(delegate.authenticate(any())).thenReturn(authentication("token-1", Instant.now().minusSeconds(1)));
+
+        provider.authenticate(bearer("token-1", null));
+        provider.authenticate(bearer("token-1", null));
+
+        verify(delegate, times(2)).authenticate(any());
+    }
+
+    @Test
+    public void authenticate_doesNotCacheFailures() {
+        when(delegate.authenticate(any()))
+                .thenThrow(new InvalidBearerTokenException("Invalid signature"))
+                .thenReturn(authentication("token-1", Instant.now().plusSeconds(300)));
+
+        assertThrows(InvalidBearerTokenException.class, () -> provider.authenticate(bearer("token-1", null)));
+        assertEquals("user", provider.authenticate(bearer("token-1", null)).getName());
+    }
+
+    private static BearerTokenAuthenticationToken bearer(String token, Object details) {
+        BearerTokenAuthenticationToken bearer = new BearerTokenAuthenticationToken(token);
+        bearer.setDetails(details);
+        return bearer;
+    }
+
+    private static JwtAuthenticationToken authentication(String token, Instant expiresAt) {
+        Jwt jwt = Jwt.withTokenValue(token)
+                .header("alg", "RS256")
+                .subject("user")
+                .issuedAt(expiresAt.minusSeconds(600))
+                .expiresAt(expiresAt)
+                .build();
+        return new JwtAuthenticationToken(jwt, AuthorityUtils.createAuthorityList("ROLE_USER"));
+    }
+}
@@ -0,0 +1,115 @@
+package com.app.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Test(singleThreaded = true)
+class ConcurrencyLimitFilterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ConcurrencyLimitFilter filter;
+
+    @BeforeMethod
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new ConcurrencyLimitFilter(1, 1, 10, 2, new ObjectMapper(), meterRegistry);
+    }
+
+    @Test
+    public void doFilter_rejectsRequestsBeyondTheLimitOfTheGroup() throws Exception {
+        AtomicInteger nested = new AtomicInteger();
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        FilterChain registerAgain = (req, res) -> {
+            nested.incrementAndGet();
+            filter.doFilter(request("POST", "/api/v1/registrations"), rejected, (r, s) -> nested.incrementAndGet());
+        };
+
+        filter.doFilter(request("POST", "/api/v1/registrations"), new MockHttpServletResponse(), registerAgain);
+
+        assertEquals(1, nested.get());
+        assertEquals(503, rejected.getStatus());
+        assertEquals("2", rejected.getHeader("Retry-After"));
+        assertTrue(rejected.getContentAsString().contains("Service busy"));
+        assertEquals(1.0, meterRegistry.get("workshop.concurrency.rejected").tag("group", "user_write")
+                .functionCounter().count());
+    }
+
+    @Test
+    public void doFilter_limitsEachGroupSeparately() throws Exception {
+        MockHttpServletResponse upcoming = new MockHttpServletResponse();
+        FilterChain readCatalog = (req, res) ->
+                filter.doFilter(request("GET", "/api/v1/workshops/upcoming"), upcoming, (r, s) -> {
+                });
+
+        filter.doFilter(request("POST", "/api/v1/registrations"), new MockHttpServletResponse(), readCatalog);
+
+        assertEquals(200, upcoming.getStatus());
+    }
+
+    @Test
+    public void doFilter_releasesThePermitWhenTheRequestFails() throws Exception {
+        FilterChain failing = (req, res) -> {
+            throw new IllegalStateException("Request failed");
+        };
+        assertThrows(IllegalStateException.class,
+                () -> filter.doFilter(request("GET", "/api/v1/workshops"), new MockHttpServletResponse(), failing));
+
+        MockHttpServletResponse next = new MockHttpServletResponse();
+        filter.doFilter(request("GET", "/api/v1/workshops"), next, (req, res) -> {
+        });
+
+        assertEquals(200, next.getStatus());
+        assertEquals(0, filter.getLimits().get(RouteGroup.ADMIN).getInFlight());
+    }
+
+    @Test
+    public void doFilter_doesNotLimitRequestsOutsideTheApi() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        FilterChain health = (req, res) -> filter.doFilter(request("GET", "/actuator/health"),
+                new MockHttpServletResponse(), (r, s) -> calls.incrementAndGet());
+
+        filter.doFilter(request("GET", "/actuator/health"), new MockHttpServletResponse(), health);
+
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void of_groupsRoutes() {
+        assertEquals(RouteGroup.PUBLIC_READ, RouteGroup.of(request("GET", "/api/v1/workshops/upcoming")));
+        assertEquals(RouteGroup.USER_WRITE, RouteGroup.of(request("POST", "/api/v1/registrations")));
+        assertEquals(RouteGroup.USER_READ, RouteGroup.of(request("GET", "/api/v1/user/registrations")));
+        assertEquals(RouteGroup.USER_WRITE, RouteGroup.of(request("GET", "/api/v1/registrations/tickets/abc")));
+        assertEquals(RouteGroup.ADMIN, RouteGroup.of(request("POST", "/api/v1/registrations/bulk")));
+        assertEquals(RouteGroup.ADMIN, RouteGroup.of(request("GET", "/api/v1/registrations")));
+        assertNull(RouteGroup.of(request("GET", "/swagger-ui/index.html")));
+    }
+
+    @Test
+    public void of_workshopByCodeIsUserRead() {
+        assertEquals(RouteGroup.USER_READ, RouteGroup.of(request("GET", "/api/v1/workshops/WS_100")));
+        assertEquals(RouteGroup.ADMIN, RouteGroup.of(request("PUT", "/api/v1/workshops/WS_100")));
+        assertEquals(RouteGroup.ADMIN, RouteGroup.of(request("DELETE", "/api/v1/workshops/WS_100")));
+    }
+
+    @Test
+    public void of_workshopsByCodesIsUserRead() {
+        MockHttpServletRequest byCodes = request("GET", "/api/v1/workshops");
+        byCodes.setParameter("codes", "WS_100,WS_200");
+
+        assertEquals(RouteGroup.USER_READ, RouteGroup.of(byCodes));
+        assertEquals(RouteGroup.ADMIN, RouteGroup.of(request("GET", "/api/v1/workshops")));
+    }
+
+    private static MockHttpServletRequest request(String method, String uri) {
+        return new MockHttpServletRequest(method, uri);
+    }
+}
@@ -0,0 +1,327 @@
+package com.app.config;
+
+import com.app.model.entity.IdempotencyRecord;
+import com.app.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.unit.DataSize;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@Test(singleThreaded = true)
+class IdempotencyFilterTest {
+
+    private static final String BODY = "{\"workshopCode\":\"W1\"}";
+
+    private SimpleMeterRegistry meterRegistry;
+    private IdempotencyFilter filter;
+    private AtomicInteger executions;
+
+    @BeforeMethod
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = filter(null, Duration.ofSeconds(5));
+        executions = new AtomicInteger();
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("alice", null));
+    }
+
+    @AfterMethod
+    public void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void doFilter_replaysTheFirstResponseToRetries() throws Exception {
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        filter.doFilter(request("key-1", BODY), first, created());
+        MockHttpServletResponse retry = new MockHttpServletResponse();
+        filter.doFilter(request("key-1", BODY), retry, created());
+
+        assertEquals(1, executions.get());
+        assertEquals(201, first.getStatus());
+        assertEquals("{\"regId\":1}", first.getContentAsString());
+        assertNull(first.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(201, retry.getStatus());
+        assertEquals("{\"regId\":1}", retry.getContentAsString());
+        assertEquals("application/json", retry.getContentType());
+        assertEquals("true", retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(1.0, meterRegistry.get("workshop.idempotency.requests").tag("outcome", "replayed").counter().count());
+    }
+
+    @Test
+    public void doFilter_passesTheBodyToTheEndpoint() throws Exception {
+        StringBuilder received = new StringBuilder();
+        filter.doFilter(request("key-1", BODY), new MockHttpServletResponse(),
+                (req, res) -> received.append(new String(req.getInputStream().readAllBytes(), StandardCharsets.UTF_8)));
+
+        assertEquals(BODY, received.toString());
+    }
+
+    @Test
+    public void doFilter_rejectsABodyOverTheMaximumSize() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request("key-1", "x".repeat(1025)), response, created());
+
+        assertEquals(0, executions.get());
+        assertEquals(413, response.getStatus());
+        assertTrue(response.getContentAsString().contains("Request too large"));
+    }
+
+    @Test
+    public void doFilter_rejectsABodyOverTheMaximumSizeWithoutAContentLength() throws Exception {
+        MockHttpServletRequest chunked = new MockHttpServletRequest("POST", "/api/v1/registrations") {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        chunked.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "key-1");
+        chunked.setContent("x".repeat(1025).getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(chunked, response, created());
+
+        assertEquals(0, executions.get());
+        assertEquals(413, response.getStatus());
+    }
+
+    @Test
+    public void doFilter_streamsTheBodyWithoutAMaximumSize() throws Exception {
+        filter = filter(null, Duration.ofSeconds(5), DataSize.ofBytes(-1));
+        String body = "x".repeat(100_000);
+        StringBuilder received = new StringBuilder();
+        FilterChain reading = (req, res) -> {
+            received.append(new String(req.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+            created().doFilter(req, res);
+        };
+        filter.doFilter(request("key-1", body), new MockHttpServletResponse(), reading);
+        MockHttpServletResponse retry = new MockHttpServletResponse();
+        filter.doFilter(request("key-1", body), retry, reading);
+
+        assertEquals(body, received.toString());
+        assertEquals(1, executions.get());
+        assertEquals("true", retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+    }
+
+    @Test
+    public void doFilter_scopesKeysToTheUserAndEndpoint() throws Exception {
+        filter.doFilter(request("key-1", BODY), new MockHttpServletResponse(), created());
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("bob", null));
+        filter.doFilter(request("key-1", BODY), new MockHttpServletResponse(), created());
+        MockHttpServletRequest workshop = request("key-1", BODY);
+        workshop.setRequestURI("/api/v1/workshops");
+        filter.doFilter(workshop, new MockHttpServletResponse(), created());
+
+        assertEquals(3, executions.get());
+    }
+
+    @Test
+    public void doFilter_rejectsAKeyReusedWithADifferentBody() throws Exception {
+        filter.doFilter(request("key-1", BODY), new MockHttpServletResponse(), created());
+        MockHttpServletResponse reused = new MockHttpServletResponse();
+        filter.doFilter(request("key-1", "{\"workshopCode\":\"W2\"}"), reused, created());
+
+        assertEquals(1, executions.get());
+        assertEquals(422, reused.getStatus());
+        assertTrue(reused.getContentAsString().contains("Idempotency key reused"));
+    }
+
+    @Test
+    public void doFilter_executesAgainAfterAServerError() throws Exception {
+        FilterChain failing = (req, res) -> {
+            executions.incrementAndGet();
+            ((HttpServletResponse) res).setStatus(503);
+        };
+        filter.doFilter(request("key-1", BODY), new MockHttpServletResponse(), failing);
+        MockHttpServletResponse retry = new MockHttpServletResponse();
+        filter.doFilter(request("key-1", BODY), retry, created());
+
+        assertEquals(2, executions.get());
+        assertEquals(201, retry.getStatus());
+    }
+
+    @Test
+    public void doFilter_keepsClientErrors() throws Exception {
+        FilterChain rejected = (req, res) -> {
+            executions.incrementAndGet();
+            ((HttpServletResponse) res).setStatus(400);
+        };
+        filter.doFilter(request("key-1", BODY), new MockHttpServletResponse(), rejected);
+        MockHttpServletResponse retry = new MockHttpServletResponse();
+        filter.doFilter(request("key-1", BODY), retry, created());
+
+        assertEquals(1, executions.get());
+        assertEquals(400, retry.getStatus());
+    }
+
+    @Test
+    public void doFilter_letsConcurrentDuplicatesWaitForTheFirstOutcome() throws Exception {
+        CountDownLatch executing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FilterChain slow = (req, res) -> {
+            executing.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            created().doFilter(req, res);
+        };
+        TestingAuthenticationToken alice = new TestingAuthenticationToken("alice", null);
+        CompletableFuture<MockHttpServletResponse> first = CompletableFuture.supplyAsync(() -> run(alice, slow));
+        assertTrue(executing.await(5, TimeUnit.SECONDS));
+        CompletableFuture<MockHttpServletResponse> duplicate = CompletableFuture.supplyAsync(() -> run(alice, created()));
+        Thread.sleep(100);
+        assertFalse(duplicate.isDone());
+        release.countDown();
+
+        assertEquals(201, first.get(5, TimeUnit.SECONDS).getStatus());
+        MockHttpServletResponse replayed = duplicate.get(5, TimeUnit.SECONDS);
+        assertEquals(201, replayed.getStatus());
+        assertEquals("true", replayed.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    public void doFilter_answersConflictWhenTheFirstRequestOutlastsTheWait() throws Exception {
+        filter = filter(null, Duration.ofMillis(100));
+        MockHttpServletResponse duplicate = new MockHttpServletResponse();
+        FilterChain retryWhileExecuting = (req, res) -> {
+            executions.incrementAndGet();
+            filter.doFilter(request("key-1", BODY), duplicate, created());
+        };
+        filter.doFilter(request("key-1", BODY), new MockHttpServletResponse(), retryWhileExecuting);
+
+        assertEquals(1, executions.get());
+        assertEquals(409, duplicate.getStatus());
+    }
+
+    @Test
+    public void doFilter_rejectsAnInvalidKey() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(" ", BODY), response, created());
+
+        assertEquals(0, executions.get());
+        assertEquals(400, response.getStatus());
+    }
+
+    @Test
+    public void doFilter_ignoresRequestsWithoutKeyOrOutsideThePaths() throws Exception {
+        filter.doFilter(request(null, BODY), new MockHttpServletResponse(), created());
+        filter.doFilter(request(null, BODY), new MockHttpServletResponse(), created());
+        MockHttpServletRequest bulk = request("key-1", BODY);
+        bulk.setRequestURI("/api/v1/registrations/bulk");
+        filter.doFilter(bulk, new MockHttpServletResponse(), created());
+        filter.doFilter(bulk, new MockHttpServletResponse(), created());
+
+        assertEquals(4, executions.get());
+    }
+
+    @Test
+    public void doFilter_waitsForARequestClaimedByAnotherInstance() throws Exception {
+        IdempotencyRecordRepository repository = Mockito.mock(IdempotencyRecordRepository.class);
+        IdempotencyRecord stored = new IdempotencyRecord();
+        stored.setRequestHash(requestHashOf(BODY));
+        stored.setStatus(201);
+        stored.setContentType("application/json");
+        stored.setBody("{\"regId\":7}".getBytes(StandardCharsets.UTF_8));
+        stored.setExpiresAt(ZonedDateTime.now().plusHours(1));
+        when(repository.findById(anyString())).thenReturn(Optional.empty(), Optional.empty(), Optional.of(stored));
+        when(repository.claim(anyString(), anyString(), any(), any()))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(repository.takeOver(anyString(), anyString(), any(), any(), any())).thenReturn(0);
+        filter = filter(repository, Duration.ofSeconds(5));
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request("key-1", BODY), response, created());
+
+        assertEquals(0, executions.get());
+        assertEquals(201, response.getStatus());
+        assertEquals("{\"regId\":7}", response.getContentAsString());
+    }
+
+    @Test
+    public void doFilter_storesTheResponseInTheRepository() throws Exception {
+        IdempotencyRecordRepository repository = Mockito.mock(IdempotencyRecordRepository.class);
+        when(repository.findById(anyString())).thenReturn(Optional.empty());
+        filter = filter(repository, Duration.ofSeconds(5));
+
+        filter.doFilter(request("key-1", BODY), new MockHttpServletResponse(), created());
+
+        Mockito.verify(repository).save(Mockito.argThat(stored -> stored.getStatus() == 201
+                && "{\"regId\":1}".equals(new String(stored.getBody(), StandardCharsets.UTF_8))));
+    }
+
+    private static String requestHashOf(String body) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+    }
+
+    private MockHttpServletResponse run(TestingAuthenticationToken user, FilterChain chain) {
+        SecurityContextHolder.getContext().setAuthentication(user);
+        try {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request("key-1", BODY), response, chain);
+            return response;
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private FilterChain created() {
+        return (req, res) -> {
+            int id = executions.incrementAndGet();
+            HttpServletResponse response = (HttpServletResponse) res;
+            response.setStatus(201);
+            response.setContentType("application/json");
+            response.getWriter().write("{\"regId\":" + id + "}");
+        };
+    }
+
+    private IdempotencyFilter filter(IdempotencyRecordRepository repository, Duration waitTimeout) {
+        return filter(repository, waitTimeout, DataSize.ofKilobytes(1));
+    }
+
+    private IdempotencyFilter filter(IdempotencyRecordRepository repository, Duration waitTimeout, DataSize maxBodySize) {
+        IdempotencyStore store = new IdempotencyStore(100, Duration.ofHours(1), Duration.ofMinutes(1), repository, meterRegistry);
+        return new IdempotencyFilter(List.of("/api/v1/registrations", "/api/v1/workshops"), waitTimeout, maxBodySize, store,
+                new ObjectMapper(), meterRegistry);
+    }
+
+    private static MockHttpServletRequest request(String idempotencyKey, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/registrations");
+        if (idempotencyKey != null) {
+            request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, idempotencyKey);
+        }
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+}
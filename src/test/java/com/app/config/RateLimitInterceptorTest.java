@@ -0,0 +1,127 @@
+package com.app.config;
+
+import com.app.exception.RateLimitExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.method.HandlerMethod;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Test(singleThreaded = true)
+class RateLimitInterceptorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private RateLimitInterceptor interceptor;
+
+    @BeforeMethod
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        RateLimitProperties properties = new RateLimitProperties(true, 1000, Duration.ofMinutes(10), Map.of(
+                "create-registration", Map.of(
+                        "user", new RateLimitProperties.Limit(2, Duration.ofMinutes(1)),
+                        "admin", new RateLimitProperties.Limit(4, Duration.ofMinutes(1)))));
+        interceptor = new RateLimitInterceptor(properties, meterRegistry);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void preHandle_rejectsCallsBeyondTheBurst() throws Exception {
+        authenticate("alice", "ROLE_USER");
+
+        assertTrue(call("register"));
+        assertTrue(call("register"));
+        RateLimitExceededException ex = assertThrows(RateLimitExceededException.class, () -> call("register"));
+
+        assertEquals(30, ex.getRetryAfterSeconds());
+        assertEquals(1.0, meterRegistry.get("workshop.rate-limit.rejected").tag("endpoint", "create-registration")
+                .counter().count());
+    }
+
+    @Test
+    public void preHandle_limitsEachUserSeparately() throws Exception {
+        authenticate("alice", "ROLE_USER");
+        call("register");
+        call("register");
+
+        authenticate("bob", "ROLE_USER");
+
+        assertTrue(call("register"));
+    }
+
+    @Test
+    public void preHandle_usesTheMostGenerousLimitOfTheRoles() throws Exception {
+        authenticate("carol", "ROLE_USER", "ROLE_ADMIN");
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(call("register"));
+        }
+        assertThrows(RateLimitExceededException.class, () -> call("register"));
+    }
+
+    @Test
+    public void preHandle_doesNotLimitUnmarkedOrUnconfiguredEndpoints() throws Exception {
+        authenticate("alice", "ROLE_USER");
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(call("list"));
+            assertTrue(call("export"));
+        }
+    }
+
+    @Test
+    public void tryConsume_refillsOverThePeriod() throws Exception {
+        TokenBucketStore store = new TokenBucketStore(10, Duration.ofMinutes(1));
+        RateLimitProperties.Limit limit = new RateLimitProperties.Limit(2, Duration.ofMillis(200));
+
+        assertEquals(0, store.tryConsume("create-registration", "alice", limit));
+        assertEquals(0, store.tryConsume("create-registration", "alice", limit));
+        assertTrue(store.tryConsume("create-registration", "alice", limit) > 0);
+
+        Thread.sleep(120);
+        assertEquals(0, store.tryConsume("create-registration", "alice", limit));
+    }
+
+    private boolean call(String method) throws Exception {
+        HandlerMethod handler = new HandlerMethod(new Endpoints(), Endpoints.class.getMethod(method));
+        return interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), handler);
+    }
+
+    private static void authenticate(String userName, String... roles) {
+        Jwt jwt = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject("subject-" + userName)
+                .claim("preferred_username", userName)
+                .build();
+        SecurityContextHolder.getContext().setAuthentication(
+                new JwtAuthenticationToken(jwt, AuthorityUtils.createAuthorityList(roles)));
+    }
+
+    static class Endpoints {
+
+        @RateLimited("create-registration")
+        public void register() {
+        }
+
+        public void list() {
+        }
+
+        @RateLimited("export")
+        public void export() {
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.app.config;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.util.Resource;
+import com.nimbusds.jose.util.ResourceRetriever;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@Test(singleThreaded = true)
+class ResilientJwkSourceTest {
+
+    private static RSAKey firstKey;
+    private static RSAKey secondKey;
+
+    @Mock
+    private ResourceRetriever retriever;
+
+    private URL jwkSetUrl;
+    private Path snapshotFile;
+    private ResilientJwkSource source;
+
+    @BeforeClass
+    public void generateKeys() throws JOSEException {
+        firstKey = new RSAKeyGenerator(2048).keyID("first").generate();
+        secondKey = new RSAKeyGenerator(2048).keyID("second").generate();
+    }
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        MockitoAnnotations.openMocks(this);
+        jwkSetUrl = URI.create("http://localhost:8081/realms/workshop/protocol/openid-connect/certs").toURL();
+        snapshotFile = Files.createTempDirectory("jwks").resolve("jwks.json");
+        source = new ResilientJwkSource(jwkSetUrl, retriever, snapshotFile, Duration.ofMinutes(5),
+                Duration.ofMinutes(1), Duration.ofSeconds(5));
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        source.shutdown();
+        Files.deleteIfExists(snapshotFile);
+        Files.deleteIfExists(snapshotFile.getParent());
+    }
+
+    @Test
+    public void get_servesSnapshotWhenProviderIsUnreachable() throws Exception {
+        Files.writeString(snapshotFile, new JWKSet(firstKey).toString());
+        when(retriever.retrieveResource(any())).thenThrow(new IOException("Connection refused"));
+
+        source.start();
+
+        assertEquals(List.of(firstKey.toPublicJWK()), source.get(select("first"), null));
+    }
+
+    @Test
+    public void start_ignoresSnapshotWritableByOthers() throws Exception {
+        Files.writeString(snapshotFile, new JWKSet(firstKey).toString());
+        Files.setPosixFilePermissions(snapshotFile, PosixFilePermissions.fromString("rw-rw-rw-"));
+        when(retriever.retrieveResource(any())).thenThrow(new IOException("Connection refused"));
+
+        source.start();
+
+        assertTrue(source.get(select("first"), null).isEmpty());
+    }
+
+    @Test
+    public void start_failsForSnapshotDirectoryWritableByOthers() throws Exception {
+        Files.setPosixFilePermissions(snapshotFile.getParent(), PosixFilePermissions.fromString("rwxrwxrwx"));
+
+        assertThrows(IllegalStateException.class, () -> source.start());
+    }
+
+    @Test
+    public void get_unknownKeyRefreshesOnceForConcurrentRequests() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(retriever.retrieveResource(any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return jwkSet(firstKey, secondKey);
+        });
+        ExecutorService requests = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<JWK>>> results = List.of(
+                    requests.submit(() -> source.get(select("second"), null)),
+                    requests.submit(() -> source.get(select("second"), null)),
+                    requests.submit(() -> source.get(select("second"), null)),
+                    requests.submit(() -> source.get(select("second"), null)));
+            Thread.sleep(200);
+            release.countDown();
+
+            for (Future<List<JWK>> result : results) {
+                assertEquals(List.of(secondKey.toPublicJWK()), result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            requests.shutdownNow();
+        }
+        verify(retriever, times(1)).retrieveResource(jwkSetUrl);
+    }
+
+    @Test
+    public void get_unknownKeyDoesNotRefreshAgainWithinMinimumInterval() throws Exception {
+        when(retriever.retrieveResource(any())).thenReturn(jwkSet(firstKey));
+        source.refresh().get(5, TimeUnit.SECONDS);
+
+        assertTrue(source.get(select("second"), null).isEmpty());
+
+        verify(retriever, times(1)).retrieveResource(jwkSetUrl);
+    }
+
+    @Test
+    public void refresh_failureKeepsLastKnownKeys() throws Exception {
+        when(retriever.retrieveResource(any()))
+                .thenReturn(jwkSet(firstKey))
+                .thenThrow(new IOException("Connection refused"));
+        source.refresh().get(5, TimeUnit.SECONDS);
+
+        assertThrows(Exception.class, () -> source.refresh().get(5, TimeUnit.SECONDS));
+
+        assertEquals(List.of(firstKey.toPublicJWK()), source.get(select("first"), null));
+    }
+
+    @Test
+    public void refresh_savesPublicKeysAsSnapshot() throws Exception {
+        when(retriever.retrieveResource(any())).thenReturn(jwkSet(firstKey));
+
+        source.refresh().get(5, TimeUnit.SECONDS);
+
+        JWKSet snapshot = JWKSet.load(snapshotFile.toFile());
+        assertEquals(List.of(firstKey.toPublicJWK()), snapshot.getKeys());
+        assertFalse(snapshot.getKeys().getFirst().isPrivate());
+        assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(snapshotFile));
+    }
+
+    @Test
+    public void get_knownKeyDoesNotReachProvider() throws Exception {
+        when(retriever.retrieveResource(any())).thenReturn(jwkSet(firstKey));
+        source.refresh().get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(firstKey.toPublicJWK()), source.get(select("first"), null));
+
+        verify(retriever, times(1)).retrieveResource(jwkSetUrl);
+    }
+
+    private static JWKSelector select(String keyId) {
+        return new JWKSelector(new JWKMatcher.Builder().keyID(keyId).build());
+    }
+
+    private static Resource jwkSet(RSAKey... keys) {
+        return new Resource(new JWKSet(List.of(keys)).toString(false), "application/json");
+    }
+}
@@ -2,9 +2,11 @@ package com.app.controller;
 
 import com.app.TestData;
 import com.app.model.request.RegistrationsRequest;
+import com.app.model.response.RegistrationPage;
 import com.app.model.response.RegistrationsResponse;
 import com.app.service.RegistrationService;
 import com.app.service.WorkshopRegistrationService;
+import com.app.service.WorkshopService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
@@ -85,7 +87,8 @@ class RegistrationControllerTest {
     @WithMockUser(roles = "ADMIN")
     void getRegistrationsByWorkshopCode_found() throws Exception {
         RegistrationsResponse dto = TestData.createRegistrationResponse();
-        Mockito.when(workshopRegistrationService.getRegistrationsByCode("WS_100")).thenReturn(List.of(dto));
+        Mockito.when(workshopRegistrationService.getRegistrationsByCode("WS_100", null, WorkshopService.DEFAULT_PAGE_SIZE))
+                .thenReturn(RegistrationPage.builder().registrations(List.of(dto)).build());
 
         mockMvc.perform(get(REGISTRATIONS_ENDPOINT + WORKSHOP_CODE))
                 .andExpect(status().isOk())
@@ -95,7 +98,8 @@ class RegistrationControllerTest {
     @Test
     @WithMockUser(roles = "ADMIN")
     void getRegistrationsByWorkshopCode_notFound() throws Exception {
-        Mockito.when(workshopRegistrationService.getRegistrationsByCode("WS2")).thenReturn(Collections.emptyList());
+        Mockito.when(workshopRegistrationService.getRegistrationsByCode("WS2", null, WorkshopService.DEFAULT_PAGE_SIZE))
+                .thenReturn(RegistrationPage.builder().registrations(Collections.emptyList()).build());
 
         mockMvc.perform(get(REGISTRATIONS_ENDPOINT +"/WS2"))
                 .andExpect(status().isOk())
@@ -1,6 +1,7 @@
 package com.app.controller;
 
 import com.app.model.request.WorkshopRequest;
+import com.app.model.response.CatalogSnapshot;
 import com.app.model.response.WorkshopResponse;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.app.TestData;
@@ -9,6 +10,7 @@ import com.app.service.WorkshopService;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -43,7 +45,8 @@ class WorkshopControllerTest {
     @WithMockUser
     void getUpcomingWorkshops_returnsWorkshops() throws Exception {
         WorkshopResponse workshopResponse = TestData.createWorkshopResponse();
-        Mockito.when(workshopService.getUpcomingWorkshops()).thenReturn(Arrays.asList(workshopResponse));
+        Mockito.when(workshopService.getUpcomingWorkshopsSnapshot(null, WorkshopService.DEFAULT_PAGE_SIZE))
+                .thenReturn(CatalogSnapshot.builder().json(objectMapper.writeValueAsBytes(Arrays.asList(workshopResponse))).build());
 
         mockMvc.perform(get(WORKSHOP_ENDPOINT + "/upcoming"))
                 .andExpect(status().isOk())
@@ -54,7 +57,8 @@ class WorkshopControllerTest {
     @WithMockUser(roles = "ADMIN")
     void getWorkshops_returnsWorkshops() throws Exception {
         WorkshopResponse workshopResponse = TestData.createWorkshopResponse();
-        Mockito.when(workshopService.getAllWorkshops()).thenReturn(Collections.singletonList(workshopResponse));
+        Mockito.when(workshopService.getAllWorkshops(0, WorkshopService.DEFAULT_PAGE_SIZE))
+                .thenReturn(new PageImpl<>(Collections.singletonList(workshopResponse)));
 
         mockMvc.perform(get(WORKSHOP_ENDPOINT))
                 .andExpect(status().isOk())
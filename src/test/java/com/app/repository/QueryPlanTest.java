@@ -0,0 +1,104 @@
+package com.app.repository;
+
+import com.app.WorkshopServiceApplication;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTransactionalTestNGSpringContextTests;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks with EXPLAIN that the hot queries are answered from the indexes of the Liquibase changelog
+ * instead of scanning the tables. Runs on H2, whose plans name the index used for each table. The plans of
+ * PostgreSQL depend on its statistics and are not checked here.
+ */
+@DataJpaTest
+@ContextConfiguration(classes = WorkshopServiceApplication.class)
+@Test(singleThreaded = true)
+class QueryPlanTest extends AbstractTransactionalTestNGSpringContextTests {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeMethod
+    public void setUp() {
+        Instant start = Instant.now().minus(100, ChronoUnit.DAYS);
+        List<Object[]> workshops = new ArrayList<>();
+        List<Object[]> registrations = new ArrayList<>();
+        for (int i = 1; i <= 200; i++) {
+            Timestamp startTime = Timestamp.from(start.plus(i, ChronoUnit.DAYS));
+            Timestamp endTime = Timestamp.from(start.plus(i, ChronoUnit.DAYS).plus(2, ChronoUnit.HOURS));
+            workshops.add(new Object[]{i, "WS_" + i, "Workshop " + i, "Description", startTime, endTime, 50});
+            for (int j = 1; j <= 5; j++) {
+                registrations.add(new Object[]{i * 10 + j, "WS_" + i, "user_" + j, "user_" + j + "@example.com"});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO workshops (workshop_id, code, name, description, start_time, end_time, capacity) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?)", workshops);
+        jdbcTemplate.batchUpdate("INSERT INTO registrations (reg_id, workshop_code, user_name, user_email, user_preferred_contact) "
+                + "VALUES (?, ?, ?, ?, 'EMAIL')", registrations);
+    }
+
+    @Test
+    public void registrationsOfUser_useUserNameIndex() {
+        String plan = explain("SELECT r.reg_id, r.workshop_code FROM registrations r WHERE r.user_name = ? ORDER BY r.reg_id", "user_1");
+
+        assertUsesIndex(plan, "idx_registrations_user_name_id");
+    }
+
+    @Test
+    public void registrationsOfWorkshop_useWorkshopCodeIndex() {
+        String plan = explain("SELECT r.reg_id, r.user_name FROM registrations r WHERE r.workshop_code = ? AND r.reg_id > ? ORDER BY r.reg_id",
+                "WS_1", 0);
+
+        // Both indexes lead with the workshop code, H2 picks either without statistics
+        assertUsesIndex(plan, "idx_registrations_workshop_code_id", "uk_registrations_workshop_code_user_name");
+    }
+
+    @Test
+    public void registeredUser_usesUniqueConstraint() {
+        String plan = explain("SELECT r.reg_id FROM registrations r WHERE r.workshop_code = ? AND r.user_name = ?", "WS_1", "user_1");
+
+        assertUsesIndex(plan, "uk_registrations_workshop_code_user_name");
+    }
+
+    @Test
+    public void claimSeat_usesWorkshopCodeConstraint() {
+        String plan = explain("UPDATE workshops w SET registered_count = registered_count + 1 "
+                + "WHERE w.code = ? AND w.registered_count < w.capacity AND w.inventory_shards <= 1", "WS_1");
+
+        assertUsesIndex(plan, "uk_workshops_code");
+    }
+
+    @Test
+    public void upcomingWorkshops_useEndTimeIndex() {
+        String plan = explain("SELECT w.workshop_id, w.code FROM workshops w WHERE w.end_time > ? "
+                + "ORDER BY w.start_time, w.workshop_id FETCH FIRST 50 ROWS ONLY", Timestamp.from(Instant.now()));
+
+        // PostgreSQL may walk idx_workshops_start_time_id for the order instead, which this test does not cover
+        assertUsesIndex(plan, "idx_workshops_end_time");
+    }
+
+    private String explain(String sql, Object... args) {
+        return String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, args));
+    }
+
+    private static void assertUsesIndex(String plan, String... indexes) {
+        String normalized = plan.toLowerCase(Locale.ROOT);
+        assertTrue(Arrays.stream(indexes).anyMatch(normalized::contains),
+                "expected one of the indexes " + Arrays.toString(indexes) + " in plan:\n" + plan);
+        assertFalse(normalized.contains("tablescan"), "expected no table scan in plan:\n" + plan);
+    }
+}
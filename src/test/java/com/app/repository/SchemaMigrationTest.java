@@ -0,0 +1,130 @@
+package com.app.repository;
+
+import com.app.model.entity.IdempotencyRecord;
+import com.app.model.entity.ImportError;
+import com.app.model.entity.ImportJob;
+import com.app.model.entity.RegistrationImportRow;
+import com.app.model.entity.Registrations;
+import com.app.model.entity.SeatInventoryShard;
+import com.app.model.entity.Workshop;
+import com.app.model.entity.WorkshopImportRow;
+import liquibase.integration.spring.SpringLiquibase;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the Liquibase changelog on a database whose schema was created by Hibernate before the migrations,
+ * and checks that it gets the columns and indexes the entities and the hot queries rely on.
+ */
+@Test(singleThreaded = true)
+class SchemaMigrationTest {
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeMethod
+    public void setUp() {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:baseline-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        // The tables as created by ddl-auto=update from the entities before the migrations
+        jdbcTemplate.execute("CREATE TABLE workshops (workshop_id INTEGER GENERATED BY DEFAULT AS IDENTITY, "
+                + "capacity INTEGER NOT NULL, code VARCHAR(255) NOT NULL, description VARCHAR(255) NOT NULL, "
+                + "end_time TIMESTAMP(6) WITH TIME ZONE NOT NULL, name VARCHAR(255) NOT NULL, "
+                + "start_time TIMESTAMP(6) WITH TIME ZONE NOT NULL, PRIMARY KEY (workshop_id), "
+                + "CONSTRAINT uk_l7wdcvkkoi3mwyo4lxd5bebps UNIQUE (code))");
+        jdbcTemplate.execute("CREATE TABLE registrations (reg_id INTEGER GENERATED BY DEFAULT AS IDENTITY, "
+                + "user_email VARCHAR(255) NOT NULL, user_name VARCHAR(255) NOT NULL, user_phone VARCHAR(255), "
+                + "user_preferred_contact VARCHAR(255) NOT NULL, workshop_code VARCHAR(255) NOT NULL, PRIMARY KEY (reg_id))");
+        jdbcTemplate.update("INSERT INTO workshops (capacity, code, description, end_time, name, start_time) VALUES "
+                + "(2, 'WS_FULL', 'Full', CURRENT_TIMESTAMP, 'Full', CURRENT_TIMESTAMP), "
+                + "(5, 'WS_EMPTY', 'Empty', CURRENT_TIMESTAMP, 'Empty', CURRENT_TIMESTAMP)");
+        jdbcTemplate.update("INSERT INTO registrations (user_email, user_name, user_preferred_contact, workshop_code) VALUES "
+                + "('first@example.com', 'first', 'EMAIL', 'WS_FULL'), ('second@example.com', 'second', 'EMAIL', 'WS_FULL')");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    public void migrate_addsTheNewColumnsAndCountsTheSeatsTaken() throws Exception {
+        migrate();
+
+        List<Map<String, Object>> workshops = jdbcTemplate.queryForList(
+                "SELECT code, registered_count, inventory_shards, version, seat_revision FROM workshops ORDER BY code");
+        assertEquals(2, workshops.size());
+        assertEquals("WS_EMPTY", workshops.get(0).get("CODE"));
+        assertEquals(0, workshops.get(0).get("REGISTERED_COUNT"));
+        assertEquals("WS_FULL", workshops.get(1).get("CODE"));
+        assertEquals(2, workshops.get(1).get("REGISTERED_COUNT"));
+        assertEquals(0, workshops.get(1).get("INVENTORY_SHARDS"));
+        assertEquals(0L, workshops.get(1).get("VERSION"));
+        assertEquals(0L, workshops.get(1).get("SEAT_REVISION"));
+    }
+
+    @Test
+    public void migrate_schemaMatchesTheEntities() throws Exception {
+        migrate();
+
+        // Validated the way the application starts, with ddl-auto=validate
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.JAKARTA_NON_JTA_DATASOURCE, dataSource)
+                .applySetting(AvailableSettings.HBM2DDL_AUTO, "validate")
+                .applySetting(AvailableSettings.USE_SECOND_LEVEL_CACHE, false)
+                .build();
+        try (SessionFactory sessionFactory = new MetadataSources(registry)
+                .addAnnotatedClasses(Workshop.class, Registrations.class, SeatInventoryShard.class, ImportJob.class,
+                        ImportError.class, WorkshopImportRow.class, RegistrationImportRow.class, IdempotencyRecord.class)
+                .buildMetadata()
+                .buildSessionFactory()) {
+            assertTrue(sessionFactory.isOpen());
+        } finally {
+            StandardServiceRegistryBuilder.destroy(registry);
+        }
+    }
+
+    @Test
+    public void migrate_createsTheIndexesOfTheExistingTables() throws Exception {
+        migrate();
+
+        for (String index : List.of("IDX_WORKSHOPS_END_TIME", "IDX_WORKSHOPS_START_TIME_ID",
+                "IDX_REGISTRATIONS_WORKSHOP_CODE_ID", "IDX_REGISTRATIONS_USER_NAME_ID")) {
+            assertEquals(1, jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME = ?", Integer.class, index), index);
+        }
+    }
+
+    @Test
+    public void migrate_runsAgainWithoutChanges() throws Exception {
+        migrate();
+        jdbcTemplate.update("UPDATE workshops SET registered_count = 1 WHERE code = 'WS_FULL'");
+
+        migrate();
+
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT registered_count FROM workshops WHERE code = 'WS_FULL'", Integer.class));
+    }
+
+    private void migrate() throws Exception {
+        SpringLiquibase liquibase = new SpringLiquibase();
+        liquibase.setDataSource(dataSource);
+        liquibase.setChangeLog("classpath:db/changelog/db.changelog-master.yaml");
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.afterPropertiesSet();
+    }
+}
@@ -0,0 +1,228 @@
+package com.app.service;
+
+import com.app.WorkshopServiceApplication;
+import com.app.model.entity.ImportJob;
+import com.app.model.entity.ImportKind;
+import com.app.model.entity.ImportStatus;
+import com.app.model.entity.PreferredContact;
+import com.app.model.entity.Registrations;
+import com.app.model.entity.Workshop;
+import com.app.model.mapper.ImportJobMapper;
+import com.app.model.mapper.RegistrationsMapperImpl;
+import com.app.model.mapper.WorkshopMapperImpl;
+import com.app.model.request.FileFormat;
+import com.app.model.response.ImportErrorResponse;
+import com.app.repository.ImportErrorRepository;
+import com.app.repository.ImportJobRepository;
+import com.app.repository.RegistrationsRepository;
+import com.app.repository.WorkshopRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.validation.Validation;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTransactionalTestNGSpringContextTests;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs imports against H2, where the staging tables are loaded with JDBC batches instead of COPY, and
+ * checks that the merge applies the same rules as the single create endpoints.
+ */
+@DataJpaTest
+@ContextConfiguration(classes = WorkshopServiceApplication.class)
+@Import({WorkshopMapperImpl.class, RegistrationsMapperImpl.class})
+@Test(singleThreaded = true)
+class ImportServiceTest extends AbstractTransactionalTestNGSpringContextTests {
+
+    @Autowired
+    private WorkshopRepository workshopRepository;
+
+    @Autowired
+    private RegistrationsRepository registrationsRepository;
+
+    @Autowired
+    private ImportJobRepository importJobRepository;
+
+    @Autowired
+    private ImportErrorRepository importErrorRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private ImportService importService;
+
+    @BeforeMethod
+    public void setUp() {
+        importService = new ImportService(importJobRepository, importErrorRepository, Mockito.mock(ImportJobMapper.class),
+                new ImportStaging(jdbcTemplate, entityManagerFactory), Validation.buildDefaultValidatorFactory().getValidator(),
+                new ObjectMapper(), Mockito.mock(UpcomingWorkshopsCache.class), Mockito.mock(WorkshopVersionCache.class),
+                Duration.ofMinutes(5));
+    }
+
+    @Test
+    public void runImport_mergesValidWorkshopsAndRecordsRejectedLines() throws IOException {
+        createWorkshop("WS_EXISTS", 10, 0);
+        String start = ZonedDateTime.now().plusDays(1).toOffsetDateTime().toString();
+        String end = ZonedDateTime.now().plusDays(2).toOffsetDateTime().toString();
+        String csv = "code,name,description,startTime,endTime,capacity\n"
+                + "WS_NEW_1,\"Intro, part 1\",First workshop," + start + "," + end + ",20\n"
+                + "WS_NEW_2,Second workshop,\"Says \"\"hi\"\"\"," + start + "," + end + ",5\n"
+                + "WS_NEW_1,Duplicate code,Duplicate," + start + "," + end + ",5\n"
+                + "WS_EXISTS,Existing code,Existing," + start + "," + end + ",5\n"
+                + "WS_BAD,Bad times,Ends first," + end + "," + start + ",abc\n";
+
+        ImportJob job = runImport(ImportKind.WORKSHOPS, FileFormat.CSV, csv);
+
+        assertEquals(ImportStatus.COMPLETED, job.getStatus());
+        assertEquals(5, job.getRowsRead());
+        assertEquals(2, job.getRowsImported());
+        assertEquals(3, job.getRowsRejected());
+        assertEquals("Intro, part 1", workshopRepository.findByCode("WS_NEW_1").orElseThrow().getName());
+        assertEquals("Says \"hi\"", workshopRepository.findByCode("WS_NEW_2").orElseThrow().getDescription());
+        List<ImportErrorResponse> errors = importService.getImportErrors(job.getJobId(), null, 10);
+        assertEquals(List.of(4L, 5L, 6L), errors.stream().map(ImportErrorResponse::getLineNo).toList());
+        assertTrue(errors.get(2).getMessage().contains("Invalid capacity"));
+        assertEquals(0, countStagedRows(job));
+    }
+
+    @Test
+    public void runImport_fillsRemainingSeatsInLineOrder() throws IOException {
+        createWorkshop("WS_IMPORT", 3, 1);
+        createWorkshop("WS_SHARDED", 10, 0, 4);
+        String ndjson = """
+                {"workshopCode":"WS_IMPORT","userName":"existing","userEmail":"existing@example.com","userPreferredContact":"EMAIL"}
+                {"workshopCode":"WS_IMPORT","userName":"first","userEmail":"first@example.com","userPreferredContact":"email"}
+                {"workshopCode":"WS_IMPORT","userName":"first","userEmail":"first@example.com","userPreferredContact":"EMAIL"}
+
+                {"workshopCode":"WS_IMPORT","userName":"second","userEmail":"second@example.com","userPreferredContact":"MOBILE"}
+                {"workshopCode":"WS_IMPORT","userName":"third","userEmail":"third@example.com","userPreferredContact":"EMAIL"}
+                {"workshopCode":"WS_MISSING","userName":"first","userEmail":"first@example.com","userPreferredContact":"EMAIL"}
+                {"workshopCode":"WS_SHARDED","userName":"first","userEmail":"first@example.com","userPreferredContact":"EMAIL"}
+                {"workshopCode":"WS_IMPORT","userName":"fourth","userPreferredContact":"FAX"}
+                not json
+                """;
+
+        ImportJob job = runImport(ImportKind.REGISTRATIONS, FileFormat.NDJSON, ndjson);
+
+        assertEquals(ImportStatus.COMPLETED, job.getStatus());
+        assertEquals(9, job.getRowsRead());
+        assertEquals(2, job.getRowsImported());
+        assertEquals(7, job.getRowsRejected());
+        entityManager.flush();
+        entityManager.clear();
+        assertEquals(3, workshopRepository.findByCode("WS_IMPORT").orElseThrow().getRegisteredCount());
+        assertEquals(List.of("existing", "first", "second"), registrationsRepository.findAll().stream()
+                .map(Registrations::getUserName).sorted().toList());
+        List<String> messages = importService.getImportErrors(job.getJobId(), null, 10).stream()
+                .map(ImportErrorResponse::getMessage).toList();
+        assertEquals(7, messages.size());
+        assertEquals("User already registered", messages.get(0));
+        assertEquals("User already registered", messages.get(1));
+        assertTrue(messages.get(2).contains("full"));
+        assertTrue(messages.get(3).contains("not found"));
+        assertTrue(messages.get(4).contains("sharded"));
+        assertTrue(messages.get(5).contains("Invalid preferred contact"));
+        assertTrue(messages.get(6).startsWith("Invalid JSON"));
+    }
+
+    @Test
+    public void failJobsNotUpdatedSince_failsStaleJobsAndRemovesTheirStagedRows() {
+        ZonedDateTime now = ZonedDateTime.now();
+        ImportJob stale = createJob(ImportStatus.MERGING, now.minusHours(1));
+        ImportJob running = createJob(ImportStatus.VALIDATING, now);
+        ImportJob completed = createJob(ImportStatus.COMPLETED, now.minusHours(1));
+        for (ImportJob job : List.of(stale, running)) {
+            jdbcTemplate.update("INSERT INTO workshop_import_rows (job_id, line_no, workshop_id, code, name, description, start_time, end_time, capacity) "
+                    + "VALUES (?, 2, 1, 'WS_STAGED', 'Staged', 'Staged', ?, ?, 5)", job.getJobId(), now.toOffsetDateTime(), now.toOffsetDateTime());
+        }
+
+        assertEquals(1, importService.failJobsNotUpdatedSince(now.minusMinutes(5)));
+
+        entityManager.clear();
+        ImportJob failed = importJobRepository.findById(stale.getJobId()).orElseThrow();
+        assertEquals(ImportStatus.FAILED, failed.getStatus());
+        assertNotNull(failed.getFinishedAt());
+        assertEquals(0, countStagedRows(stale));
+        assertEquals(ImportStatus.VALIDATING, importJobRepository.findById(running.getJobId()).orElseThrow().getStatus());
+        assertEquals(1, countStagedRows(running));
+        assertEquals(ImportStatus.COMPLETED, importJobRepository.findById(completed.getJobId()).orElseThrow().getStatus());
+    }
+
+    private ImportJob createJob(ImportStatus status, ZonedDateTime updatedAt) {
+        ImportJob job = new ImportJob();
+        job.setJobId(UUID.randomUUID().toString());
+        job.setKind(ImportKind.WORKSHOPS);
+        job.setStatus(status);
+        job.setCreatedAt(updatedAt);
+        job.setUpdatedAt(updatedAt);
+        return importJobRepository.saveAndFlush(job);
+    }
+
+    private ImportJob runImport(ImportKind kind, FileFormat format, String content) throws IOException {
+        Path file = Files.createTempFile("import-test-", "." + format.getExtension());
+        Files.writeString(file, content);
+        ImportJob job = new ImportJob();
+        job.setJobId(UUID.randomUUID().toString());
+        job.setKind(kind);
+        job.setStatus(ImportStatus.RECEIVED);
+        job.setCreatedAt(ZonedDateTime.now());
+        job.setUpdatedAt(job.getCreatedAt());
+        importJobRepository.save(job);
+
+        importService.runImport(job, format, file);
+
+        assertFalse(Files.exists(file));
+        return job;
+    }
+
+    private void createWorkshop(String code, int capacity, int registered) {
+        createWorkshop(code, capacity, registered, 0);
+    }
+
+    private void createWorkshop(String code, int capacity, int registered, int inventoryShards) {
+        Workshop workshop = new Workshop();
+        workshop.setCode(code);
+        workshop.setName("Workshop " + code);
+        workshop.setDescription("Description");
+        workshop.setStartTime(ZonedDateTime.now().plusDays(1));
+        workshop.setEndTime(ZonedDateTime.now().plusDays(2));
+        workshop.setCapacity(capacity);
+        workshopRepository.saveAndFlush(workshop);
+        jdbcTemplate.update("UPDATE workshops SET registered_count = ?, inventory_shards = ? WHERE code = ?",
+                registered, inventoryShards, code);
+        for (int i = 0; i < registered; i++) {
+            Registrations registration = new Registrations();
+            registration.setWorkshopCode(code);
+            registration.setUserName("existing");
+            registration.setUserEmail("existing@example.com");
+            registration.setUserPreferredContact(PreferredContact.EMAIL);
+            registrationsRepository.saveAndFlush(registration);
+        }
+    }
+
+    private int countStagedRows(ImportJob job) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM workshop_import_rows WHERE job_id = ?", Integer.class, job.getJobId());
+    }
+}
@@ -0,0 +1,85 @@
+package com.app.service;
+
+import com.app.model.projection.RegistrationCount;
+import com.app.model.projection.WorkshopSeatCount;
+import com.app.repository.RegistrationsRepository;
+import com.app.repository.WorkshopRepository;
+import org.mockito.*;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testng.ITestContext;
+import org.testng.annotations.*;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@Test(singleThreaded = true)
+class RegisteredCountReconcilerTest {
+
+    @Mock
+    private WorkshopRepository workshopRepository;
+
+    @Mock
+    private RegistrationsRepository registrationsRepository;
+
+    @InjectMocks
+    private RegisteredCountReconciler reconciler;
+
+    private AutoCloseable closeable;
+
+    @BeforeClass
+    public void initMocks(ITestContext context) {
+        closeable = MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(reconciler, "batchSize", 2);
+    }
+
+    @AfterClass
+    public void releaseMocks() throws Exception {
+        if (closeable != null) {
+            closeable.close();
+        }
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        Mockito.reset(workshopRepository, registrationsRepository);
+    }
+
+    @Test
+    public void reconcile_correctsDriftedCountersOnly() {
+        List<WorkshopSeatCount> firstBatch = List.of(seatCount(1, "WS_100", 3), seatCount(2, "WS_200", 1));
+        List<WorkshopSeatCount> lastBatch = List.of(seatCount(3, "WS_300", 0));
+        List<RegistrationCount> firstCounts = List.of(registrationCount("WS_100", 2), registrationCount("WS_200", 1));
+        when(workshopRepository.findSeatCountsAfter(eq(0), any(Pageable.class))).thenReturn(firstBatch);
+        when(workshopRepository.findSeatCountsAfter(eq(2), any(Pageable.class))).thenReturn(lastBatch);
+        when(registrationsRepository.countByWorkshopCodes(List.of("WS_100", "WS_200"))).thenReturn(firstCounts);
+        when(registrationsRepository.countByWorkshopCodes(List.of("WS_300"))).thenReturn(List.of());
+        when(workshopRepository.correctSeatCount("WS_100", 7L, 2)).thenReturn(1);
+
+        int corrected = reconciler.reconcile();
+
+        assertEquals(1, corrected);
+        verify(workshopRepository).correctSeatCount("WS_100", 7L, 2);
+        verify(workshopRepository, never()).correctSeatCount(eq("WS_200"), anyLong(), anyInt());
+        verify(workshopRepository, never()).correctSeatCount(eq("WS_300"), anyLong(), anyInt());
+    }
+
+    private static WorkshopSeatCount seatCount(Integer id, String code, int registeredCount) {
+        WorkshopSeatCount seatCount = mock(WorkshopSeatCount.class);
+        when(seatCount.getWorkshopId()).thenReturn(id);
+        when(seatCount.getCode()).thenReturn(code);
+        when(seatCount.getRegisteredCount()).thenReturn(registeredCount);
+        when(seatCount.getSeatRevision()).thenReturn(7L);
+        return seatCount;
+    }
+
+    private static RegistrationCount registrationCount(String code, long count) {
+        RegistrationCount registrationCount = mock(RegistrationCount.class);
+        when(registrationCount.getWorkshopCode()).thenReturn(code);
+        when(registrationCount.getRegistrationCount()).thenReturn(count);
+        return registrationCount;
+    }
+}
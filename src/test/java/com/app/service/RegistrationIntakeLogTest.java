@@ -0,0 +1,130 @@
+package com.app.service;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Test(singleThreaded = true)
+class RegistrationIntakeLogTest {
+
+    private Path file;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        file = Files.createTempFile("registration-intake", ".log");
+        Files.delete(file);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void append_recordsAreRecoveredAfterReopening() throws IOException {
+        try (RegistrationIntakeLog intakeLog = new RegistrationIntakeLog(file, 4096, true)) {
+            assertTrue(intakeLog.recovered().isEmpty());
+            intakeLog.append(bytes("first"));
+            intakeLog.append(bytes("second"));
+        }
+
+        try (RegistrationIntakeLog intakeLog = new RegistrationIntakeLog(file, 4096, true)) {
+            List<RegistrationIntakeLog.Entry> recovered = intakeLog.recovered();
+            assertEquals(List.of("first", "second"), recovered.stream().map(entry -> text(entry.payload())).toList());
+            assertEquals(List.of(1L, 2L), recovered.stream().map(RegistrationIntakeLog.Entry::sequence).toList());
+            assertEquals(3L, intakeLog.append(bytes("third")).sequence());
+        }
+    }
+
+    @Test
+    public void open_failsWhileTheLogIsOpen() throws IOException {
+        try (RegistrationIntakeLog intakeLog = new RegistrationIntakeLog(file, 4096, true)) {
+            intakeLog.append(bytes("first"));
+
+            assertThrows(IOException.class, () -> new RegistrationIntakeLog(file, 4096, true));
+        }
+
+        try (RegistrationIntakeLog intakeLog = new RegistrationIntakeLog(file, 4096, true)) {
+            assertEquals(1, intakeLog.recovered().size());
+        }
+    }
+
+    @Test
+    public void markPersisted_persistedRecordsAreNotRecovered() throws IOException {
+        try (RegistrationIntakeLog intakeLog = new RegistrationIntakeLog(file, 4096, true)) {
+            intakeLog.append(bytes("first"));
+            RegistrationIntakeLog.Entry second = intakeLog.append(bytes("second"));
+            intakeLog.append(bytes("third"));
+            intakeLog.markPersisted(second);
+        }
+
+        try (RegistrationIntakeLog intakeLog = new RegistrationIntakeLog(file, 4096, true)) {
+            List<RegistrationIntakeLog.Entry> recovered = intakeLog.recovered();
+            assertEquals(1, recovered.size());
+            assertEquals("third", text(recovered.getFirst().payload()));
+            assertEquals(3L, recovered.getFirst().sequence());
+        }
+    }
+
+    @Test
+    public void append_reusesTheSpaceOfPersistedRecords() throws IOException {
+        byte[] payload = new byte[40];
+        // Room for three records of 56 bytes after the header of 64 bytes
+        try (RegistrationIntakeLog intakeLog = new RegistrationIntakeLog(file, 64 + 200, false)) {
+            intakeLog.append(payload);
+            RegistrationIntakeLog.Entry second = intakeLog.append(payload);
+            intakeLog.append(payload);
+            assertNull(intakeLog.append(payload));
+
+            intakeLog.markPersisted(second);
+            RegistrationIntakeLog.Entry fourth = intakeLog.append(payload);
+            assertNotNull(fourth);
+            assertEquals(64 + 56, fourth.end());
+            // Two records and the end of the file skipped by the wrap
+            assertEquals(56 + 56 + 32, intakeLog.used());
+        }
+
+        try (RegistrationIntakeLog intakeLog = new RegistrationIntakeLog(file, 64 + 200, false)) {
+            assertEquals(List.of(3L, 4L), intakeLog.recovered().stream().map(RegistrationIntakeLog.Entry::sequence).toList());
+        }
+    }
+
+    @Test
+    public void recover_stopsAtATornRecord() throws IOException {
+        try (RegistrationIntakeLog intakeLog = new RegistrationIntakeLog(file, 4096, true)) {
+            intakeLog.append(bytes("first"));
+            intakeLog.append(bytes("second"));
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            // The last byte of the payload of the second record
+            raw.seek(64 + 16 + 5 + 16 + 5);
+            raw.write('X');
+        }
+
+        try (RegistrationIntakeLog intakeLog = new RegistrationIntakeLog(file, 4096, true)) {
+            assertEquals(List.of("first"), intakeLog.recovered().stream().map(entry -> text(entry.payload())).toList());
+            intakeLog.append(bytes("third"));
+        }
+
+        try (RegistrationIntakeLog intakeLog = new RegistrationIntakeLog(file, 4096, true)) {
+            assertEquals(List.of("first", "third"), intakeLog.recovered().stream().map(entry -> text(entry.payload())).toList());
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
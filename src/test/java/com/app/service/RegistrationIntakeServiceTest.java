@@ -0,0 +1,241 @@
+package com.app.service;
+
+import com.app.TestData;
+import com.app.exception.InvalidWorkshopDataException;
+import com.app.exception.RegistrationTicketNotFoundException;
+import com.app.exception.UserAlreadyRegisteredException;
+import com.app.model.request.RegistrationsRequest;
+import com.app.model.response.BulkRegistrationResult;
+import com.app.model.response.RegistrationStatus;
+import com.app.model.response.RegistrationTicket;
+import com.app.model.response.RegistrationsResponse;
+import com.app.repository.WorkshopRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.util.unit.DataSize;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+@Test(singleThreaded = true)
+class RegistrationIntakeServiceTest {
+
+    private static final String WORKSHOP_CODE = "WS_100";
+
+    private Path file;
+    private RegistrationService registrationService;
+    private WorkshopRepository workshopRepository;
+    private final List<RegistrationIntakeService> services = new ArrayList<>();
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        file = Files.createTempFile("registration-intake", ".log");
+        Files.delete(file);
+        registrationService = Mockito.mock(RegistrationService.class);
+        workshopRepository = Mockito.mock(WorkshopRepository.class);
+        when(workshopRepository.findInventoryShardsByCode(WORKSHOP_CODE)).thenReturn(Optional.of(1));
+        when(workshopRepository.findSeatsLeftByCode(WORKSHOP_CODE)).thenReturn(Optional.of(10));
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        for (RegistrationIntakeService service : services) {
+            service.shutdown();
+        }
+        services.clear();
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void submit_acceptsAndWritesInTheBackground() throws Exception {
+        when(registrationService.createRegistrations(anyList())).thenAnswer(invocation -> registered(invocation.getArgument(0)));
+        RegistrationIntakeService service = start();
+
+        RegistrationTicket ticket = service.submit(request(), user("alice"));
+
+        assertEquals(RegistrationStatus.PENDING, ticket.getStatus());
+        assertEquals("alice", ticket.getUserName());
+        RegistrationTicket written = awaitOutcome(service, ticket.getTicketId(), user("alice"));
+        assertEquals(RegistrationStatus.REGISTERED, written.getStatus());
+        assertEquals(WORKSHOP_CODE, written.getRegistration().getWorkshopCode());
+    }
+
+    @Test
+    public void submit_rejectsWhenTheEstimateHasNoSeatsLeft() throws Exception {
+        when(workshopRepository.findSeatsLeftByCode(WORKSHOP_CODE)).thenReturn(Optional.of(1));
+        CountDownLatch release = blockWriter();
+        RegistrationIntakeService service = start();
+
+        service.submit(request(), user("alice"));
+
+        assertThrows(InvalidWorkshopDataException.class, () -> service.submit(request(), user("bob")));
+        release.countDown();
+    }
+
+    @Test
+    public void submit_rejectsADuplicateWhileItIsQueued() throws Exception {
+        CountDownLatch release = blockWriter();
+        RegistrationIntakeService service = start();
+
+        service.submit(request(), user("alice"));
+
+        assertThrows(UserAlreadyRegisteredException.class, () -> service.submit(request(), user("alice")));
+        release.countDown();
+    }
+
+    @Test
+    public void submit_rejectsAnUnknownWorkshop() throws Exception {
+        RegistrationIntakeService service = start();
+        RegistrationsRequest request = request();
+        request.setWorkshopCode("WS_404");
+
+        assertThrows(InvalidWorkshopDataException.class, () -> service.submit(request, user("alice")));
+        assertDoesNotThrow(() -> service.submit(request(), user("alice")));
+    }
+
+    @Test
+    public void submit_writerRetriesABatchThatFailed() throws Exception {
+        when(registrationService.createRegistrations(anyList()))
+                .thenReturn(List.of())
+                .thenAnswer(invocation -> registered(invocation.getArgument(0)));
+        RegistrationIntakeService service = start();
+
+        RegistrationTicket ticket = service.submit(request(), user("alice"));
+
+        assertEquals(RegistrationStatus.REGISTERED, awaitOutcome(service, ticket.getTicketId(), user("alice")).getStatus());
+        RegistrationTicket next = service.submit(request(), user("bob"));
+        assertEquals(RegistrationStatus.REGISTERED, awaitOutcome(service, next.getTicketId(), user("bob")).getStatus());
+    }
+
+    @Test
+    public void start_writesTheRegistrationsLeftInTheLog() throws Exception {
+        when(registrationService.createRegistrations(anyList())).thenThrow(new CannotCreateTransactionException("database down"));
+        RegistrationIntakeService stopped = start();
+        stopped.submit(request(), user("alice"));
+        Mockito.verify(registrationService, Mockito.timeout(5000)).createRegistrations(anyList());
+        services.remove(stopped);
+        stopped.shutdown();
+
+        Mockito.reset(registrationService);
+        when(registrationService.createRegistrations(anyList())).thenAnswer(invocation -> registered(invocation.getArgument(0)));
+        start();
+
+        Mockito.verify(registrationService, Mockito.timeout(5000)).createRegistrations(Mockito.argThat(requests ->
+                requests.size() == 1 && "alice".equals(requests.getFirst().getUserName())));
+    }
+
+    @Test
+    public void getTicket_hidesTheTicketsOfOtherUsers() throws Exception {
+        CountDownLatch release = blockWriter();
+        RegistrationIntakeService service = start();
+        RegistrationTicket ticket = service.submit(request(), user("alice"));
+
+        assertThrows(RegistrationTicketNotFoundException.class, () -> service.getTicket(ticket.getTicketId(), user("bob")));
+        assertThrows(RegistrationTicketNotFoundException.class, () -> service.getTicket("unknown", user("alice")));
+        release.countDown();
+    }
+
+    @Test
+    public void getTicket_keepsPendingTicketsBeyondTheMaximum() throws Exception {
+        CountDownLatch release = blockWriter();
+        RegistrationIntakeService service = start(1);
+        List<String> users = List.of("alice", "bob", "carol", "dave");
+        List<RegistrationTicket> accepted = users.stream().map(user -> service.submit(request(), user(user))).toList();
+
+        for (int i = 0; i < users.size(); i++) {
+            assertEquals(RegistrationStatus.PENDING, service.getTicket(accepted.get(i).getTicketId(), user(users.get(i))).getStatus());
+        }
+        release.countDown();
+    }
+
+    @Test
+    public void constructor_rejectsALogOfTwoGigabytesOrMore() {
+        assertThrows(IllegalArgumentException.class, () -> new RegistrationIntakeService(registrationService, workshopRepository,
+                Mockito.mock(SeatInventoryService.class), new ObjectMapper(), file, DataSize.ofGigabytes(2), false,
+                100, Duration.ofMinutes(1), Duration.ofHours(1), 1000, Duration.ofSeconds(5), new SimpleMeterRegistry()));
+        assertFalse(Files.exists(file));
+    }
+
+    private RegistrationIntakeService start() throws IOException {
+        return start(1000);
+    }
+
+    private RegistrationIntakeService start(long maxTickets) throws IOException {
+        RegistrationIntakeService service = new RegistrationIntakeService(registrationService, workshopRepository,
+                Mockito.mock(SeatInventoryService.class), new ObjectMapper(), file, DataSize.ofKilobytes(64), false,
+                100, Duration.ofMinutes(1), Duration.ofHours(1), maxTickets, Duration.ofSeconds(5), new SimpleMeterRegistry());
+        service.start();
+        services.add(service);
+        return service;
+    }
+
+    private CountDownLatch blockWriter() {
+        CountDownLatch release = new CountDownLatch(1);
+        when(registrationService.createRegistrations(anyList())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return registered(invocation.getArgument(0));
+        });
+        return release;
+    }
+
+    private static RegistrationTicket awaitOutcome(RegistrationIntakeService service, String ticketId,
+                                                   JwtAuthenticationToken user) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        RegistrationTicket ticket = service.getTicket(ticketId, user);
+        while (ticket.getStatus() == RegistrationStatus.PENDING && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            ticket = service.getTicket(ticketId, user);
+        }
+        return ticket;
+    }
+
+    private static List<BulkRegistrationResult> registered(List<RegistrationsRequest> requests) {
+        return IntStream.range(0, requests.size())
+                .mapToObj(i -> BulkRegistrationResult.builder()
+                        .index(i)
+                        .workshopCode(requests.get(i).getWorkshopCode())
+                        .userName(requests.get(i).getUserName())
+                        .status(RegistrationStatus.REGISTERED)
+                        .registration(RegistrationsResponse.builder()
+                                .registrationId(i + 1)
+                                .workshopCode(requests.get(i).getWorkshopCode())
+                                .userName(requests.get(i).getUserName())
+                                .build())
+                        .build())
+                .toList();
+    }
+
+    private static RegistrationsRequest request() {
+        RegistrationsRequest request = TestData.createRegistrationRequest();
+        request.setRegistrationId(null);
+        return request;
+    }
+
+    private static JwtAuthenticationToken user(String userName) {
+        Jwt jwt = Jwt.withTokenValue("token")
+                .header("alg", "none")
+                .claim("preferred_username", userName)
+                .claim("email", userName + "@example.com")
+                .build();
+        return new JwtAuthenticationToken(jwt);
+    }
+}
@@ -0,0 +1,308 @@
+package com.app.service;
+
+import com.app.TestData;
+import com.app.exception.InvalidWorkshopDataException;
+import com.app.exception.UserAlreadyRegisteredException;
+import com.app.model.entity.PreferredContact;
+import com.app.model.entity.Registrations;
+import com.app.model.entity.Workshop;
+import com.app.model.mapper.RegistrationsMapper;
+import com.app.model.request.FileFormat;
+import com.app.model.request.RegistrationsRequest;
+import com.app.model.response.BulkRegistrationResult;
+import com.app.model.response.RegistrationStatus;
+import com.app.model.response.RegistrationsResponse;
+import com.app.repository.RegistrationsRepository;
+import com.app.repository.WorkshopRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.exception.ConstraintViolationException;
+import org.mockito.*;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.testng.ITestContext;
+import org.testng.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@Test(singleThreaded = true)
+class RegistrationServiceTest {
+
+    public static final String WORKSHOP_CODE = "WS_100";
+    public static final String USER_NAME = "test_user";
+
+    @Mock
+    private WorkshopRegistrationService workshopRegistrationService;
+
+    @Mock
+    private RegistrationsRepository registrationRepository;
+
+    @Mock
+    private RegistrationsMapper registrationsMapper;
+
+    @Mock
+    private WorkshopRepository workshopRepository;
+
+    @Mock
+    private SeatInventoryService seatInventoryService;
+
+    @Mock
+    private WorkshopVersionCache workshopVersionCache;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks
+    private RegistrationService registrationService;
+
+    private RegistrationsRequest registrationsRequest;
+    private JwtAuthenticationToken authentication;
+
+    private AutoCloseable closeable;
+
+    @BeforeClass
+    public void initMocks(ITestContext context) {
+        closeable = MockitoAnnotations.openMocks(this);
+    }
+
+    @AfterClass
+    public void releaseMocks() throws Exception {
+        if (closeable != null) {
+            closeable.close();
+        }
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        Mockito.reset(workshopRegistrationService, registrationRepository, registrationsMapper, workshopRepository, seatInventoryService, workshopVersionCache);
+
+        registrationsRequest = TestData.createRegistrationRequest();
+        Jwt jwt = Jwt.withTokenValue("token")
+                .header("alg", "none")
+                .claim("preferred_username", USER_NAME)
+                .claim("email", "test@example.com")
+                .build();
+        authentication = new JwtAuthenticationToken(jwt);
+    }
+
+    @Test
+    public void createRegistration_claimsSeatAndSaves() {
+        Registrations registration = new Registrations();
+        RegistrationsResponse response = TestData.createRegistrationResponse();
+        when(workshopRepository.claimSeat(WORKSHOP_CODE)).thenReturn(1);
+        when(registrationsMapper.RegistrationsRequestToRegistrations(registrationsRequest)).thenReturn(registration);
+        when(registrationRepository.saveAndFlush(registration)).thenReturn(registration);
+        when(registrationsMapper.RegistrationsToRegistrationsResponse(registration)).thenReturn(response);
+
+        RegistrationsResponse result = registrationService.createRegistration(registrationsRequest, authentication);
+
+        assertEquals(response, result);
+        assertEquals(WORKSHOP_CODE, registration.getWorkshopCode());
+        verify(workshopRepository, times(1)).claimSeat(WORKSHOP_CODE);
+        verify(workshopRepository, never()).findByCode(any());
+        verify(registrationRepository, times(1)).saveAndFlush(registration);
+    }
+
+    @Test
+    public void createRegistration_workshopFull() {
+        when(registrationsMapper.RegistrationsRequestToRegistrations(registrationsRequest)).thenReturn(new Registrations());
+        when(workshopRepository.claimSeat(WORKSHOP_CODE)).thenReturn(0);
+        when(workshopRepository.findInventoryShardsByCode(WORKSHOP_CODE)).thenReturn(Optional.of(0));
+
+        InvalidWorkshopDataException ex = assertThrows(InvalidWorkshopDataException.class,
+                () -> registrationService.createRegistration(registrationsRequest, authentication));
+
+        assertTrue(ex.getMessage().contains("full"));
+        verify(seatInventoryService, never()).claimSeat(any());
+        verify(workshopVersionCache, never()).evict(any());
+    }
+
+    @Test
+    public void createRegistration_claimsSeatFromShardedInventory() {
+        Registrations registration = new Registrations();
+        when(workshopRepository.claimSeat(WORKSHOP_CODE)).thenReturn(0);
+        when(workshopRepository.findInventoryShardsByCode(WORKSHOP_CODE)).thenReturn(Optional.of(8));
+        when(seatInventoryService.claimSeat(WORKSHOP_CODE)).thenReturn(true);
+        when(registrationsMapper.RegistrationsRequestToRegistrations(registrationsRequest)).thenReturn(registration);
+        when(registrationRepository.saveAndFlush(registration)).thenReturn(registration);
+
+        registrationService.createRegistration(registrationsRequest, authentication);
+
+        verify(seatInventoryService, times(1)).claimSeat(WORKSHOP_CODE);
+        verify(registrationRepository, times(1)).saveAndFlush(registration);
+    }
+
+    @Test
+    public void createRegistration_workshopNotFound() {
+        when(registrationsMapper.RegistrationsRequestToRegistrations(registrationsRequest)).thenReturn(new Registrations());
+        when(workshopRepository.claimSeat(WORKSHOP_CODE)).thenReturn(0);
+        when(workshopRepository.findInventoryShardsByCode(WORKSHOP_CODE)).thenReturn(Optional.empty());
+
+        InvalidWorkshopDataException ex = assertThrows(InvalidWorkshopDataException.class,
+                () -> registrationService.createRegistration(registrationsRequest, authentication));
+
+        assertTrue(ex.getMessage().contains("not found"));
+        verify(workshopVersionCache, never()).evict(any());
+    }
+
+    @Test
+    public void createRegistrations_reportsResultOfEachItem() {
+        Workshop workshop = new Workshop();
+        workshop.setCode(WORKSHOP_CODE);
+        workshop.setCapacity(3);
+        workshop.setRegisteredCount(1);
+        List<RegistrationsRequest> requests = List.of(
+                bulkRequest(WORKSHOP_CODE, "existing"),
+                bulkRequest(WORKSHOP_CODE, "first"),
+                bulkRequest(WORKSHOP_CODE, "first"),
+                bulkRequest(WORKSHOP_CODE, "second"),
+                bulkRequest(WORKSHOP_CODE, "third"),
+                bulkRequest("WS_404", "first"),
+                bulkRequest(WORKSHOP_CODE, null));
+        mapRegistrations();
+        // The existing user is registered by another transaction, its insert is skipped
+        when(registrationRepository.insertIfAbsent(any())).thenAnswer(invocation -> {
+            List<Registrations> registrations = invocation.<List<Registrations>>getArgument(0);
+            for (int i = 0; i < registrations.size(); i++) {
+                registrations.get(i).setRegistrationId(i + 1);
+            }
+            return registrations.stream().filter(registration -> !"existing".equals(registration.getUserName())).toList();
+        });
+        when(workshopRepository.lockByCodeIn(any())).thenReturn(List.of(workshop));
+        when(workshopRepository.claimSeats(WORKSHOP_CODE, 2)).thenReturn(1);
+
+        List<BulkRegistrationResult> results = registrationService.createRegistrations(requests);
+
+        assertEquals(List.of(RegistrationStatus.ALREADY_REGISTERED, RegistrationStatus.REGISTERED,
+                        RegistrationStatus.ALREADY_REGISTERED, RegistrationStatus.REGISTERED, RegistrationStatus.WORKSHOP_FULL,
+                        RegistrationStatus.WORKSHOP_NOT_FOUND, RegistrationStatus.INVALID),
+                results.stream().map(BulkRegistrationResult::getStatus).toList());
+        verify(workshopRepository, times(1)).claimSeats(WORKSHOP_CODE, 2);
+        verify(workshopRepository, never()).claimSeat(any());
+        verify(registrationRepository, times(1)).insertIfAbsent(argThat(registrations -> registrations.size() == 5));
+        // The registrations of the full and of the missing workshop are removed again
+        verify(registrationRepository, times(1)).deleteAllByIdInBatch(argThat(ids -> ((List<?>) ids).size() == 2));
+        assertNotNull(results.get(1).getRegistration());
+        assertNull(results.get(4).getRegistration());
+        verify(workshopVersionCache, times(1)).evict(WORKSHOP_CODE);
+    }
+
+    @Test
+    public void createRegistrations_claimsShardedSeatsInOnePass() {
+        Workshop workshop = new Workshop();
+        workshop.setCode(WORKSHOP_CODE);
+        workshop.setCapacity(4);
+        workshop.setInventoryShards(2);
+        List<RegistrationsRequest> requests = List.of(
+                bulkRequest(WORKSHOP_CODE, "first"),
+                bulkRequest(WORKSHOP_CODE, "second"),
+                bulkRequest(WORKSHOP_CODE, "third"));
+        mapRegistrations();
+        when(registrationRepository.insertIfAbsent(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(workshopRepository.lockByCodeIn(any())).thenReturn(List.of(workshop));
+        when(seatInventoryService.claimSeats(WORKSHOP_CODE, 3)).thenReturn(3);
+
+        List<BulkRegistrationResult> results = registrationService.createRegistrations(requests);
+
+        assertTrue(results.stream().allMatch(result -> result.getStatus() == RegistrationStatus.REGISTERED));
+        verify(seatInventoryService, times(1)).claimSeats(WORKSHOP_CODE, 3);
+        verify(seatInventoryService, never()).claimSeat(any());
+    }
+
+    @Test
+    public void createRegistrations_tooMany() {
+        List<RegistrationsRequest> requests = Collections.nCopies(RegistrationService.MAX_BULK_SIZE + 1, registrationsRequest);
+
+        assertThrows(InvalidWorkshopDataException.class, () -> registrationService.createRegistrations(requests));
+        verify(registrationRepository, never()).insertIfAbsent(any());
+    }
+
+    @Test
+    public void exportRegistrations_writesOneJsonObjectPerLine() throws Exception {
+        RegistrationsResponse first = TestData.createRegistrationResponse();
+        RegistrationsResponse second = TestData.createRegistrationResponse();
+        second.setRegistrationId(2);
+        when(registrationRepository.streamForExport(WORKSHOP_CODE, null, null)).thenReturn(Stream.of(first, second));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        registrationService.exportRegistrations(FileFormat.NDJSON, WORKSHOP_CODE, null, null, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(2, objectMapper.readValue(lines[1], Map.class).get("registrationId"));
+    }
+
+    @Test
+    public void exportRegistrations_writesCsvWithQuotedFields() throws Exception {
+        RegistrationsResponse registration = TestData.createRegistrationResponse();
+        registration.setUserName("Doe, \"JD\"");
+        when(registrationRepository.streamForExport(null, null, null)).thenReturn(Stream.of(registration));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        registrationService.exportRegistrations(FileFormat.CSV, " ", null, null, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("registrationId,workshopCode,userName"));
+        assertTrue(lines[1].contains(",\"Doe, \"\"JD\"\"\","));
+    }
+
+    @Test
+    public void createRegistration_alreadyRegistered() {
+        Registrations registration = new Registrations();
+        ConstraintViolationException violation = new ConstraintViolationException("duplicate key",
+                new SQLException("duplicate key", "23505"), "insert", ConstraintViolationException.ConstraintKind.UNIQUE,
+                "uk_registrations_workshop_code_user_name");
+        when(registrationsMapper.RegistrationsRequestToRegistrations(registrationsRequest)).thenReturn(registration);
+        when(registrationRepository.saveAndFlush(registration)).thenThrow(new DataIntegrityViolationException("duplicate key", violation));
+
+        assertThrows(UserAlreadyRegisteredException.class,
+                () -> registrationService.createRegistration(registrationsRequest, authentication));
+
+        verify(workshopRepository, never()).claimSeat(any());
+    }
+
+    @Test
+    public void createRegistration_otherConstraintViolationIsNotADuplicate() {
+        Registrations registration = new Registrations();
+        ConstraintViolationException violation = new ConstraintViolationException("null value",
+                new SQLException("null value", "23502"), "insert", ConstraintViolationException.ConstraintKind.OTHER,
+                "user_preferred_contact");
+        when(registrationsMapper.RegistrationsRequestToRegistrations(registrationsRequest)).thenReturn(registration);
+        when(registrationRepository.saveAndFlush(registration)).thenThrow(new DataIntegrityViolationException("null value", violation));
+
+        assertThrows(DataIntegrityViolationException.class,
+                () -> registrationService.createRegistration(registrationsRequest, authentication));
+
+        verify(workshopRepository, never()).claimSeat(any());
+    }
+
+    private void mapRegistrations() {
+        when(registrationsMapper.RegistrationsRequestToRegistrations(any())).thenAnswer(invocation -> {
+            RegistrationsRequest request = invocation.getArgument(0);
+            Registrations registration = new Registrations();
+            registration.setUserName(request.getUserName());
+            return registration;
+        });
+        when(registrationsMapper.RegistrationsToRegistrationsResponse(any())).thenAnswer(invocation -> TestData.createRegistrationResponse());
+    }
+
+    private static RegistrationsRequest bulkRequest(String workshopCode, String userName) {
+        return RegistrationsRequest.builder()
+                .workshopCode(workshopCode)
+                .userName(userName)
+                .userEmail(userName + "@example.com")
+                .userPreferredContact(PreferredContact.EMAIL)
+                .build();
+    }
+}
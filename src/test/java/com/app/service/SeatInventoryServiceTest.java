@@ -0,0 +1,113 @@
+package com.app.service;
+
+import com.app.model.entity.SeatInventoryShard;
+import com.app.model.projection.ShardSeats;
+import com.app.repository.SeatInventoryShardRepository;
+import org.mockito.*;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.testng.ITestContext;
+import org.testng.annotations.*;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@Test(singleThreaded = true)
+class SeatInventoryServiceTest {
+
+    public static final String WORKSHOP_CODE = "WS_100";
+
+    @Mock
+    private SeatInventoryShardRepository shardRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SeatInventoryService seatInventoryService;
+
+    private AutoCloseable closeable;
+
+    @BeforeClass
+    public void initMocks(ITestContext context) {
+        closeable = MockitoAnnotations.openMocks(this);
+        seatInventoryService = new SeatInventoryService(shardRepository, transactionManager);
+    }
+
+    @AfterClass
+    public void releaseMocks() throws Exception {
+        if (closeable != null) {
+            closeable.close();
+        }
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        Mockito.reset(shardRepository, transactionManager);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void createShards_splitsCapacityEvenly() {
+        seatInventoryService.createShards(WORKSHOP_CODE, 10, 4);
+
+        ArgumentCaptor<List<SeatInventoryShard>> captor = ArgumentCaptor.forClass(List.class);
+        verify(shardRepository).saveAll(captor.capture());
+        assertEquals(List.of(3, 3, 2, 2), captor.getValue().stream().map(SeatInventoryShard::getSeatsLeft).toList());
+    }
+
+    @Test
+    public void claimSeat_fallsBackToAnotherShard() {
+        List<ShardSeats> shards = List.of(shardSeats(0, 1), shardSeats(1, 1));
+        when(shardRepository.findShardSeats(WORKSHOP_CODE)).thenReturn(shards);
+        when(shardRepository.claimSeat(eq(WORKSHOP_CODE), anyInt())).thenReturn(0, 1);
+
+        assertTrue(seatInventoryService.claimSeat(WORKSHOP_CODE));
+        verify(shardRepository, times(2)).claimSeat(eq(WORKSHOP_CODE), anyInt());
+    }
+
+    @Test
+    public void claimSeat_allShardsEmpty() {
+        List<ShardSeats> shards = List.of(shardSeats(0, 0), shardSeats(1, 0));
+        when(shardRepository.findShardSeats(WORKSHOP_CODE)).thenReturn(shards);
+
+        assertFalse(seatInventoryService.claimSeat(WORKSHOP_CODE));
+        verify(shardRepository, never()).claimSeat(any(), anyInt());
+    }
+
+    @Test
+    public void claimSeats_takesMoreSeatsThanOneShardHoldsInOneLockedPass() {
+        List<SeatInventoryShard> shards = List.of(shard(0, 2), shard(1, 1), shard(2, 0));
+        when(shardRepository.lockShards(WORKSHOP_CODE)).thenReturn(shards);
+
+        assertEquals(3, seatInventoryService.claimSeats(WORKSHOP_CODE, 5));
+
+        assertEquals(List.of(0, 0, 0), shards.stream().map(SeatInventoryShard::getSeatsLeft).toList());
+        verify(shardRepository, times(1)).lockShards(WORKSHOP_CODE);
+        verify(shardRepository, never()).claimSeat(any(), anyInt());
+        verifyNoInteractions(transactionManager);
+    }
+
+    private static SeatInventoryShard shard(int shardNo, int seatsLeft) {
+        SeatInventoryShard shard = new SeatInventoryShard();
+        shard.setWorkshopCode(WORKSHOP_CODE);
+        shard.setShardNo(shardNo);
+        shard.setSeatsLeft(seatsLeft);
+        return shard;
+    }
+
+    private static ShardSeats shardSeats(int shardNo, int seatsLeft) {
+        return new ShardSeats() {
+            @Override
+            public int getShardNo() {
+                return shardNo;
+            }
+
+            @Override
+            public int getSeatsLeft() {
+                return seatsLeft;
+            }
+        };
+    }
+}
@@ -0,0 +1,102 @@
+package com.app.service;
+
+import com.app.model.entity.Workshop;
+import com.app.model.request.WorkshopCursor;
+import com.app.model.response.CatalogSnapshot;
+import com.app.model.response.WorkshopPage;
+import com.app.model.response.WorkshopResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Test(singleThreaded = true)
+class UpcomingWorkshopsCacheTest {
+
+    private static final ZonedDateTime START = ZonedDateTime.now().plusDays(1);
+
+    private UpcomingWorkshopsCache cache;
+    private AtomicInteger loads;
+
+    @BeforeMethod
+    public void setUp() {
+        cache = new UpcomingWorkshopsCache(true, Duration.ofMinutes(1), 100, new SimpleMeterRegistry(),
+                new ObjectMapper().findAndRegisterModules());
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    public void get_servesRepeatedReadsFromCache() {
+        cache.get(null, 2, this::firstPage);
+        cache.get(null, 2, this::firstPage);
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void invalidate_evictsOnlyPagesCoveringTheWorkshop() {
+        cache.get(null, 2, this::firstPage);
+
+        cache.invalidate(null, workshop(START.plusDays(10), 99));
+        cache.get(null, 2, this::firstPage);
+        assertEquals(1, loads.get());
+
+        cache.invalidate(null, workshop(START.plusHours(1), 99));
+        cache.get(null, 2, this::firstPage);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void get_expiresPageWhenFirstWorkshopHasEnded() {
+        cache.get(null, 2, () -> {
+            loads.incrementAndGet();
+            return WorkshopPage.builder()
+                    .workshops(List.of(WorkshopResponse.builder().endTime(ZonedDateTime.now().minusSeconds(1)).build()))
+                    .build();
+        });
+        cache.get(null, 2, this::firstPage);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void get_keepsJsonAndGzipVariantOfLargePages() throws Exception {
+        List<WorkshopResponse> workshops = IntStream.range(0, 50)
+                .mapToObj(i -> WorkshopResponse.builder().code("WS_" + i).description("Description " + i).build())
+                .toList();
+
+        CatalogSnapshot snapshot = cache.get(null, 50, () -> WorkshopPage.builder().workshops(workshops).build());
+
+        assertNotNull(snapshot.getGzip());
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(snapshot.getGzip()))) {
+            assertArrayEquals(snapshot.getJson(), in.readAllBytes());
+        }
+    }
+
+    private WorkshopPage firstPage() {
+        loads.incrementAndGet();
+        return WorkshopPage.builder()
+                .workshops(List.of(
+                        WorkshopResponse.builder().startTime(START).endTime(START.plusHours(2)).build(),
+                        WorkshopResponse.builder().startTime(START.plusHours(2)).endTime(START.plusHours(4)).build()))
+                .nextCursor(new WorkshopCursor(START.plusHours(2), 2).encode())
+                .build();
+    }
+
+    private static Workshop workshop(ZonedDateTime startTime, Integer id) {
+        Workshop workshop = new Workshop();
+        workshop.setStartTime(startTime);
+        workshop.setWorkshopId(id);
+        return workshop;
+    }
+}
@@ -0,0 +1,142 @@
+package com.app.service;
+
+import com.app.exception.WorkshopNotFoundException;
+import com.app.model.response.WorkshopResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Test(singleThreaded = true)
+class WorkshopReadCoalescerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AtomicInteger loads;
+
+    @BeforeMethod
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    public void get_concurrentReadsShareOneLoad() throws Exception {
+        WorkshopReadCoalescer coalescer = new WorkshopReadCoalescer(Duration.ZERO, meterRegistry);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Future<WorkshopResponse> leader = executor.submit(() -> coalescer.get("W1", () -> {
+                loading.countDown();
+                await(release);
+                return load("W1");
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            List<Future<WorkshopResponse>> followers = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                followers.add(executor.submit(() -> coalescer.get("W1", () -> load("W1"))));
+            }
+            while (meterRegistry.counter("workshop.read-coalescing.merged").count() < 7) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            WorkshopResponse workshop = leader.get(5, TimeUnit.SECONDS);
+            for (Future<WorkshopResponse> follower : followers) {
+                assertSame(workshop, follower.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, meterRegistry.counter("workshop.read-coalescing.loads").count());
+    }
+
+    @Test
+    public void get_sharesResultWithinWindowOnly() throws Exception {
+        WorkshopReadCoalescer coalescer = new WorkshopReadCoalescer(Duration.ofMillis(200), meterRegistry);
+
+        WorkshopResponse first = coalescer.get("W1", () -> load("W1"));
+        assertSame(first, coalescer.get("W1", () -> load("W1")));
+        assertEquals(1, loads.get());
+
+        Thread.sleep(400);
+        assertNotSame(first, coalescer.get("W1", () -> load("W1")));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void get_doesNotShareAcrossCodes() {
+        WorkshopReadCoalescer coalescer = new WorkshopReadCoalescer(Duration.ofMinutes(1), meterRegistry);
+
+        assertEquals("W1", coalescer.get("W1", () -> load("W1")).getCode());
+        assertEquals("W2", coalescer.get("W2", () -> load("W2")).getCode());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void get_doesNotKeepFailedLoads() {
+        WorkshopReadCoalescer coalescer = new WorkshopReadCoalescer(Duration.ofMinutes(1), meterRegistry);
+
+        assertThrows(WorkshopNotFoundException.class, () -> coalescer.get("W1", () -> {
+            loads.incrementAndGet();
+            throw new WorkshopNotFoundException("Workshop not found with given code: W1");
+        }));
+        assertEquals("W1", coalescer.get("W1", () -> load("W1")).getCode());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void evict_startsNewLoad() {
+        WorkshopReadCoalescer coalescer = new WorkshopReadCoalescer(Duration.ofMinutes(1), meterRegistry);
+        WorkshopResponse first = coalescer.get("W1", () -> load("W1"));
+
+        coalescer.evict("W1");
+
+        assertNotSame(first, coalescer.get("W1", () -> load("W1")));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void evict_waitsForTheCommitOfTheTransaction() {
+        WorkshopReadCoalescer coalescer = new WorkshopReadCoalescer(Duration.ofMinutes(1), meterRegistry);
+        WorkshopResponse first = coalescer.get("W1", () -> load("W1"));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            coalescer.evict("W1");
+
+            assertSame(first, coalescer.get("W1", () -> load("W1")));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertNotSame(first, coalescer.get("W1", () -> load("W1")));
+    }
+
+    private WorkshopResponse load(String code) {
+        loads.incrementAndGet();
+        return WorkshopResponse.builder().code(code).build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.app.service;
+
+import com.app.exception.InvalidWorkshopDataException;
+import com.app.model.mapper.RegistrationsMapper;
+import com.app.model.mapper.WorkshopMapper;
+import com.app.model.response.RegistrationPage;
+import com.app.model.response.RegistrationsResponse;
+import com.app.repository.RegistrationsRepository;
+import com.app.repository.WorkshopRepository;
+import org.mockito.*;
+import org.springframework.data.domain.PageRequest;
+import org.testng.ITestContext;
+import org.testng.annotations.*;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@Test(singleThreaded = true)
+class WorkshopRegistrationServiceTest {
+
+    public static final String WORKSHOP_CODE = "WS_100";
+
+    @Mock
+    private WorkshopRepository workshopRepository;
+
+    @Mock
+    private WorkshopMapper workshopMapper;
+
+    @Mock
+    private RegistrationsRepository registrationsRepository;
+
+    @Mock
+    private RegistrationsMapper registrationsMapper;
+
+    @Mock
+    private SeatInventoryService seatInventoryService;
+
+    @InjectMocks
+    private WorkshopRegistrationService workshopRegistrationService;
+
+    private AutoCloseable closeable;
+
+    @BeforeClass
+    public void initMocks(ITestContext context) {
+        closeable = MockitoAnnotations.openMocks(this);
+    }
+
+    @AfterClass
+    public void releaseMocks() throws Exception {
+        if (closeable != null) {
+            closeable.close();
+        }
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        Mockito.reset(workshopRepository, workshopMapper, registrationsRepository, registrationsMapper, seatInventoryService);
+    }
+
+    @Test
+    public void getRegistrationsByCode_returnsCursorOfNextPage() {
+        List<RegistrationsResponse> rows = registrations(11, 12, 13);
+        when(registrationsRepository.findResponsesByWorkshopCode(WORKSHOP_CODE, 10, PageRequest.ofSize(3))).thenReturn(rows);
+
+        RegistrationPage page = workshopRegistrationService.getRegistrationsByCode(WORKSHOP_CODE, 10, 2);
+
+        assertEquals(2, page.getRegistrations().size());
+        assertEquals(12, page.getNextCursor());
+        verify(workshopRepository, never()).existsWorkshopByCode(any());
+    }
+
+    @Test
+    public void getRegistrationsByCode_lastPageHasNoCursor() {
+        List<RegistrationsResponse> rows = registrations(1, 2);
+        when(registrationsRepository.findResponsesByWorkshopCode(WORKSHOP_CODE, 0, PageRequest.ofSize(3))).thenReturn(rows);
+
+        RegistrationPage page = workshopRegistrationService.getRegistrationsByCode(WORKSHOP_CODE, null, 2);
+
+        assertEquals(2, page.getRegistrations().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    public void getRegistrationsByCode_workshopNotFound() {
+        when(registrationsRepository.findResponsesByWorkshopCode(eq(WORKSHOP_CODE), eq(0), any())).thenReturn(List.of());
+        when(workshopRepository.existsWorkshopByCode(WORKSHOP_CODE)).thenReturn(false);
+
+        assertThrows(InvalidWorkshopDataException.class,
+                () -> workshopRegistrationService.getRegistrationsByCode(WORKSHOP_CODE, null, 10));
+    }
+
+    private static List<RegistrationsResponse> registrations(int... ids) {
+        return IntStream.of(ids)
+                .mapToObj(id -> RegistrationsResponse.builder().registrationId(id).workshopCode(WORKSHOP_CODE).build())
+                .toList();
+    }
+}
@@ -0,0 +1,284 @@
+package com.app.service;
+
+import com.app.WorkshopServiceApplication;
+import com.app.config.SecondLevelCacheConfig;
+import com.app.model.entity.PreferredContact;
+import com.app.model.entity.Registrations;
+import com.app.model.entity.SeatInventoryShard;
+import com.app.model.entity.Workshop;
+import com.app.model.mapper.RegistrationsMapperImpl;
+import com.app.model.mapper.WorkshopMapper;
+import com.app.model.mapper.WorkshopMapperImpl;
+import com.app.model.projection.WorkshopSeatCount;
+import com.app.model.response.WorkshopPage;
+import com.app.model.response.WorkshopResponse;
+import com.app.repository.WorkshopRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.testng.AbstractTransactionalTestNGSpringContextTests;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Guards the workshop list queries: getAllWorkshops must not lazy load registrations one workshop at a
+ * time, and the upcoming workshops must be read without loading entities. Also checks that repeated
+ * lookups by code are served from the second-level cache.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ContextConfiguration(classes = WorkshopServiceApplication.class)
+@Import({WorkshopMapperImpl.class, RegistrationsMapperImpl.class, SecondLevelCacheConfig.class})
+@Test(singleThreaded = true)
+class WorkshopServiceQueryCountTest extends AbstractTransactionalTestNGSpringContextTests {
+
+    @Autowired
+    private WorkshopRepository workshopRepository;
+
+    @Autowired
+    private WorkshopMapper workshopMapper;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private WorkshopService workshopService;
+
+    @BeforeMethod
+    public void setUp() {
+        workshopService = new WorkshopService(workshopRepository, workshopMapper,
+                Mockito.mock(WorkshopRegistrationService.class), Mockito.mock(SeatInventoryService.class),
+                Mockito.mock(UpcomingWorkshopsCache.class), Mockito.mock(WorkshopVersionCache.class),
+                new WorkshopReadCoalescer(Duration.ZERO, new SimpleMeterRegistry()));
+    }
+
+    @Test
+    public void getAllWorkshops_statementCountDoesNotGrowWithPageSize() {
+        createWorkshops(20, 3);
+
+        long smallPage = countStatements(2);
+        long largePage = countStatements(20);
+
+        assertEquals(smallPage, largePage);
+        assertTrue(largePage <= 3, "expected at most 3 statements but was " + largePage);
+    }
+
+    @Test
+    public void getAllWorkshops_loadsRegistrationsOfThePage() {
+        createWorkshops(3, 2);
+        entityManager.clear();
+
+        Page<WorkshopResponse> page = workshopService.getAllWorkshops(0, 2);
+
+        assertEquals(2, page.getContent().size());
+        assertEquals(3, page.getTotalElements());
+        page.getContent().forEach(workshop -> assertEquals(2, workshop.getRegistrations().size()));
+    }
+
+    @Test
+    public void getUpcomingWorkshops_doesNotLoadEntities() {
+        createWorkshops(5, 1);
+        entityManager.clear();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        WorkshopPage page = workshopService.getUpcomingWorkshops(null, 3);
+
+        assertEquals(3, page.getWorkshops().size());
+        assertNotNull(page.getNextCursor());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void getUpcomingWorkshops_sumsTheSeatsOfShardedWorkshops() {
+        ZonedDateTime start = ZonedDateTime.now().plusDays(1);
+        Workshop sharded = new Workshop();
+        sharded.setCode("QC_0");
+        sharded.setName("Sharded workshop");
+        sharded.setDescription("Query count workshop");
+        sharded.setStartTime(start);
+        sharded.setEndTime(start.plusHours(1));
+        sharded.setCapacity(10);
+        sharded.setInventoryShards(2);
+        entityManager.persist(sharded);
+        for (int shardNo = 0; shardNo < 2; shardNo++) {
+            SeatInventoryShard shard = new SeatInventoryShard();
+            shard.setWorkshopCode("QC_0");
+            shard.setShardNo(shardNo);
+            shard.setSeatsLeft(3 + shardNo);
+            entityManager.persist(shard);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        WorkshopResponse workshop = workshopService.getUpcomingWorkshops(null, 1).getWorkshops().getFirst();
+
+        assertEquals(3, workshop.getSeatsTaken());
+        assertEquals(7, workshop.getSeatsLeft());
+    }
+
+    /**
+     * Runs outside of the test transaction, entries cached after a transaction started are not visible to it.
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void findByCode_repeatedLookupsAreServedFromTheCache() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> createWorkshops(1, 0));
+        try {
+            entityManagerFactory.getCache().evictAll();
+            Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+            workshopRepository.findByCode("QC_0").orElseThrow();
+            statistics.clear();
+
+            Workshop workshop = workshopRepository.findByCode("QC_0").orElseThrow();
+
+            assertEquals("QC_0", workshop.getCode());
+            assertEquals(0, statistics.getPrepareStatementCount());
+            assertEquals(1, statistics.getNaturalIdCacheHitCount());
+            assertEquals(1, statistics.getSecondLevelCacheHitCount());
+        } finally {
+            transaction.executeWithoutResult(status -> workshopRepository.deleteAll());
+        }
+    }
+
+    /**
+     * Runs outside of the test transaction, entries cached after a transaction started are not visible to it.
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void getWorkshopByCode_repeatedReadsRunNoStatements() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> createWorkshops(1, 2));
+        try {
+            entityManagerFactory.getCache().evictAll();
+            Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+            workshopService.getWorkshopByCode("QC_0");
+            statistics.clear();
+
+            WorkshopResponse workshop = workshopService.getWorkshopByCode("QC_0");
+
+            assertEquals("QC_0", workshop.getCode());
+            assertNull(workshop.getRegistrations());
+            assertEquals(0, statistics.getPrepareStatementCount());
+        } finally {
+            transaction.executeWithoutResult(status -> {
+                entityManager.createQuery("DELETE FROM Registrations").executeUpdate();
+                workshopRepository.deleteAll();
+            });
+        }
+    }
+
+    /**
+     * Runs outside of the test transaction, entries cached after a transaction started are not visible to it.
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void claimSeat_evictsOnlyTheClaimedWorkshop() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> createWorkshops(2, 0));
+        try {
+            entityManagerFactory.getCache().evictAll();
+            workshopRepository.findByCode("QC_0").orElseThrow();
+            workshopRepository.findByCode("QC_1").orElseThrow();
+
+            transaction.executeWithoutResult(status -> assertEquals(1, workshopRepository.claimSeat("QC_0")));
+            Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+            statistics.clear();
+
+            assertEquals(0, workshopRepository.findByCode("QC_1").orElseThrow().getRegisteredCount());
+            assertEquals(0, statistics.getPrepareStatementCount());
+            assertEquals(1, workshopRepository.findByCode("QC_0").orElseThrow().getRegisteredCount());
+        } finally {
+            transaction.executeWithoutResult(status -> workshopRepository.deleteAll());
+        }
+    }
+
+    @Test
+    public void findByCode_seesSeatClaimedAfterCaching() {
+        createWorkshops(1, 0);
+        entityManagerFactory.getCache().evictAll();
+        entityManager.clear();
+        workshopRepository.findByCode("QC_0").orElseThrow();
+        entityManager.clear();
+
+        assertEquals(1, workshopRepository.claimSeat("QC_0"));
+        entityManager.clear();
+
+        assertEquals(1, workshopRepository.findByCode("QC_0").orElseThrow().getRegisteredCount());
+    }
+
+    @Test
+    public void correctSeatCount_skipsACounterClaimedAndReleasedAfterItWasRead() {
+        createWorkshops(1, 0);
+        WorkshopSeatCount seatCount = workshopRepository.findSeatCountsAfter(0, PageRequest.ofSize(10)).getFirst();
+
+        assertEquals(1, workshopRepository.claimSeat("QC_0"));
+        assertEquals(1, workshopRepository.releaseSeat("QC_0"));
+
+        assertEquals(0, workshopRepository.correctSeatCount("QC_0", seatCount.getSeatRevision(), 5));
+    }
+
+    /**
+     * Loads a page of workshops with an empty persistence context and returns the number of statements run.
+     */
+    private long countStatements(int size) {
+        entityManager.clear();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        Page<WorkshopResponse> page = workshopService.getAllWorkshops(0, size);
+        page.getContent().forEach(workshop -> assertFalse(workshop.getRegistrations().isEmpty()));
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void createWorkshops(int workshops, int registrationsPerWorkshop) {
+        ZonedDateTime start = ZonedDateTime.now().plusDays(1);
+        for (int i = 0; i < workshops; i++) {
+            String code = "QC_" + i;
+            Set<Registrations> registrations = new HashSet<>();
+            for (int j = 0; j < registrationsPerWorkshop; j++) {
+                Registrations registration = new Registrations();
+                registration.setUserName("user_" + i + "_" + j);
+                registration.setUserEmail("user_" + i + "_" + j + "@example.com");
+                registration.setWorkshopCode(code);
+                registration.setUserPreferredContact(PreferredContact.EMAIL);
+                registrations.add(registration);
+            }
+            Workshop workshop = new Workshop();
+            workshop.setCode(code);
+            workshop.setName("Workshop " + i);
+            workshop.setDescription("Query count workshop");
+            workshop.setStartTime(start.plusHours(i));
+            workshop.setEndTime(start.plusHours(i + 1));
+            workshop.setCapacity(10);
+            workshop.setRegistrations(registrations);
+            entityManager.persist(workshop);
+        }
+        entityManager.flush();
+    }
+}
@@ -4,23 +4,31 @@ import com.app.TestData;
 import com.app.exception.InvalidWorkshopDataException;
 import com.app.exception.WorkshopAlreadyExistException;
 import com.app.exception.WorkshopNotFoundException;
+import com.app.model.request.WorkshopCursor;
 import com.app.model.request.WorkshopRequest;
 import com.app.model.request.WorkshopUpdateRequest;
 import com.app.model.entity.Workshop;
 import com.app.model.mapper.WorkshopMapper;
+import com.app.model.response.WorkshopBatchResponse;
+import com.app.model.response.WorkshopPage;
 import com.app.model.response.WorkshopResponse;
 import com.app.repository.WorkshopRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.mockito.*;
+import org.springframework.data.domain.Page;
 import org.testng.annotations.*;
 import org.testng.ITestContext;
+import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.util.*;
 import java.util.Optional;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+@Test(singleThreaded = true)
 class WorkshopServiceTest {
 
     @Mock
@@ -32,6 +40,18 @@ class WorkshopServiceTest {
     @Mock
     private WorkshopRegistrationService workshopRegistrationService;
 
+    @Mock
+    private SeatInventoryService seatInventoryService;
+
+    @Mock
+    private UpcomingWorkshopsCache upcomingWorkshopsCache;
+
+    @Mock
+    private WorkshopVersionCache workshopVersionCache;
+
+    @Spy
+    private WorkshopReadCoalescer workshopReadCoalescer = new WorkshopReadCoalescer(Duration.ZERO, new SimpleMeterRegistry());
+
     @InjectMocks
     private WorkshopService workshopService;
 
@@ -58,7 +78,7 @@ class WorkshopServiceTest {
     @BeforeMethod
     public void setUp() {
         // Reset mocks
-        Mockito.reset(workshopRepository, workshopMapper, workshopRegistrationService);
+        Mockito.reset(workshopRepository, workshopMapper, workshopRegistrationService, seatInventoryService, upcomingWorkshopsCache, workshopVersionCache);
 
         // Setup test data
         workshop = new Workshop();
@@ -83,26 +103,64 @@ class WorkshopServiceTest {
 
     @Test
     void getUpcomingWorkshops_returnsUpcoming() {
-        Workshop pastWorkshop = new Workshop();
-        pastWorkshop.setEndTime(ZonedDateTime.now().minusDays(1));
-        when(workshopRepository.findAll()).thenReturn(List.of(workshop, pastWorkshop));
-        when(workshopMapper.WorkshopToWorkshopResponse(any())).thenReturn(workshopResponse);
+        when(workshopRepository.findUpcoming(any(), any())).thenReturn(List.of(workshopResponse));
+
+        WorkshopPage result = workshopService.getUpcomingWorkshops(null, 10);
+
+        assertEquals(1, result.getWorkshops().size());
+        assertNull(result.getNextCursor());
+        verify(workshopRepository, never()).findAll();
+        verifyNoInteractions(workshopMapper);
+    }
+
+    @Test
+    void getUpcomingWorkshops_returnsCursorOfNextPage() {
+        WorkshopResponse nextWorkshop = WorkshopResponse.builder()
+                .startTime(workshop.getStartTime().plusHours(1))
+                .build();
+        when(workshopRepository.findUpcoming(any(), any())).thenReturn(List.of(workshopResponse, nextWorkshop));
+
+        WorkshopPage result = workshopService.getUpcomingWorkshops(null, 1);
+
+        assertEquals(1, result.getWorkshops().size());
+        WorkshopCursor cursor = WorkshopCursor.decode(result.getNextCursor());
+        assertEquals(workshop.getWorkshopId(), cursor.workshopId());
+        assertEquals(workshop.getStartTime().toInstant(), cursor.startTime().toInstant());
+    }
+
+    @Test
+    void getWorkshopsByCodes_reportsMissingCodes() {
+        WorkshopResponse other = WorkshopResponse.builder().code("WS_300").build();
+        when(workshopRepository.findSummariesByCodeIn(any())).thenReturn(List.of(other, workshopResponse));
+
+        WorkshopBatchResponse result = workshopService.getWorkshopsByCodes(
+                List.of(workshopResponse.getCode(), "WS_MISSING", "WS_300", workshopResponse.getCode()));
+
+        assertEquals(List.of(workshopResponse, other), result.getWorkshops());
+        assertEquals(List.of("WS_MISSING"), result.getMissingCodes());
+        verify(workshopRepository, times(1)).findSummariesByCodeIn(Set.of(workshopResponse.getCode(), "WS_MISSING", "WS_300"));
+    }
 
-        List<WorkshopResponse> result = workshopService.getUpcomingWorkshops();
+    @Test
+    void getWorkshopsByCodes_tooManyCodes() {
+        List<String> codes = IntStream.rangeClosed(0, WorkshopService.MAX_BATCH_SIZE).mapToObj(i -> "WS_" + i).toList();
 
-        assertEquals(1, result.size());
-        verify(workshopRepository).findAll();
+        assertThrows(InvalidWorkshopDataException.class, () -> workshopService.getWorkshopsByCodes(codes));
+        verify(workshopRepository, never()).findSummariesByCodeIn(any());
     }
 
     @Test
     void getAllWorkshops_returnsAll() {
-        when(workshopRepository.findAll()).thenReturn(List.of(workshop));
+        when(workshopRepository.findWorkshopIds(any())).thenReturn(List.of(workshop.getWorkshopId()));
+        when(workshopRepository.findWithRegistrationsByIdIn(List.of(workshop.getWorkshopId()))).thenReturn(List.of(workshop));
+        when(workshopRepository.count()).thenReturn(1L);
         when(workshopMapper.WorkshopToWorkshopResponse(any())).thenReturn(workshopResponse);
 
-        List<WorkshopResponse> result = workshopService.getAllWorkshops();
+        Page<WorkshopResponse> result = workshopService.getAllWorkshops(0, 10);
 
-        assertEquals(1, result.size());
-        verify(workshopRepository).findAll();
+        assertEquals(1, result.getContent().size());
+        assertEquals(1, result.getTotalElements());
+        verify(workshopRepository, never()).findAll();
     }
 
     @Test
@@ -150,13 +208,37 @@ class WorkshopServiceTest {
     @Test
     void getWorkshopByCode_success() {
         when(workshopRepository.findByCode("WS_100")).thenReturn(Optional.of(workshop));
-        when(workshopMapper.WorkshopToWorkshopResponse(any())).thenReturn(workshopResponse);
+        when(workshopMapper.WorkshopToWorkshopDetailsResponse(any())).thenReturn(workshopResponse);
 
         WorkshopResponse result = workshopService.getWorkshopByCode("WS_100");
 
         assertNotNull(result);
     }
 
+    @Test
+    void getWorkshopByCode_remembersETag() {
+        workshopResponse.setEtag("1-0-0");
+        when(workshopRepository.findByCode("WS_100")).thenReturn(Optional.of(workshop));
+        when(workshopMapper.WorkshopToWorkshopDetailsResponse(any())).thenReturn(workshopResponse);
+
+        workshopService.getWorkshopByCode("WS_100");
+
+        verify(workshopVersionCache).put("WS_100", "1-0-0");
+    }
+
+    @Test
+    void getWorkshopByCode_sumsTheSeatsOfAShardedWorkshop() {
+        workshop.setInventoryShards(4);
+        when(workshopRepository.findByCode("WS_100")).thenReturn(Optional.of(workshop));
+        when(workshopMapper.WorkshopToWorkshopDetailsResponse(any())).thenReturn(workshopResponse);
+        when(seatInventoryService.getSeatsLeft(workshop.getCode())).thenReturn(7);
+
+        WorkshopResponse result = workshopService.getWorkshopByCode("WS_100");
+
+        assertEquals(3, result.getSeatsTaken());
+        assertEquals(7, result.getSeatsLeft());
+    }
+
     @Test
     void getWorkshopByCode_notFound() {
         when(workshopRepository.findByCode("WS_100")).thenReturn(Optional.empty());
@@ -167,8 +249,8 @@ class WorkshopServiceTest {
 
     @Test
     void deleteWorkshop_success() {
-        when(workshopRepository.findByCode("WS_100")).thenReturn(Optional.of(workshop));
-        when(workshopRegistrationService.getRegistrationsByCode("WS_200")).thenReturn(Collections.emptyList());
+        when(workshopRepository.lockByCode("WS_100")).thenReturn(Optional.of(workshop));
+        when(workshopRegistrationService.hasRegistrations("WS_100")).thenReturn(false);
 
         workshopService.deleteWorkshop("WS_100");
 
@@ -177,9 +259,8 @@ class WorkshopServiceTest {
 
     @Test
     void deleteWorkshop_withRegistrations() {
-        when(workshopRepository.findByCode("WS_200")).thenReturn(Optional.of(workshop));
-        when(workshopRegistrationService.getRegistrationsByCode("WS_200")).
-                thenReturn(Collections.singletonList(TestData.createRegistrationResponse()));
+        when(workshopRepository.lockByCode("WS_200")).thenReturn(Optional.of(workshop));
+        when(workshopRegistrationService.hasRegistrations("WS_200")).thenReturn(true);
 
         assertThrows(InvalidWorkshopDataException.class,
                 () -> workshopService.deleteWorkshop("WS_200"));
@@ -187,7 +268,7 @@ class WorkshopServiceTest {
 
     @Test
     void deleteWorkshop_notFound() {
-        when(workshopRepository.findByCode("WS_1AA")).thenReturn(Optional.empty());
+        when(workshopRepository.lockByCode("WS_1AA")).thenReturn(Optional.empty());
 
         assertThrows(WorkshopNotFoundException.class,
                 () -> workshopService.deleteWorkshop("WS_1AA"));
@@ -195,7 +276,7 @@ class WorkshopServiceTest {
 
     @Test
     void updateWorkshop_success() {
-        when(workshopRepository.findByCode("WS_100")).thenReturn(Optional.of(workshop));
+        when(workshopRepository.lockByCode("WS_100")).thenReturn(Optional.of(workshop));
         when(workshopRepository.save(any())).thenReturn(workshop);
         when(workshopMapper.WorkshopToWorkshopResponse(any())).thenReturn(workshopResponse);
 
@@ -207,7 +288,7 @@ class WorkshopServiceTest {
 
     @Test
     void updateWorkshop_notFound() {
-        when(workshopRepository.findByCode("WS_1AA")).thenReturn(Optional.empty());
+        when(workshopRepository.lockByCode("WS_1AA")).thenReturn(Optional.empty());
 
         assertThrows(WorkshopNotFoundException.class,
                 () -> workshopService.updateWorkshop("WS_1AA", workshopUpdateRequest));